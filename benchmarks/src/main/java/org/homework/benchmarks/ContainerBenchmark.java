@@ -0,0 +1,61 @@
+package org.homework.benchmarks;
+
+import org.homework.api.PasswordStore;
+import org.homework.di.DIContainer;
+import org.homework.services.CommandService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Задержка разрешения зависимостей и время создания контейнера
+ * с индексом компонентов и со сканированием classpath.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContainerBenchmark {
+    private DIContainer container;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        container = new DIContainer();
+        container.resolve(CommandService.class);
+        container.resolve(PasswordStore.class);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public CommandService resolveClass() {
+        return container.resolve(CommandService.class);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public PasswordStore resolveInterface() {
+        return container.resolve(PasswordStore.class);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public DIContainer startupWithIndex() {
+        return new DIContainer(true);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public DIContainer startupWithScan() {
+        return new DIContainer(false);
+    }
+}
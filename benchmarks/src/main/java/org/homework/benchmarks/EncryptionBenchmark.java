@@ -0,0 +1,112 @@
+package org.homework.benchmarks;
+
+import org.homework.api.EncryptionService;
+import org.homework.di.DIContainer;
+import org.openjdk.jmh.annotations.*;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность шифрования по размеру данных для обоих алгоритмов.
+ * Результат в байтах в секунду — произведение ops/s на payloadSize.
+ * Методы legacy* повторяют исходную реализацию, создававшую Cipher на каждый вызов,
+ * и служат базой для сравнения с encryptString и decryptString.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncryptionBenchmark {
+    private static final String LEGACY_KEY = "mySuperSecretKey";
+    private static final String CHAT_ID = "100500";
+
+    @Param({"16", "256", "4096", "65536"})
+    private int payloadSize;
+
+    @Param({"aes", "aes-gcm"})
+    private String algorithm;
+
+    private EncryptionService encryptionService;
+    private byte[] plainBytes;
+    private byte[] encryptedBytes;
+    private byte[] encryptedTenantBytes;
+    private String plainText;
+    private String encryptedText;
+    private String legacyEncryptedText;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        System.setProperty("encryption.algorithm", algorithm);
+        encryptionService = new DIContainer().resolve(EncryptionService.class);
+        char[] chars = new char[payloadSize];
+        Arrays.fill(chars, 'x');
+        plainText = new String(chars);
+        plainBytes = plainText.getBytes(StandardCharsets.UTF_8);
+        encryptedBytes = encryptionService.encrypt(plainBytes);
+        encryptedTenantBytes = encryptionService.encrypt(CHAT_ID, plainBytes);
+        encryptedText = encryptionService.encrypt(plainText);
+        legacyEncryptedText = legacyEncryptString();
+    }
+
+    @Benchmark
+    public byte[] encryptBytes() {
+        return encryptionService.encrypt(plainBytes);
+    }
+
+    @Benchmark
+    public byte[] decryptBytes() {
+        return encryptionService.decrypt(encryptedBytes);
+    }
+
+    @Benchmark
+    public byte[] encryptTenantBytes() {
+        return encryptionService.encrypt(CHAT_ID, plainBytes);
+    }
+
+    @Benchmark
+    public byte[] decryptTenantBytes() {
+        return encryptionService.decrypt(CHAT_ID, encryptedTenantBytes);
+    }
+
+    @Benchmark
+    public String encryptString() {
+        return encryptionService.encrypt(plainText);
+    }
+
+    @Benchmark
+    public String decryptString() {
+        return encryptionService.decrypt(encryptedText);
+    }
+
+    @Benchmark
+    public void encryptStream() throws IOException {
+        try (OutputStream out = encryptionService.encryptingStream(OutputStream.nullOutputStream())) {
+            out.write(plainBytes);
+        }
+    }
+
+    @Benchmark
+    public String legacyEncryptString() throws Exception {
+        SecretKeySpec key = new SecretKeySpec(LEGACY_KEY.getBytes(), "AES");
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.ENCRYPT_MODE, key);
+        return Base64.getEncoder().encodeToString(cipher.doFinal(plainText.getBytes()));
+    }
+
+    @Benchmark
+    public String legacyDecryptString() throws Exception {
+        SecretKeySpec key = new SecretKeySpec(LEGACY_KEY.getBytes(), "AES");
+        Cipher cipher = Cipher.getInstance("AES");
+        cipher.init(Cipher.DECRYPT_MODE, key);
+        return new String(cipher.doFinal(Base64.getDecoder().decode(legacyEncryptedText)));
+    }
+}
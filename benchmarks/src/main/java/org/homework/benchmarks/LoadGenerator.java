@@ -0,0 +1,214 @@
+package org.homework.benchmarks;
+
+import org.homework.BotInitializer;
+import org.homework.metrics.LatencyHistogram;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Нагрузочный прогон бота целиком: long polling, обработка команд, планировщик отправки и HTTP-клиент.
+ * Бот запускается в этом же процессе и подключается к {@link TelegramApiSimulator} вместо Telegram.
+ * Сообщения отправляются по расписанию сценария независимо от ответов (открытая модель нагрузки),
+ * а задержка отсчитывается от запланированного момента, поэтому отставание генератора
+ * не скрывает медленные ответы. Ответ сопоставляется с самым старым сообщением чата без ответа;
+ * планировщик может объединить несколько ответов в одно сообщение через пустую строку,
+ * и такое сообщение засчитывается за все объединённые ответы. Ответы на команды
+ * из смеси пустых строк не содержат.
+ * <p>
+ * Аргументы: --chats, --rate (сообщений в секунду), --duration (секунд),
+ * --mix add=30,get=50,list=10,delete=10, --seed, --language, --drain (секунд ожидания ответов),
+ * --record файл (сохранить сценарий) и --replay файл (повторить сохранённый).
+ * Настройки бота задаются как обычно через -D, например -Doutbound.chat.rate=10.
+ * Код выхода 1 означает, что были ошибки.
+ */
+public class LoadGenerator {
+    private static final long CHAT_ID_BASE = 1_000_000; // ID первого чата в Telegram
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder answered = new LongAdder();
+    private final LongAdder unexpected = new LongAdder(); // Ответы, которым не нашлось сообщения
+    private final ArrayDeque<Long>[] pending; // Запланированные моменты сообщений без ответа по чатам
+
+    @SuppressWarnings("unchecked")
+    private LoadGenerator(int chats) {
+        pending = new ArrayDeque[chats];
+        for (int i = 0; i < chats; i++) {
+            pending[i] = new ArrayDeque<>();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArguments(args);
+        LoadScript script;
+        if (options.containsKey("replay")) {
+            script = LoadScript.read(Paths.get(options.get("replay")));
+        } else {
+            script = LoadScript.generate(Integer.parseInt(options.getOrDefault("chats", "100")),
+                    Double.parseDouble(options.getOrDefault("rate", "100")),
+                    Integer.parseInt(options.getOrDefault("duration", "30")),
+                    parseMix(options.getOrDefault("mix", "add=30,get=50,list=10,delete=10")),
+                    Long.parseLong(options.getOrDefault("seed", "1")));
+        }
+        if (options.containsKey("record")) {
+            script.write(Paths.get(options.get("record")));
+        }
+        int drainSeconds = Integer.parseInt(options.getOrDefault("drain", "30"));
+        String language = options.getOrDefault("language", "ru");
+        boolean failed = new LoadGenerator(script.getChats()).run(script, language, drainSeconds);
+        System.exit(failed ? 1 : 0);
+    }
+
+    /**
+     * Запускает бота и имитатор, проигрывает сценарий и печатает отчёт.
+     *
+     * @return true, если были ошибки.
+     */
+    private boolean run(LoadScript script, String language, int drainSeconds) throws Exception {
+        try (TelegramApiSimulator simulator = new TelegramApiSimulator(this::onReply)) {
+            simulator.start();
+            configureBot(simulator.getBaseUrl());
+            new BotInitializer().initializeBot();
+
+            int total = script.getEvents().size();
+            System.out.printf(Locale.ROOT, "Сценарий: %d сообщений в %d чатах%n", total, script.getChats());
+            long started = System.nanoTime();
+            long nextProgress = started + PROGRESS_INTERVAL_NANOS;
+            int sent = 0;
+            for (LoadScript.Event event : script.getEvents()) {
+                long scheduled = started + event.offsetNanos();
+                long delay;
+                while ((delay = scheduled - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                ArrayDeque<Long> queue = pending[event.chat()];
+                synchronized (queue) {
+                    queue.addLast(scheduled);
+                }
+                simulator.publish(CHAT_ID_BASE + event.chat(), event.text(), language);
+                sent++;
+                if (System.nanoTime() >= nextProgress) {
+                    System.out.printf(Locale.ROOT, "Отправлено %d, получено ответов %d%n", sent, answered.sum());
+                    nextProgress += PROGRESS_INTERVAL_NANOS;
+                }
+            }
+            long publishedAt = System.nanoTime();
+
+            long drainDeadline = publishedAt + TimeUnit.SECONDS.toNanos(drainSeconds);
+            while (answered.sum() < total && System.nanoTime() < drainDeadline) {
+                Thread.sleep(50);
+            }
+            long finished = System.nanoTime();
+            return report(simulator, total, started, publishedAt, finished);
+        }
+    }
+
+    private boolean report(TelegramApiSimulator simulator, int total, long started, long publishedAt, long finished) {
+        long replies = answered.sum();
+        long lost = total - replies;
+        long extra = unexpected.sum();
+        long apiErrors = simulator.getFailedRequestCount();
+        double elapsedSeconds = (finished - started) / 1e9;
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        System.out.printf(Locale.ROOT, "Отправка заняла %.1f с, ожидание ответов %.1f с%n",
+                (publishedAt - started) / 1e9, (finished - publishedAt) / 1e9);
+        System.out.printf(Locale.ROOT, "Пропускная способность: %.1f ответов/с (%d из %d), запросов к API: %d%n",
+                replies / elapsedSeconds, replies, total, simulator.getRequestCount());
+        System.out.printf(Locale.ROOT, "Задержка, мс: p50 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n",
+                millis(snapshot.getPercentile(50)), millis(snapshot.getPercentile(99)),
+                millis(snapshot.getPercentile(99.9)), millis(snapshot.getMax()));
+        System.out.printf(Locale.ROOT, "Ошибки: без ответа %d, лишних ответов %d, неразобранных запросов %d%n",
+                lost, extra, apiErrors);
+        return lost > 0 || extra > 0 || apiErrors > 0;
+    }
+
+    /**
+     * Засчитывает ответ бота самым старым сообщениям чата без ответа.
+     */
+    private void onReply(long chatId, String text) {
+        long now = System.nanoTime();
+        long chat = chatId - CHAT_ID_BASE;
+        if (chat < 0 || chat >= pending.length) {
+            unexpected.increment();
+            return;
+        }
+        int replies = text.split("\n\n", -1).length; // Ответы, объединённые планировщиком
+        ArrayDeque<Long> queue = pending[(int) chat];
+        synchronized (queue) {
+            for (int i = 0; i < replies; i++) {
+                Long scheduled = queue.pollFirst();
+                if (scheduled == null) {
+                    unexpected.add(replies - i);
+                    return;
+                }
+                latency.record(now - scheduled);
+                answered.increment();
+            }
+        }
+    }
+
+    /**
+     * Задаёт настройки бота: адрес имитатора и новое временное хранилище. Хранилище всегда новое,
+     * потому что имитатор нумерует обновления с 1, а бот отбросил бы ID, обработанные в прошлом прогоне.
+     * Токен, имя бота и выключенный сервер метрик задаются, если они не переданы через -D.
+     */
+    private static void configureBot(String apiUrl) throws Exception {
+        System.setProperty("bot.api.url", apiUrl);
+        System.setProperty("bot.mode", "polling");
+        System.setProperty("vault.dir", Files.createTempDirectory("vault-load").toString());
+        setDefault("bot.token", "load-test");
+        setDefault("bot.username", "load_test_bot");
+        setDefault("metrics.port", "");
+    }
+
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+
+    private static Map<String, String> parseArguments(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i < args.length; i++) {
+            if (!args[i].startsWith("--") || i + 1 == args.length) {
+                throw new IllegalArgumentException("Ожидается --параметр значение: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[++i]);
+        }
+        return options;
+    }
+
+    /**
+     * Разбирает смесь команд вида add=30,get=50,list=10,delete=10. Пропущенные команды получают долю 0.
+     */
+    private static int[] parseMix(String value) {
+        String[] commands = {"add", "get", "list", "delete"};
+        int[] mix = new int[commands.length];
+        for (String part : value.split(",")) {
+            String[] pair = part.trim().split("=", 2);
+            int index = -1;
+            for (int i = 0; i < commands.length; i++) {
+                if (commands[i].equals(pair[0])) {
+                    index = i;
+                }
+            }
+            if (index < 0 || pair.length != 2) {
+                throw new IllegalArgumentException("Неверная доля команды: " + part);
+            }
+            mix[index] = Integer.parseInt(pair[1]);
+        }
+        return mix;
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+}
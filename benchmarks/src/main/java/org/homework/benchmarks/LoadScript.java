@@ -0,0 +1,155 @@
+package org.homework.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сценарий нагрузки: сообщения пользователей с моментом отправки от начала прогона.
+ * Сценарий генерируется по смеси команд или читается из файла, записанного ранее,
+ * поэтому один и тот же прогон можно повторить после изменений в боте.
+ * Формат файла: по строке на сообщение, поля через табуляцию —
+ * смещение в микросекундах, номер чата и текст.
+ */
+final class LoadScript {
+    private static final String SEPARATOR = "\t";
+
+    /**
+     * Сообщение сценария.
+     *
+     * @param offsetNanos Момент отправки от начала прогона.
+     * @param chat        Номер чата, начиная с 0.
+     * @param text        Текст сообщения.
+     */
+    record Event(long offsetNanos, int chat, String text) {
+    }
+
+    private final List<Event> events;
+    private final int chats;
+
+    private LoadScript(List<Event> events) {
+        this.events = events;
+        int maxChat = -1;
+        for (Event event : events) {
+            maxChat = Math.max(maxChat, event.chat());
+        }
+        this.chats = maxChat + 1;
+    }
+
+    List<Event> getEvents() {
+        return events;
+    }
+
+    int getChats() {
+        return chats;
+    }
+
+    /**
+     * Генерирует сценарий с пуассоновским потоком сообщений: интервалы между ними
+     * распределены экспоненциально со средним 1/rate, чат выбирается равновероятно.
+     * Команды /get и /delete обращаются к сервисам, которые чат добавил ранее,
+     * а если таких нет — к несуществующему сервису.
+     *
+     * @param chats    Число чатов.
+     * @param rate     Сообщений в секунду на всех.
+     * @param duration Длительность в секундах.
+     * @param mix      Доли команд add, get, list, delete.
+     * @param seed     Начальное значение генератора случайных чисел.
+     * @return Сценарий.
+     */
+    static LoadScript generate(int chats, double rate, int duration, int[] mix, long seed) {
+        Random random = new Random(seed);
+        int total = mix[0] + mix[1] + mix[2] + mix[3];
+        if (chats <= 0 || rate <= 0 || duration <= 0 || total <= 0) {
+            throw new IllegalArgumentException("Число чатов, частота, длительность и сумма долей должны быть положительными");
+        }
+        List<List<String>> services = new ArrayList<>(chats); // Добавленные и не удалённые сервисы чатов
+        int[] counters = new int[chats];
+        for (int i = 0; i < chats; i++) {
+            services.add(new ArrayList<>());
+        }
+        List<Event> events = new ArrayList<>();
+        long end = TimeUnit.SECONDS.toNanos(duration);
+        double meanNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long offset = 0;
+        while (true) {
+            offset += (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+            if (offset >= end) {
+                break;
+            }
+            int chat = random.nextInt(chats);
+            List<String> known = services.get(chat);
+            int pick = random.nextInt(total);
+            String text;
+            if (pick < mix[0]) {
+                String name = "service-" + counters[chat]++;
+                known.add(name);
+                text = "/add " + name + " user" + chat + " secret-" + Long.toHexString(random.nextLong());
+            } else if (pick < mix[0] + mix[1]) {
+                text = "/get " + (known.isEmpty() ? "missing" : known.get(random.nextInt(known.size())));
+            } else if (pick < mix[0] + mix[1] + mix[2]) {
+                text = "/list";
+            } else {
+                text = "/delete " + (known.isEmpty() ? "missing" : known.remove(random.nextInt(known.size())));
+            }
+            events.add(new Event(offset, chat, text));
+        }
+        return new LoadScript(events);
+    }
+
+    /**
+     * Читает сценарий из файла.
+     *
+     * @param file Файл сценария.
+     * @return Сценарий, упорядоченный по моменту отправки.
+     * @throws IOException Если файл не удалось прочитать или строка записана неверно.
+     */
+    static LoadScript read(Path file) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                String[] fields = line.split(SEPARATOR, 3);
+                if (fields.length != 3) {
+                    throw new IOException("Неверная строка " + number + " в сценарии " + file);
+                }
+                try {
+                    events.add(new Event(TimeUnit.MICROSECONDS.toNanos(Long.parseLong(fields[0])),
+                            Integer.parseInt(fields[1]), fields[2]));
+                } catch (NumberFormatException e) {
+                    throw new IOException("Неверное число в строке " + number + " сценария " + file, e);
+                }
+            }
+        }
+        events.sort((a, b) -> Long.compare(a.offsetNanos(), b.offsetNanos()));
+        return new LoadScript(events);
+    }
+
+    /**
+     * Записывает сценарий в файл для повторного прогона.
+     *
+     * @param file Файл сценария.
+     * @throws IOException Если файл не удалось записать.
+     */
+    void write(Path file) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Event event : events) {
+                writer.write(TimeUnit.NANOSECONDS.toMicros(event.offsetNanos()) + SEPARATOR + event.chat()
+                        + SEPARATOR + event.text());
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.homework.benchmarks;
+
+import org.homework.api.EncryptionService;
+import org.homework.api.PasswordStore;
+import org.homework.di.DIContainer;
+import org.homework.model.PasswordEntry;
+import org.homework.services.PasswordService;
+import org.homework.services.ServiceNameIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Операции PasswordService на хранилищах разного размера.
+ * Хранилище и индекс названий заполняются напрямую, минуя журнал,
+ * а измеряемые операции идут через сервис со всеми его этапами.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordServiceBenchmark {
+    private static final String CHAT_ID = "1";
+    private static final int HOT_MASK = 15; // Горячий набор из 16 сервисов
+
+    @Param({"10", "1000", "100000", "1000000"})
+    private int vaultSize;
+
+    @Param({"heap", "offheap"})
+    private String store;
+
+    @Param({"0", "1024"})
+    private int cacheSize;
+
+    private PasswordService passwordService;
+    private PasswordStore passwordStore;
+    private ServiceNameIndex serviceNameIndex;
+    private String[] names;
+    private String encryptedPassword;
+    private int next;
+    private int hot;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        System.setProperty("vault.dir", Files.createTempDirectory("vault-bench").toString());
+        System.setProperty("vault.store", store);
+        System.setProperty("cache.size", Integer.toString(cacheSize));
+        DIContainer container = new DIContainer();
+        passwordService = container.resolve(PasswordService.class);
+        passwordService.getAllServices(CHAT_ID); // Восстанавливает пустое хранилище до заполнения
+        passwordStore = container.resolve(PasswordStore.class);
+        serviceNameIndex = container.resolve(ServiceNameIndex.class);
+        encryptedPassword = container.resolve(EncryptionService.class).encrypt("password");
+
+        names = new String[vaultSize];
+        for (int i = 0; i < vaultSize; i++) {
+            names[i] = "service-" + i;
+            passwordStore.put(CHAT_ID, new PasswordEntry(names[i], "user", encryptedPassword));
+            serviceNameIndex.add(CHAT_ID, names[i]);
+        }
+    }
+
+    private String nextName() {
+        String name = names[next];
+        next = next + 1 == names.length ? 0 : next + 1;
+        return name;
+    }
+
+    @Benchmark
+    public PasswordEntry get() {
+        return passwordService.getPassword(CHAT_ID, nextName());
+    }
+
+    /**
+     * Повторные запросы небольшого набора сервисов, на которых работает кэш.
+     */
+    @Benchmark
+    public PasswordEntry getHot() {
+        return passwordService.getPassword(CHAT_ID, names[(hot++ & HOT_MASK) % names.length]);
+    }
+
+    /**
+     * Перезаписывает существующую запись, чтобы размер хранилища не менялся.
+     */
+    @Benchmark
+    public void add() {
+        passwordService.addPassword(CHAT_ID, nextName(), "user", "password");
+    }
+
+    /**
+     * Удаляет запись и возвращает её в хранилище и индекс напрямую, минуя журнал.
+     */
+    @Benchmark
+    public void delete() {
+        String name = nextName();
+        passwordService.deletePassword(CHAT_ID, name);
+        passwordStore.put(CHAT_ID, new PasswordEntry(name, "user", encryptedPassword));
+        serviceNameIndex.add(CHAT_ID, name);
+    }
+
+    @Benchmark
+    public List<String> list() {
+        return passwordService.getAllServices(CHAT_ID);
+    }
+
+    @Benchmark
+    public List<String> find() {
+        return passwordService.findServices(CHAT_ID, "service-1", 50);
+    }
+
+    @Benchmark
+    public List<String> suggest() {
+        return passwordService.suggestServices(CHAT_ID, "servise-1", 3);
+    }
+}
@@ -0,0 +1,158 @@
+package org.homework.benchmarks;
+
+import org.homework.api.PasswordStore;
+import org.homework.model.PasswordEntry;
+import org.homework.services.OffHeapPasswordStore;
+import org.homework.services.ShardedPasswordStore;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Пропускная способность хранилищ паролей в зависимости от числа потоков.
+ * Каждый поток работает со своими чатами смесью операций: 60% get, 30% put, 10% remove.
+ * Базовая линия — одна HashMap на все чаты под общей блокировкой, как было до разбиения
+ * хранилища по чатам. Число потоков задаётся методами с @Threads, потому что JMH
+ * не позволяет сделать его @Param. Корректность при конкурентном доступе проверяет
+ * PasswordStoreStressTest, здесь измеряется только скорость.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PasswordStoreScalingBenchmark {
+    private static final int CHATS_PER_THREAD = 4;
+    private static final int NAMES = 256; // Названий сервисов на чат
+
+    @Param({"single", "heap", "offheap"})
+    private String store;
+
+    private PasswordStore passwordStore;
+    private PasswordEntry[] entries;
+    private final AtomicInteger threadIds = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        passwordStore = switch (store) {
+            case "single" -> new SingleMapPasswordStore();
+            case "heap" -> new ShardedPasswordStore();
+            case "offheap" -> new OffHeapPasswordStore();
+            default -> throw new IllegalArgumentException("Неизвестное хранилище: " + store);
+        };
+        String password = Base64.getEncoder().encodeToString("password".getBytes(StandardCharsets.UTF_8));
+        entries = new PasswordEntry[NAMES];
+        for (int i = 0; i < NAMES; i++) {
+            entries[i] = new PasswordEntry("service-" + i, "user", password);
+        }
+    }
+
+    /**
+     * Чаты потока. Заполняются до замера, чтобы get и remove находили записи.
+     */
+    @State(Scope.Thread)
+    public static class Tenant {
+        private String[] chatIds;
+
+        @Setup(Level.Trial)
+        public void setUp(PasswordStoreScalingBenchmark benchmark) {
+            int thread = benchmark.threadIds.getAndIncrement();
+            chatIds = new String[CHATS_PER_THREAD];
+            for (int i = 0; i < CHATS_PER_THREAD; i++) {
+                chatIds[i] = "chat-" + thread + "-" + i;
+                for (PasswordEntry entry : benchmark.entries) {
+                    benchmark.passwordStore.put(chatIds[i], entry);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object threads01(Tenant tenant) {
+        return operation(tenant);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Object threads04(Tenant tenant) {
+        return operation(tenant);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Object threads16(Tenant tenant) {
+        return operation(tenant);
+    }
+
+    private Object operation(Tenant tenant) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String chatId = tenant.chatIds[random.nextInt(CHATS_PER_THREAD)];
+        PasswordEntry entry = entries[random.nextInt(NAMES)];
+        int operation = random.nextInt(10);
+        if (operation < 6) {
+            return passwordStore.get(chatId, entry.getName());
+        }
+        if (operation < 9) {
+            passwordStore.put(chatId, entry);
+            return entry;
+        }
+        return passwordStore.remove(chatId, entry.getName());
+    }
+
+    /**
+     * Одна HashMap с ключом (чат, сервис) под общей блокировкой.
+     */
+    private static final class SingleMapPasswordStore implements PasswordStore {
+        private final Map<Key, PasswordEntry> entries = new HashMap<>();
+
+        @Override
+        public synchronized void put(String chatId, PasswordEntry entry) {
+            entries.put(new Key(chatId, entry.getName()), entry);
+        }
+
+        @Override
+        public synchronized PasswordEntry get(String chatId, String name) {
+            return entries.get(new Key(chatId, name));
+        }
+
+        @Override
+        public synchronized PasswordEntry remove(String chatId, String name) {
+            return entries.remove(new Key(chatId, name));
+        }
+
+        @Override
+        public synchronized void removeChat(String chatId) {
+            entries.keySet().removeIf(key -> key.chatId().equals(chatId));
+        }
+
+        @Override
+        public synchronized List<String> names(String chatId) {
+            List<String> names = new ArrayList<>();
+            for (Key key : entries.keySet()) {
+                if (key.chatId().equals(chatId)) {
+                    names.add(key.name());
+                }
+            }
+            return names;
+        }
+
+        @Override
+        public synchronized void forEach(BiConsumer<String, PasswordEntry> action) {
+            entries.forEach((key, entry) -> action.accept(key.chatId(), entry));
+        }
+
+        private record Key(String chatId, String name) {
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.homework.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Имитатор Telegram Bot API на localhost для нагрузочных тестов.
+ * Отдаёт опубликованные обновления через getUpdates с long polling и принимает
+ * sendMessage и editMessageText, передавая тексты ответов слушателю.
+ * Остальные методы (deleteWebhook и т. п.) отвечают успехом без результата.
+ * Бот подключается к имитатору через свойство bot.api.url = {@link #getBaseUrl()}.
+ * Запросы обслуживаются в виртуальных потоках, поэтому ожидание обновлений построено
+ * на ReentrantLock: Object.wait закрепил бы поток-носитель и задержал остальные запросы.
+ */
+public class TelegramApiSimulator implements AutoCloseable {
+    private static final int MAX_POLL_SECONDS = 1; // Долгий опрос короче, чтобы бот быстрее останавливался
+    private static final int DEFAULT_LIMIT = 100;
+
+    /**
+     * Получатель ответов бота.
+     */
+    @FunctionalInterface
+    public interface ReplyListener {
+        /**
+         * Вызывается для каждого отправленного ботом текста в потоке HTTP-сервера.
+         *
+         * @param chatId ID чата.
+         * @param text   Текст сообщения.
+         */
+        void onReply(long chatId, String text);
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Deque<ObjectNode> updates = new ArrayDeque<>(); // Неподтверждённые обновления по возрастанию ID
+    private final ReentrantLock lock = new ReentrantLock(); // Защищает updates и nextUpdateId
+    private final Condition published = lock.newCondition();
+    private final AtomicInteger messageIds = new AtomicInteger();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder failedRequests = new LongAdder();
+    private final ReplyListener listener;
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private int nextUpdateId = 1;
+
+    /**
+     * @param listener Получатель ответов бота.
+     */
+    public TelegramApiSimulator(ReplyListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Запускает HTTP-сервер на свободном порту localhost.
+     * Встроенный сервер пишет заголовки и тело ответа отдельно, и без TCP_NODELAY тело ждёт
+     * подтверждения заголовков (алгоритм Нейгла и отложенный ACK), добавляя около 40 мс к каждому запросу.
+     * Свойство читается при первом создании сервера в процессе.
+     */
+    public synchronized void start() {
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при запуске имитатора Telegram API", e);
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::serve);
+        server.start();
+    }
+
+    /**
+     * Возвращает адрес для свойства bot.api.url.
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/bot";
+    }
+
+    /**
+     * Публикует текстовое сообщение пользователя. Обновление получит следующий вызов getUpdates.
+     *
+     * @param chatId       ID чата (совпадает с ID пользователя, как в личной переписке).
+     * @param text         Текст сообщения.
+     * @param languageCode Язык пользователя.
+     */
+    public void publish(long chatId, String text, String languageCode) {
+        ObjectNode update = objectMapper.createObjectNode();
+        ObjectNode message = update.putObject("message");
+        message.put("message_id", messageIds.incrementAndGet());
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.putObject("chat").put("id", chatId).put("type", "private");
+        message.putObject("from").put("id", chatId).put("is_bot", false).put("first_name", "load")
+                .put("language_code", languageCode);
+        message.put("text", text);
+        lock.lock();
+        try {
+            update.put("update_id", nextUpdateId++);
+            updates.addLast(update);
+            published.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Возвращает число обработанных запросов к API.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Возвращает число запросов, которые не удалось разобрать.
+     */
+    public long getFailedRequestCount() {
+        return failedRequests.sum();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+            server = null;
+        }
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            requests.increment();
+            String path = exchange.getRequestURI().getPath();
+            String method = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+            JsonNode request;
+            try (InputStream body = exchange.getRequestBody()) {
+                byte[] bytes = body.readAllBytes();
+                request = bytes.length == 0 ? objectMapper.createObjectNode() : objectMapper.readTree(bytes);
+            } catch (IOException e) {
+                failedRequests.increment();
+                respond(exchange, 400, error(400, "Bad Request: " + e.getMessage()));
+                return;
+            }
+            ObjectNode response = objectMapper.createObjectNode().put("ok", true);
+            switch (method) {
+                case "getupdates" -> response.set("result", poll(request));
+                case "sendmessage", "editmessagetext" -> response.set("result", deliver(request));
+                default -> response.put("result", true);
+            }
+            respond(exchange, 200, response);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Отдаёт обновления с ID не меньше offset, ожидая их не дольше timeout.
+     * Обновления с меньшим ID считаются подтверждёнными и удаляются, как в Telegram.
+     */
+    private ArrayNode poll(JsonNode request) throws InterruptedException {
+        long offset = request.path("offset").asLong(0);
+        int limit = request.path("limit").asInt(DEFAULT_LIMIT);
+        long timeoutNanos = TimeUnit.SECONDS.toNanos(Math.min(request.path("timeout").asInt(0), MAX_POLL_SECONDS));
+        ArrayNode result = objectMapper.createArrayNode();
+        lock.lock();
+        try {
+            while (!updates.isEmpty() && updates.peekFirst().get("update_id").asLong() < offset) {
+                updates.pollFirst();
+            }
+            long remaining = timeoutNanos;
+            while (updates.isEmpty() && remaining > 0) {
+                remaining = published.awaitNanos(remaining);
+            }
+            for (ObjectNode update : updates) {
+                if (result.size() == limit) {
+                    break;
+                }
+                result.add(update);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return result;
+    }
+
+    /**
+     * Передаёт текст слушателю и возвращает отправленное сообщение.
+     */
+    private ObjectNode deliver(JsonNode request) {
+        long chatId = request.path("chat_id").asLong();
+        String text = request.path("text").asText();
+        listener.onReply(chatId, text);
+        ObjectNode message = objectMapper.createObjectNode();
+        message.put("message_id", request.has("message_id")
+                ? request.get("message_id").asInt() : messageIds.incrementAndGet());
+        message.put("date", System.currentTimeMillis() / 1000);
+        message.putObject("chat").put("id", chatId).put("type", "private");
+        message.put("text", text);
+        return message;
+    }
+
+    private ObjectNode error(int code, String description) {
+        return objectMapper.createObjectNode().put("ok", false).put("error_code", code).put("description", description);
+    }
+
+    private void respond(HttpExchange exchange, int status, ObjectNode response) throws IOException {
+        byte[] bytes = objectMapper.writeValueAsBytes(response);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
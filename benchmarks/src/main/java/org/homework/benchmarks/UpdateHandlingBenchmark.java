@@ -0,0 +1,75 @@
+package org.homework.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.homework.bot.CommandRouter;
+import org.homework.bot.OutboundScheduler;
+import org.homework.bot.PasswordManagerBot;
+import org.homework.di.DIContainer;
+import org.homework.services.PasswordService;
+import org.openjdk.jmh.annotations.*;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Обработка обновления от onUpdateReceived до передачи ответа в заглушку вместо Telegram API,
+ * а также разбор и выполнение команды без асинхронных этапов.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpdateHandlingBenchmark {
+    private static final String CHAT_ID = "42";
+
+    @Param({"/get bench", "/list", "/help", "/add bench user secret", "/delete missing", "/unknown"})
+    private String command;
+
+    private PasswordManagerBot bot;
+    private CommandRouter commandRouter;
+    private Update update;
+    private int updateId = 1;
+    private volatile CompletableFuture<SendMessage> reply;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        System.setProperty("vault.dir", Files.createTempDirectory("vault-bench").toString());
+        System.setProperty("outbound.chat.rate", "1000000000");
+        System.setProperty("outbound.chat.burst", "1000000000");
+        System.setProperty("outbound.global.rate", "1000000000");
+
+        DIContainer container = new DIContainer();
+        bot = container.resolve(PasswordManagerBot.class);
+        commandRouter = container.resolve(CommandRouter.class);
+        container.resolve(OutboundScheduler.class).start(message -> {
+            reply.complete((SendMessage) message);
+            return CompletableFuture.completedFuture(null);
+        });
+        container.resolve(PasswordService.class).addPassword(CHAT_ID, "bench", "user", "secret");
+
+        String json = "{\"update_id\":1,\"message\":{\"message_id\":1,\"date\":0,"
+                + "\"chat\":{\"id\":" + CHAT_ID + ",\"type\":\"private\"},\"text\":\"" + command + "\"}}";
+        update = new ObjectMapper().readValue(json, Update.class);
+    }
+
+    @Benchmark
+    public SendMessage endToEnd() {
+        CompletableFuture<SendMessage> next = new CompletableFuture<>();
+        reply = next;
+        update.setUpdateId(++updateId); // Обновление с прежним ID бот отбросил бы как повтор
+        bot.onUpdateReceived(update);
+        return next.join();
+    }
+
+    @Benchmark
+    public PartialBotApiMethod<?> routeOnly() {
+        return commandRouter.route(CHAT_ID, command);
+    }
+}
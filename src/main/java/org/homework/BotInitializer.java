@@ -1,7 +1,15 @@
 package org.homework;
 
+import org.homework.bot.OutboundScheduler;
 import org.homework.bot.PasswordManagerBot;
+import org.homework.bot.SecretSetWebhook;
+import org.homework.bot.WebhookReceiver;
 import org.homework.di.DIContainer;
+import org.homework.logger.LoggerImpl;
+import org.homework.metrics.MetricsServer;
+import org.homework.services.DecryptedEntryCache;
+import org.homework.services.ReencryptionJob;
+import org.homework.services.ResponseRenderer;
 import org.telegram.telegrambots.meta.TelegramBotsApi;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 import org.telegram.telegrambots.updatesreceivers.DefaultBotSession;
@@ -15,24 +23,52 @@ public class BotInitializer {
 
     public BotInitializer() {
         this.container = new DIContainer();
-        this.configLoader = new ConfigLoader();
+        this.configLoader = container.resolve(ConfigLoader.class);
     }
 
     /**
      * Инициализирует и регистрирует бота.
      */
     public void initializeBot() {
-        // Установка свойств из конфигурации
-        System.setProperty("bot.token", configLoader.getProperty("bot.token"));
-        System.setProperty("bot.username", configLoader.getProperty("bot.username"));
+        // Настройки, которые применяются без перезапуска
+        OutboundScheduler outboundScheduler = container.resolve(OutboundScheduler.class);
+        configLoader.addListener(outboundScheduler::applyConfig);
+        configLoader.addListener(container.resolve(DecryptedEntryCache.class)::applyConfig);
+        configLoader.addListener(container.resolve(LoggerImpl.class)::applyConfig);
+        configLoader.addListener(container.resolve(ResponseRenderer.class)::applyConfig);
+        configLoader.watch();
 
         try {
-            TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
             PasswordManagerBot bot = container.resolve(PasswordManagerBot.class);
-            botsApi.registerBot(bot);
+            outboundScheduler.start(bot::deliver);
+            if ("webhook".equals(configLoader.get().getString("bot.mode", "polling"))) {
+                startWebhook(bot);
+            } else {
+                bot.confirmProcessedUpdates();
+                TelegramBotsApi botsApi = new TelegramBotsApi(DefaultBotSession.class);
+                botsApi.registerBot(bot);
+            }
+            container.resolve(ReencryptionJob.class).start();
+            container.resolve(MetricsServer.class).start();
             System.out.println("Бот успешно зарегистрирован!");
         } catch (TelegramApiException e) {
             throw new RuntimeException("Ошибка при регистрации бота", e);
         }
     }
+
+    /**
+     * Запускает приём обновлений через webhook и сообщает Telegram его адрес.
+     * Если webhook.url не задан, адрес считается зарегистрированным заранее
+     * (например, за обратным прокси).
+     *
+     * @param bot Бот, получающий обновления.
+     */
+    private void startWebhook(PasswordManagerBot bot) throws TelegramApiException {
+        WebhookReceiver receiver = container.resolve(WebhookReceiver.class);
+        receiver.start(bot::handle);
+        String url = configLoader.get().getString("webhook.url", null);
+        if (url != null) {
+            bot.execute(new SecretSetWebhook(url + receiver.getPath(), receiver.getSecretToken()));
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,145 @@
+package org.homework;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Неизменяемый снимок конфигурации с типизированным доступом к значениям.
+ * Пустое значение считается отсутствующим, и вместо него возвращается значение по умолчанию.
+ */
+public final class Config {
+    private final Map<String, String> values;
+
+    Config(Map<String, String> values) {
+        this.values = Map.copyOf(values);
+    }
+
+    /**
+     * Возвращает строковое значение свойства.
+     *
+     * @param key Ключ свойства.
+     * @return Значение или null, если свойство не задано.
+     */
+    public String getString(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * Возвращает строковое значение свойства.
+     *
+     * @param key          Ключ свойства.
+     * @param defaultValue Значение, если свойство не задано или пусто.
+     * @return Значение свойства.
+     */
+    public String getString(String key, String defaultValue) {
+        String value = values.get(key);
+        return value == null || value.isBlank() ? defaultValue : value.trim();
+    }
+
+    /**
+     * Возвращает значение свойства типа int.
+     *
+     * @param key          Ключ свойства.
+     * @param defaultValue Значение, если свойство не задано или пусто.
+     * @return Значение свойства.
+     * @throws IllegalArgumentException если значение не удаётся разобрать.
+     */
+    public int getInt(String key, int defaultValue) {
+        String value = getString(key, null);
+        try {
+            return value == null ? defaultValue : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw invalid(key, value);
+        }
+    }
+
+    /**
+     * Возвращает значение свойства типа long.
+     *
+     * @param key          Ключ свойства.
+     * @param defaultValue Значение, если свойство не задано или пусто.
+     * @return Значение свойства.
+     * @throws IllegalArgumentException если значение не удаётся разобрать.
+     */
+    public long getLong(String key, long defaultValue) {
+        String value = getString(key, null);
+        try {
+            return value == null ? defaultValue : Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw invalid(key, value);
+        }
+    }
+
+    /**
+     * Возвращает значение свойства типа double.
+     *
+     * @param key          Ключ свойства.
+     * @param defaultValue Значение, если свойство не задано или пусто.
+     * @return Значение свойства.
+     * @throws IllegalArgumentException если значение не удаётся разобрать.
+     */
+    public double getDouble(String key, double defaultValue) {
+        String value = getString(key, null);
+        try {
+            return value == null ? defaultValue : Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw invalid(key, value);
+        }
+    }
+
+    /**
+     * Возвращает значение свойства типа boolean.
+     *
+     * @param key          Ключ свойства.
+     * @param defaultValue Значение, если свойство не задано или пусто.
+     * @return Значение свойства.
+     * @throws IllegalArgumentException если значение не удаётся разобрать.
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = getString(key, null);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        throw invalid(key, value);
+    }
+
+    /**
+     * Возвращает все свойства снимка.
+     */
+    public Map<String, String> asMap() {
+        return values;
+    }
+
+    /**
+     * Возвращает ключи, значения которых отличаются от другого снимка.
+     *
+     * @param other Предыдущий снимок.
+     * @return Изменённые, добавленные и удалённые ключи.
+     */
+    public Set<String> changedKeys(Config other) {
+        Set<String> keys = new HashSet<>(values.keySet());
+        keys.addAll(other.values.keySet());
+        keys.removeIf(key -> Objects.equals(values.get(key), other.values.get(key)));
+        return Collections.unmodifiableSet(keys);
+    }
+
+    private static IllegalArgumentException invalid(String key, String value) {
+        return new IllegalArgumentException("Неверное значение свойства " + key + ": " + value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Config other && values.equals(other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return values.hashCode();
+    }
+}
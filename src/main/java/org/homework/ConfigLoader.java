@@ -1,40 +1,278 @@
 package org.homework;
 
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.logger.Logger;
+
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
- * Загружает конфигурацию из файла application.properties.
+ * Загружает конфигурацию слоями, где каждый следующий слой переопределяет предыдущий:
+ * application.properties из classpath, файл конфигурации рядом с приложением,
+ * переменные окружения (ключ vault.dir читается из VAULT_DIR) и свойства -D, заданные при запуске.
+ * Из окружения и -D берутся и ключи, которых нет в файлах, если они относятся к известному разделу
+ * (первой части ключа из application.properties: bot, vault, outbound и т. д.).
+ * Загруженная конфигурация публикуется неизменяемым снимком через volatile-ссылку,
+ * поэтому чтение не требует блокировок. При изменении файла снимок перезагружается,
+ * а подписчики получают новую версию и применяют изменяемые на лету настройки.
+ * Компоненты читают настройки через {@link #get()} или подписку; в конструкторе, до внедрения
+ * зависимостей, — через {@link #current()}. Системные свойства загрузчик только читает:
+ * значения, в том числе секреты, в них не копируются.
+ * <p>
+ * Без перезапуска применяются outbound.*, cache.*, reencryption.*, logging.async.policy,
+ * bot.language и bot.admins. Остальные настройки, в том числе размеры пулов, буферов и окон,
+ * порты, каталоги, ключи шифрования и выбор реализаций, читаются один раз при запуске.
  */
+@Register
 public class ConfigLoader {
-    private final Properties properties;
+    private static final String RESOURCE = "application.properties";
+    private static final long RELOAD_DELAY_MILLIS = 100; // Ожидание, пока редактор допишет файл
+
+    @Resolve
+    private Logger logger; // Логгер
+
+    private static volatile ConfigLoader lastCreated; // Загрузчик для current()
+
+    private final Path file; // Файл конфигурации (может отсутствовать)
+    private final Set<String> sections = new HashSet<>(); // Разделы ключей: bot, vault, outbound...
+    private final Map<String, String> startupOverrides = new HashMap<>(); // Свойства -D на момент запуска
+    private final List<Consumer<Config>> listeners = new CopyOnWriteArrayList<>();
+    private volatile Config current;
+    private Thread watcher;
 
     public ConfigLoader() {
-        properties = new Properties();
-        loadProperties();
+        file = Paths.get(firstNonBlank(System.getProperty("config.file"), System.getenv("CONFIG_FILE"), RESOURCE))
+                .toAbsolutePath();
+        for (String key : loadResource().stringPropertyNames()) {
+            sections.add(section(key));
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (sections.contains(section(key))) {
+                startupOverrides.put(key, System.getProperty(key));
+            }
+        }
+        current = load();
+        lastCreated = this;
+    }
+
+    /**
+     * Возвращает текущий снимок последнего созданного загрузчика. Нужен компонентам,
+     * которые читают настройки в конструкторе: поля @Resolve в нём ещё не заполнены.
+     * DIContainer создаёт загрузчик раньше остальных компонентов.
+     *
+     * @return Снимок конфигурации.
+     */
+    public static Config current() {
+        ConfigLoader loader = lastCreated;
+        if (loader == null) {
+            throw new IllegalStateException("Конфигурация ещё не загружена");
+        }
+        return loader.get();
+    }
+
+    /**
+     * Возвращает текущий снимок конфигурации.
+     */
+    public Config get() {
+        return current;
+    }
+
+    /**
+     * Возвращает значение свойства по ключу из текущего снимка.
+     *
+     * @param key Ключ свойства.
+     * @return Значение свойства.
+     */
+    public String getProperty(String key) {
+        return current.getString(key);
+    }
+
+    /**
+     * Подписывает получателя на новые снимки конфигурации.
+     * Получатель вызывается в потоке перезагрузки и не должен надолго его занимать.
+     *
+     * @param listener Получатель нового снимка.
+     */
+    public void addListener(Consumer<Config> listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Запускает слежение за файлом конфигурации через WatchService.
+     * Если файла нет, конфигурация остаётся неизменной до перезапуска.
+     */
+    public synchronized void watch() {
+        if (watcher != null) {
+            return;
+        }
+        if (!Files.isRegularFile(file)) {
+            logger.info("Файл конфигурации {} не найден, перезагрузка на лету отключена", file);
+            return;
+        }
+        watcher = new Thread(this::watchLoop, "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+    }
+
+    /**
+     * Перечитывает все слои и публикует новый снимок, если он отличается от текущего.
+     * Если файл не читается или подписчик отклоняет значение, сохраняется прежний снимок.
+     *
+     * @return true, если конфигурация изменилась.
+     */
+    public synchronized boolean reload() {
+        Config next;
+        try {
+            next = load();
+        } catch (RuntimeException e) {
+            logger.error("Ошибка при перезагрузке конфигурации: {}", e.getMessage());
+            return false;
+        }
+        Config previous = current;
+        if (next.equals(previous)) {
+            return false;
+        }
+        current = next;
+        try {
+            listeners.forEach(listener -> listener.accept(next));
+        } catch (RuntimeException e) {
+            // Неверное значение не должно оставить часть компонентов с новыми настройками
+            logger.error("Ошибка при применении конфигурации, сохранены прежние настройки: {}", e.getMessage());
+            current = previous;
+            listeners.forEach(listener -> listener.accept(previous));
+            return false;
+        }
+        logger.info("Конфигурация перезагружена, изменены свойства: {}", new TreeSet<>(next.changedKeys(previous)));
+        return true;
+    }
+
+    private Config load() {
+        Properties properties = loadResource();
+        if (Files.isRegularFile(file)) {
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            } catch (IOException e) {
+                throw new RuntimeException("Ошибка при чтении файла конфигурации " + file, e);
+            }
+        }
+        Map<String, String> values = new HashMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
+        Map<String, String> environment = System.getenv();
+        Set<String> keys = Set.copyOf(values.keySet());
+        Set<String> matched = new HashSet<>();
+        for (String key : keys) {
+            String name = environmentName(key);
+            String value = environment.get(name);
+            if (value != null) {
+                values.put(key, value);
+                matched.add(name);
+            }
+        }
+        // Переменные известных разделов без ключа в файлах: BOT_NEW_OPTION → bot.new.option
+        environment.forEach((name, value) -> {
+            String key = name.toLowerCase(Locale.ROOT).replace('_', '.');
+            if (!matched.contains(name) && name.equals(name.toUpperCase(Locale.ROOT))
+                    && sections.contains(section(key))) {
+                values.put(key, value);
+            }
+        });
+        values.putAll(startupOverrides);
+        return new Config(values);
     }
 
     /**
-     * Загружает свойства из файла application.properties.
+     * Загружает свойства по умолчанию из файла application.properties в classpath.
      */
-    private void loadProperties() {
-        try (InputStream input = getClass().getClassLoader().getResourceAsStream("application.properties")) {
+    private Properties loadResource() {
+        Properties properties = new Properties();
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(RESOURCE)) {
             if (input == null) {
                 throw new RuntimeException("Файл application.properties не найден!");
             }
             properties.load(input);
-        } catch (Exception e) {
+        } catch (IOException e) {
             throw new RuntimeException("Ошибка при загрузке application.properties", e);
         }
+        return properties;
+    }
+
+    private void watchLoop() {
+        Path directory = file.getParent();
+        try (WatchService service = FileSystems.getDefault().newWatchService()) {
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            logger.info("Слежение за файлом конфигурации {}", file);
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || file.getFileName().equals(event.context());
+                }
+                key.reset();
+                if (changed) {
+                    // Сохранение файла часто порождает несколько событий подряд
+                    TimeUnit.MILLISECONDS.sleep(RELOAD_DELAY_MILLIS);
+                    WatchKey more = service.poll();
+                    if (more != null) {
+                        more.pollEvents();
+                        more.reset();
+                    }
+                    reload();
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Ошибка при слежении за файлом конфигурации: {}", e.getMessage());
+        }
     }
 
     /**
-     * Возвращает значение свойства по ключу.
-     *
-     * @param key Ключ свойства.
-     * @return Значение свойства.
+     * Преобразует ключ свойства в имя переменной окружения: outbound.chat.rate → OUTBOUND_CHAT_RATE.
      */
-    public String getProperty(String key) {
-        return properties.getProperty(key);
+    private static String environmentName(String key) {
+        return key.toUpperCase(Locale.ROOT).replace('.', '_').replace('-', '_');
+    }
+
+    /**
+     * Возвращает раздел ключа — часть до первой точки.
+     */
+    private static String section(String key) {
+        int dot = key.indexOf('.');
+        return dot > 0 ? key.substring(0, dot) : "";
+    }
+
+    private static String firstNonBlank(String... values) {
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        return null;
     }
-}
\ No newline at end of file
+}
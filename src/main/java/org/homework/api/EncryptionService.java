@@ -1,5 +1,10 @@
 package org.homework.api;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
 /**
  * Интерфейс для шифрования и дешифрования данных.
  */
@@ -19,4 +24,84 @@ public interface EncryptionService {
      * @return Расшифрованные данные.
      */
     String decrypt(String encryptedData);
+
+    /**
+     * Шифрует байты без промежуточного кодирования в Base64.
+     *
+     * @param data Данные для шифрования.
+     * @return Зашифрованные байты.
+     */
+    byte[] encrypt(byte[] data);
+
+    /**
+     * Дешифрует байты без промежуточного кодирования в Base64.
+     *
+     * @param encryptedData Зашифрованные байты.
+     * @return Расшифрованные байты.
+     */
+    byte[] decrypt(byte[] encryptedData);
+
+    /**
+     * Шифрует байты ключом чата, выработанным из текущего ключа приложения.
+     *
+     * @param chatId ID чата.
+     * @param data   Данные для шифрования.
+     * @return Зашифрованные байты.
+     */
+    byte[] encrypt(String chatId, byte[] data);
+
+    /**
+     * Дешифрует байты, зашифрованные ключом чата или общим ключом прежних форматов.
+     *
+     * @param chatId        ID чата.
+     * @param encryptedData Зашифрованные байты.
+     * @return Расшифрованные байты.
+     */
+    byte[] decrypt(String chatId, byte[] encryptedData);
+
+    /**
+     * Проверяет, зашифрованы ли данные текущим ключом чата и алгоритмом.
+     * Устаревшие шифротексты перешифровываются в фоне.
+     *
+     * @param chatId        ID чата.
+     * @param encryptedData Зашифрованные байты.
+     * @return true, если перешифровывать не нужно.
+     */
+    boolean isCurrent(String chatId, byte[] encryptedData);
+
+    /**
+     * Оборачивает поток так, что записанные в него данные шифруются по мере записи.
+     * Подходит для больших объёмов, например для выгрузки хранилища.
+     * Возвращённый поток нужно закрыть: при закрытии дописывается конец шифротекста.
+     *
+     * @param out Поток для шифротекста.
+     * @return Поток для открытых данных.
+     * @throws IOException Если не удалось записать заголовок.
+     */
+    OutputStream encryptingStream(OutputStream out) throws IOException;
+
+    /**
+     * Оборачивает поток, созданный encryptingStream, так, что из него читаются расшифрованные данные.
+     *
+     * @param in Поток с шифротекстом.
+     * @return Поток открытых данных.
+     * @throws IOException Если заголовок потока не распознан.
+     */
+    InputStream decryptingStream(InputStream in) throws IOException;
+
+    /**
+     * Шифрует пакет данных.
+     *
+     * @param data Данные для шифрования.
+     * @return Зашифрованные данные в том же порядке.
+     */
+    List<String> encryptAll(List<String> data);
+
+    /**
+     * Дешифрует пакет данных.
+     *
+     * @param encryptedData Зашифрованные данные.
+     * @return Расшифрованные данные в том же порядке.
+     */
+    List<String> decryptAll(List<String> encryptedData);
 }
\ No newline at end of file
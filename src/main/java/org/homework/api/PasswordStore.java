@@ -0,0 +1,81 @@
+package org.homework.api;
+
+import org.homework.model.PasswordEntry;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * Интерфейс хранилища записей о паролях.
+ * Записи разделены по ID чата: операции одного чата не затрагивают другие.
+ */
+public interface PasswordStore {
+    /**
+     * Сохраняет запись, заменяя существующую с тем же названием сервиса.
+     *
+     * @param chatId ID чата.
+     * @param entry  Запись о пароле.
+     */
+    void put(String chatId, PasswordEntry entry);
+
+    /**
+     * Возвращает запись по названию сервиса.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     * @return Запись или null, если она не найдена.
+     */
+    PasswordEntry get(String chatId, String name);
+
+    /**
+     * Возвращает запись с расшифрованным паролем, создавая PasswordEntry один раз.
+     * Пароль в хранилище — шифротекст в Base64; расшифровщик получает его исходные байты.
+     *
+     * @param chatId    ID чата.
+     * @param name      Название сервиса.
+     * @param decryptor Функция, превращающая шифротекст в пароль.
+     * @return Запись с открытым паролем или null, если она не найдена.
+     */
+    default PasswordEntry get(String chatId, String name, Function<byte[], String> decryptor) {
+        PasswordEntry entry = get(chatId, name);
+        if (entry == null) {
+            return null;
+        }
+        String password = decryptor.apply(Base64.getDecoder().decode(entry.getPassword()));
+        return new PasswordEntry(entry.getName(), entry.getUsername(), password);
+    }
+
+    /**
+     * Удаляет запись по названию сервиса.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     * @return Удалённая запись или null, если её не было.
+     */
+    PasswordEntry remove(String chatId, String name);
+
+    /**
+     * Выгружает все записи чата из памяти. Используется при вытеснении неактивного чата;
+     * данные на диске не затрагиваются.
+     *
+     * @param chatId ID чата.
+     */
+    void removeChat(String chatId);
+
+    /**
+     * Возвращает названия всех сервисов чата.
+     *
+     * @param chatId ID чата.
+     * @return Список названий сервисов.
+     */
+    List<String> names(String chatId);
+
+    /**
+     * Обходит все записи хранилища.
+     *
+     * @param action Действие, получающее ID чата и запись.
+     */
+    void forEach(BiConsumer<String, PasswordEntry> action);
+}
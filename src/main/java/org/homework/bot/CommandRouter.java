@@ -0,0 +1,194 @@
+package org.homework.bot;
+
+import org.homework.ConfigLoader;
+import org.homework.di.DIContainer;
+import org.homework.di.annotations.Command;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.metrics.LatencyHistogram;
+import org.homework.metrics.Metrics;
+import org.homework.services.Reply;
+import org.homework.services.ResponseRenderer;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Таблица команд бота.
+ * Обработчики находятся по аннотации @Command в зарегистрированных классах.
+ * Команда ищется по первому слову сообщения в хеш-таблице, поэтому новые
+ * команды не замедляют существующие. Аргументы выделяются проходом по строке без split.
+ * Суффикс @имя_бота, который Telegram добавляет к командам в группах, отбрасывается, если это
+ * имя этого бота (bot.username, без учёта регистра); команды другим ботам игнорируются.
+ * Команды без аргументов игнорируют текст после названия, например параметр /start из ссылки t.me/bot?start=...
+ * Обработчик возвращает ответ Telegram API: обычно SendMessage, а для выгрузки — SendDocument.
+ */
+@Register
+public class CommandRouter {
+    @Resolve
+    private DIContainer container; // Контейнер, в котором зарегистрированы обработчики
+
+    @Resolve
+    private ConfigLoader configLoader; // Конфигурация
+
+    @Resolve
+    private Metrics metrics; // Метрики
+
+    @Resolve
+    private ResponseRenderer responseRenderer; // Шаблоны ответов
+
+    private volatile Map<String, Route> routes; // Команды по названию
+
+    /**
+     * Выполняет команду из текста сообщения.
+     *
+     * @param chatId      ID чата.
+     * @param messageText Текст сообщения.
+     * @return Ответ: сообщение или документ; null, если команда адресована другому боту.
+     */
+    public PartialBotApiMethod<?> route(String chatId, String messageText) {
+        int tokenEnd = messageText.indexOf(' ');
+        String token = tokenEnd < 0 ? messageText : messageText.substring(0, tokenEnd);
+        int mention = token.indexOf('@');
+        if (mention > 0) {
+            // /get@PasswordManagerBot в группе
+            if (!token.substring(mention + 1).equalsIgnoreCase(configLoader.get().getString("bot.username", ""))) {
+                return null;
+            }
+            token = token.substring(0, mention);
+        }
+        Route route = routes().get(token);
+        if (route == null) {
+            metrics.counter("bot_unknown_commands_total", "Число сообщений с неизвестной командой").increment();
+            return responseRenderer.message(chatId, Reply.UNKNOWN_COMMAND);
+        }
+
+        Object[] arguments = new Object[route.arity + 1];
+        arguments[0] = chatId;
+        if (!parseArguments(messageText, tokenEnd, arguments)) {
+            return responseRenderer.message(chatId, Reply.INVALID_FORMAT, route.usage);
+        }
+        return route.invoke(arguments);
+    }
+
+    /**
+     * Разбирает аргументы, разделённые пробелами. Последний аргумент получает остаток строки.
+     * Если команда не принимает аргументов, текст после неё не проверяется.
+     *
+     * @param text      Текст сообщения.
+     * @param position  Позиция пробела после команды или -1.
+     * @param arguments Массив аргументов; элемент 0 уже занят ID чата.
+     * @return true, если число аргументов совпадает с ожидаемым.
+     */
+    private static boolean parseArguments(String text, int position, Object[] arguments) {
+        if (arguments.length == 1) {
+            return true;
+        }
+        int length = text.length();
+        int index = position < 0 ? length : position;
+        for (int arg = 1; arg < arguments.length; arg++) {
+            while (index < length && text.charAt(index) == ' ') {
+                index++;
+            }
+            if (index == length) {
+                return false;
+            }
+            int end = arg == arguments.length - 1 ? length : text.indexOf(' ', index);
+            if (end < 0) {
+                return false;
+            }
+            arguments[arg] = text.substring(index, end);
+            index = end;
+        }
+        while (index < length && text.charAt(index) == ' ') {
+            index++;
+        }
+        return index == length;
+    }
+
+    private Map<String, Route> routes() {
+        Map<String, Route> table = routes;
+        if (table == null) {
+            synchronized (this) {
+                table = routes;
+                if (table == null) {
+                    table = buildRoutes();
+                    routes = table;
+                }
+            }
+        }
+        return table;
+    }
+
+    private Map<String, Route> buildRoutes() {
+        Map<String, Route> table = new HashMap<>();
+        for (Method method : container.getCommandMethods()) {
+            Command command = method.getAnnotation(Command.class);
+            if (!PartialBotApiMethod.class.isAssignableFrom(method.getReturnType())) {
+                throw new IllegalStateException("Обработчик команды должен возвращать ответ Telegram API: " + method);
+            }
+            for (Class<?> parameter : method.getParameterTypes()) {
+                if (parameter != String.class) {
+                    throw new IllegalStateException("Параметры обработчика команды должны быть строками: " + method);
+                }
+            }
+            if (method.getParameterCount() == 0) {
+                throw new IllegalStateException("Обработчик команды должен принимать ID чата: " + method);
+            }
+            method.setAccessible(true);
+            Route route = new Route(container.resolve(method.getDeclaringClass()), method,
+                    command.usage().isEmpty() ? command.value() : command.usage(),
+                    metrics.histogram("bot_command_duration_seconds", "Время выполнения обработчика команды",
+                            "command", command.value()),
+                    metrics.counter("bot_command_errors_total", "Число исключений в обработчике команды",
+                            "command", command.value()));
+            if (table.put(command.value(), route) != null) {
+                throw new IllegalStateException("Команда зарегистрирована дважды: " + command.value());
+            }
+        }
+        return table;
+    }
+
+    /**
+     * Обработчик команды с привязанным экземпляром сервиса и его метриками.
+     */
+    private static final class Route {
+        private final Object target;
+        private final Method method;
+        private final int arity;
+        private final String usage;
+        private final LatencyHistogram latency;
+        private final LongAdder errors;
+
+        private Route(Object target, Method method, String usage, LatencyHistogram latency, LongAdder errors) {
+            this.target = target;
+            this.method = method;
+            this.arity = method.getParameterCount() - 1;
+            this.usage = usage;
+            this.latency = latency;
+            this.errors = errors;
+        }
+
+        private PartialBotApiMethod<?> invoke(Object[] arguments) {
+            long started = System.nanoTime();
+            try {
+                return (PartialBotApiMethod<?>) method.invoke(target, arguments);
+            } catch (InvocationTargetException e) {
+                errors.increment();
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException runtimeException) {
+                    throw runtimeException;
+                }
+                throw new RuntimeException("Ошибка при выполнении команды " + method.getName(), cause);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException("Нет доступа к обработчику команды " + method.getName(), e);
+            } finally {
+                latency.recordSince(started);
+            }
+        }
+    }
+}
\ No newline at end of file
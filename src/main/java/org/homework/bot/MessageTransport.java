@@ -0,0 +1,20 @@
+package org.homework.bot;
+
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Канал отправки сообщений в Telegram API.
+ * Отделяет OutboundScheduler от бота, чтобы планировщик можно было проверить на заглушке.
+ */
+@FunctionalInterface
+public interface MessageTransport {
+    /**
+     * Асинхронно выполняет запрос: отправку или изменение сообщения.
+     *
+     * @param method Запрос к Telegram API.
+     * @return Future, завершающийся после ответа API.
+     */
+    CompletableFuture<?> send(BotApiMethod<?> method);
+}
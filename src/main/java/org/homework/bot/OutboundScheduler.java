@@ -0,0 +1,397 @@
+package org.homework.bot;
+
+import org.homework.Config;
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.logger.Logger;
+import org.homework.metrics.Metrics;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.ResponseParameters;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Планировщик исходящих сообщений.
+ * Учитывает ограничения Telegram: ведро токенов на каждый чат и общее ведро на бота.
+ * Пока чат ждёт токен или предыдущую отправку, новые тексты копятся и уходят одним сообщением.
+ * Кроме SendMessage в очередь чата можно поставить и другие запросы, например изменение сообщения;
+ * они отправляются по порядку, но не объединяются.
+ * Ответ 429 откладывает отправку в чат на время retry_after.
+ * Лимиты можно изменить без перезапуска через applyConfig.
+ * Всё состояние очередей принадлежит одному потоку; остальные потоки передают ему события.
+ */
+@Register
+public class OutboundScheduler {
+    private static final int MAX_MESSAGE_LENGTH = 4096; // Ограничение Telegram на длину текста
+    private static final String MERGE_SEPARATOR = "\n\n";
+    private static final long DEFAULT_RETRY_AFTER_SECONDS = 1;
+    private static final long IDLE_CLEANUP_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    @Resolve
+    private Metrics metrics; // Метрики
+
+    @Resolve
+    private Logger logger; // Логгер
+
+    @Resolve
+    private ConfigLoader configLoader; // Конфигурация
+
+    private final BlockingQueue<Runnable> events = new LinkedBlockingQueue<>(); // События для потока планировщика
+    private final Map<String, Outbox> outboxes = new HashMap<>(); // Очереди чатов
+    private final Set<Outbox> ready = new LinkedHashSet<>(); // Чаты, готовые к отправке, по кругу
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final LongAdder sentMessages = new LongAdder();
+    private final LongAdder mergedMessages = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder failedMessages = new LongAdder();
+    private final LongAdder sendLatencyNanos = new LongAdder();
+    private final AtomicLong maxSendLatencyNanos = new AtomicLong();
+
+    private volatile MessageTransport transport;
+    private TokenBucket globalBucket;
+    private double chatRate;
+    private int chatBurst;
+    private long lastCleanup;
+
+    /**
+     * Запускает поток планировщика.
+     * Лимиты задаются свойствами outbound.chat.rate, outbound.chat.burst и outbound.global.rate.
+     *
+     * @param transport Канал отправки сообщений.
+     */
+    public synchronized void start(MessageTransport transport) {
+        if (this.transport != null) {
+            return;
+        }
+        long now = System.nanoTime();
+        Config config = configLoader.get();
+        chatRate = config.getDouble("outbound.chat.rate", 1);
+        chatBurst = config.getInt("outbound.chat.burst", 3);
+        double globalRate = config.getDouble("outbound.global.rate", 30);
+        globalBucket = new TokenBucket(globalRate, (int) Math.ceil(globalRate), now);
+        lastCleanup = now;
+        this.transport = transport;
+        registerMetrics();
+
+        Thread thread = new Thread(this::run, "outbound-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Применяет новые лимиты из конфигурации. Вёдра всех чатов пересоздаются полными.
+     *
+     * @param config Снимок конфигурации.
+     */
+    public void applyConfig(Config config) {
+        double newChatRate = config.getDouble("outbound.chat.rate", 1);
+        int newChatBurst = config.getInt("outbound.chat.burst", 3);
+        double globalRate = config.getDouble("outbound.global.rate", 30);
+        if (transport == null) {
+            return; // Лимиты будут прочитаны при запуске
+        }
+        events.add(() -> {
+            long now = System.nanoTime();
+            chatRate = newChatRate;
+            chatBurst = newChatBurst;
+            globalBucket = new TokenBucket(globalRate, (int) Math.ceil(globalRate), now);
+            outboxes.values().forEach(outbox -> outbox.bucket = new TokenBucket(chatRate, chatBurst, now));
+        });
+    }
+
+    /**
+     * Ставит сообщение в очередь на отправку.
+     *
+     * @param message Сообщение.
+     * @return Future, завершающийся после доставки сообщения.
+     */
+    public CompletableFuture<Void> submit(SendMessage message) {
+        return submit(message.getChatId(), message);
+    }
+
+    /**
+     * Ставит запрос к Telegram API в очередь чата на отправку.
+     *
+     * @param chatId ID чата, к лимитам которого относится запрос.
+     * @param method Запрос.
+     * @return Future, завершающийся после выполнения запроса.
+     */
+    public CompletableFuture<Void> submit(String chatId, BotApiMethod<?> method) {
+        if (transport == null) {
+            throw new IllegalStateException("Планировщик исходящих сообщений не запущен");
+        }
+        Pending pending = new Pending(chatId, method);
+        queueDepth.incrementAndGet();
+        events.add(() -> enqueue(pending));
+        return pending.done;
+    }
+
+    /**
+     * Возвращает число сообщений, ожидающих отправки.
+     */
+    public int getQueueDepth() {
+        return queueDepth.get();
+    }
+
+    /**
+     * Возвращает число выполненных запросов отправки.
+     */
+    public long getSentCount() {
+        return sentMessages.sum();
+    }
+
+    /**
+     * Возвращает число сообщений, объединённых с предыдущими.
+     */
+    public long getMergedCount() {
+        return mergedMessages.sum();
+    }
+
+    /**
+     * Возвращает число ответов 429 от Telegram.
+     */
+    public long getRateLimitedCount() {
+        return rateLimited.sum();
+    }
+
+    /**
+     * Возвращает число сообщений, которые не удалось отправить.
+     */
+    public long getFailedCount() {
+        return failedMessages.sum();
+    }
+
+    /**
+     * Возвращает среднюю задержку отправки в миллисекундах.
+     */
+    public double getAverageSendLatencyMillis() {
+        long sent = sentMessages.sum();
+        return sent == 0 ? 0 : sendLatencyNanos.sum() / (double) sent / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * Возвращает максимальную задержку отправки в миллисекундах.
+     */
+    public double getMaxSendLatencyMillis() {
+        return maxSendLatencyNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    private void registerMetrics() {
+        metrics.gauge("outbound_queue_depth", "Число сообщений, ожидающих отправки", this::getQueueDepth);
+        metrics.counter("outbound_merged_total", "Число сообщений, объединённых с предыдущими", this::getMergedCount);
+        metrics.counter("outbound_rate_limited_total", "Число ответов 429 от Telegram", this::getRateLimitedCount);
+        metrics.counter("outbound_failed_total", "Число сообщений, которые не удалось отправить", this::getFailedCount);
+    }
+
+    private void run() {
+        while (!Thread.currentThread().isInterrupted()) {
+            long wait = dispatchReady();
+            Runnable event;
+            try {
+                event = wait < 0 ? events.take() : events.poll(wait, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            while (event != null) {
+                event.run();
+                event = events.poll();
+            }
+            removeIdleChats();
+        }
+    }
+
+    private void enqueue(Pending pending) {
+        Outbox outbox = outboxes.computeIfAbsent(pending.chatId,
+                id -> new Outbox(id, new TokenBucket(chatRate, chatBurst, System.nanoTime())));
+        outbox.pending.add(pending);
+        if (!outbox.inFlight) {
+            ready.add(outbox);
+        }
+    }
+
+    /**
+     * Отправляет сообщения во все чаты, для которых есть токены.
+     *
+     * @return Время до следующей возможной отправки в наносекундах или -1, если ждать нечего.
+     */
+    private long dispatchReady() {
+        long now = System.nanoTime();
+        long wait = -1;
+        Iterator<Outbox> iterator = ready.iterator();
+        while (iterator.hasNext()) {
+            Outbox outbox = iterator.next();
+            long chatWait = Math.max(outbox.blockedUntil - now, outbox.bucket.waitTime(now));
+            if (chatWait > 0) {
+                wait = wait < 0 ? chatWait : Math.min(wait, chatWait);
+                continue;
+            }
+            long globalWait = globalBucket.tryAcquire(now);
+            if (globalWait > 0) {
+                return wait < 0 ? globalWait : Math.min(wait, globalWait);
+            }
+            outbox.bucket.tryAcquire(now);
+            iterator.remove();
+            send(outbox);
+        }
+        return wait;
+    }
+
+    private void send(Outbox outbox) {
+        List<Pending> batch = new ArrayList<>();
+        Pending first = outbox.pending.poll();
+        batch.add(first);
+        BotApiMethod<?> message = first.message;
+
+        if (isMergeable(first.message)) {
+            String firstText = ((SendMessage) first.message).getText();
+            StringBuilder text = null;
+            int length = firstText.length();
+            for (Pending next = outbox.pending.peek(); next != null && isMergeable(next.message); next = outbox.pending.peek()) {
+                String nextText = ((SendMessage) next.message).getText();
+                int nextLength = length + MERGE_SEPARATOR.length() + nextText.length();
+                if (nextLength > MAX_MESSAGE_LENGTH) {
+                    break;
+                }
+                if (text == null) {
+                    text = new StringBuilder(firstText);
+                }
+                text.append(MERGE_SEPARATOR).append(nextText);
+                batch.add(outbox.pending.poll());
+                length = nextLength;
+            }
+            if (text != null) {
+                message = new SendMessage(outbox.chatId, text.toString());
+                mergedMessages.add(batch.size() - 1);
+            }
+        }
+
+        outbox.inFlight = true;
+        long started = System.nanoTime();
+        CompletableFuture<?> result;
+        try {
+            result = transport.send(message);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((response, error) -> events.add(() -> onSent(outbox, batch, started, error)));
+    }
+
+    private void onSent(Outbox outbox, List<Pending> batch, long started, Throwable error) {
+        long now = System.nanoTime();
+        outbox.inFlight = false;
+        metrics.histogram("outbound_request_duration_seconds", "Время выполнения запроса к Telegram API",
+                "method", batch.get(0).message.getMethod()).record(now - started);
+        if (error == null) {
+            long latency = now - started;
+            sentMessages.increment();
+            sendLatencyNanos.add(latency);
+            maxSendLatencyNanos.accumulateAndGet(latency, Math::max);
+            queueDepth.addAndGet(-batch.size());
+            batch.forEach(pending -> pending.done.complete(null));
+        } else {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            long retryAfter = retryAfterSeconds(cause);
+            if (retryAfter >= 0) {
+                rateLimited.increment();
+                outbox.blockedUntil = now + TimeUnit.SECONDS.toNanos(retryAfter);
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    outbox.pending.addFirst(batch.get(i));
+                }
+            } else {
+                failedMessages.add(batch.size());
+                queueDepth.addAndGet(-batch.size());
+                logger.error("Ошибка при отправке сообщения: {}", cause.getMessage());
+                batch.forEach(pending -> pending.done.completeExceptionally(cause));
+            }
+        }
+        if (!outbox.pending.isEmpty()) {
+            ready.add(outbox);
+        }
+    }
+
+    private static boolean isMergeable(BotApiMethod<?> method) {
+        return method instanceof SendMessage message && message.getReplyMarkup() == null && message.getParseMode() == null;
+    }
+
+    /**
+     * Определяет, сколько секунд ждать после ошибки.
+     *
+     * @return Число секунд или -1, если ошибка не связана с ограничением частоты.
+     */
+    private static long retryAfterSeconds(Throwable error) {
+        if (error instanceof TelegramApiRequestException requestException) {
+            ResponseParameters parameters = requestException.getParameters();
+            if (parameters != null && parameters.getRetryAfter() != null) {
+                return parameters.getRetryAfter();
+            }
+            Integer errorCode = requestException.getErrorCode();
+            if (errorCode != null && errorCode == 429) {
+                return DEFAULT_RETRY_AFTER_SECONDS;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Удаляет очереди чатов, которые ничего не ждут и уже восстановили лимит.
+     */
+    private void removeIdleChats() {
+        long now = System.nanoTime();
+        if (now - lastCleanup < IDLE_CLEANUP_NANOS) {
+            return;
+        }
+        lastCleanup = now;
+        outboxes.values().removeIf(outbox -> outbox.pending.isEmpty() && !outbox.inFlight
+                && outbox.blockedUntil - now <= 0 && outbox.bucket.isFull(now));
+    }
+
+    /**
+     * Очередь сообщений одного чата.
+     */
+    private static final class Outbox {
+        private final String chatId;
+        private TokenBucket bucket;
+        private final Deque<Pending> pending = new ArrayDeque<>();
+        private boolean inFlight; // Идёт отправка в этот чат
+        private long blockedUntil; // Отправка отложена из-за retry_after
+
+        private Outbox(String chatId, TokenBucket bucket) {
+            this.chatId = chatId;
+            this.bucket = bucket;
+        }
+    }
+
+    /**
+     * Запрос, ожидающий отправки.
+     */
+    private static final class Pending {
+        private final String chatId;
+        private final BotApiMethod<?> message;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private Pending(String chatId, BotApiMethod<?> message) {
+            this.chatId = chatId;
+            this.message = message;
+        }
+    }
+}
\ No newline at end of file
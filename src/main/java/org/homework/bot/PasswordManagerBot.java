@@ -1,75 +1,292 @@
 package org.homework.bot;
 
+import org.homework.Config;
+import org.homework.ConfigLoader;
 import org.homework.di.annotations.Register;
 import org.homework.di.annotations.Resolve;
 import org.homework.logger.Logger;
-import org.homework.services.CommandService;
+import org.homework.metrics.LatencyHistogram;
+import org.homework.metrics.Metrics;
+import org.homework.services.Reply;
+import org.homework.services.ResponseRenderer;
+import org.homework.services.ServiceListPager;
+import org.homework.services.VaultTransferService;
+import org.telegram.telegrambots.bots.DefaultBotOptions;
 import org.telegram.telegrambots.bots.TelegramLongPollingBot;
+import org.telegram.telegrambots.meta.api.methods.AnswerCallbackQuery;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.GetFile;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
 import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updates.GetUpdates;
+import org.telegram.telegrambots.meta.api.objects.CallbackQuery;
+import org.telegram.telegrambots.meta.api.objects.Document;
+import org.telegram.telegrambots.meta.api.objects.Message;
 import org.telegram.telegrambots.meta.api.objects.Update;
 import org.telegram.telegrambots.meta.exceptions.TelegramApiException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Основной класс бота, обрабатывающий входящие сообщения.
+ * Обновления передаются в UpdateDispatcher, поэтому поток long polling
+ * (или обработчик webhook) не ждёт ни обработки команд, ни отправки ответов.
+ * Ответы уходят через OutboundScheduler с учётом ограничений Telegram.
+ * Нажатия кнопок перелистывания списка изменяют уже отправленное сообщение.
+ * Документ с подписью /import скачивается и передаётся в VaultTransferService.
  */
 @Register
 public class PasswordManagerBot extends TelegramLongPollingBot {
+    private static final int DEFAULT_SENDER_THREADS = 16; // Потоков для асинхронной отправки
+    private static final String UPDATES_METRIC = "bot_updates_total";
+    private static final String UPDATES_HELP = "Число полученных обновлений по типу";
+
+    @Resolve
+    private CommandRouter commandRouter; // Таблица команд
+
+    @Resolve
+    private UpdateDispatcher updateDispatcher; // Диспетчер обновлений по чатам
+
+    @Resolve
+    private OutboundScheduler outboundScheduler; // Планировщик исходящих сообщений
+
+    @Resolve
+    private ServiceListPager serviceListPager; // Постраничный вывод списка сервисов
+
+    @Resolve
+    private VaultTransferService vaultTransferService; // Импорт и выгрузка паролей
+
+    @Resolve
+    private ResponseRenderer responseRenderer; // Шаблоны ответов
+
     @Resolve
-    private CommandService commandService; // Сервис для обработки команд
+    private UpdateDeduplicator updateDeduplicator; // Отсев повторно доставленных обновлений
+
+    @Resolve
+    private Metrics metrics; // Метрики
+
+    @Resolve
+    private ConfigLoader configLoader; // Конфигурация
 
     @Resolve
     private Logger logger; // Логгер
 
+    public PasswordManagerBot() {
+        super(createOptions());
+    }
+
+    /**
+     * Создаёт настройки бота. Число потоков отправки задаётся свойством bot.sender.threads,
+     * адрес Bot API — свойством bot.api.url (например, локальный имитатор для нагрузочных тестов).
+     * Вызывается из конструктора, до внедрения configLoader, поэтому читает {@link ConfigLoader#current()}.
+     *
+     * @return Настройки бота.
+     */
+    private static DefaultBotOptions createOptions() {
+        Config config = ConfigLoader.current();
+        DefaultBotOptions options = new DefaultBotOptions();
+        options.setMaxThreads(config.getInt("bot.sender.threads", DEFAULT_SENDER_THREADS));
+        String apiUrl = config.getString("bot.api.url", null);
+        if (apiUrl != null) {
+            options.setBaseUrl(apiUrl);
+        }
+        return options;
+    }
+
     @Override
     public String getBotUsername() {
-        return System.getProperty("bot.username");
+        return configLoader.get().getString("bot.username");
     }
 
     @Override
     public String getBotToken() {
-        return System.getProperty("bot.token");
+        return configLoader.get().getString("bot.token");
     }
 
     @Override
     public void onUpdateReceived(Update update) {
+        handle(update);
+    }
+
+    /**
+     * Передаёт обновление в очередь его чата. Общая точка входа для long polling и webhook.
+     * Повторно доставленные обновления пропускаются.
+     *
+     * @param update Обновление.
+     * @return Future, завершающийся после обработки обновления.
+     */
+    public CompletableFuture<Void> handle(Update update) {
+        Integer updateId = update.getUpdateId();
+        if (updateId != null && !updateDeduplicator.begin(updateId)) {
+            metrics.counter(UPDATES_METRIC, UPDATES_HELP, "type", "duplicate").increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        CompletableFuture<Void> done = dispatch(update);
+        if (updateId != null) {
+            done.whenComplete((result, error) -> updateDeduplicator.complete(updateId));
+        }
+        return done;
+    }
+
+    private CompletableFuture<Void> dispatch(Update update) {
+        long started = System.nanoTime();
+        CompletableFuture<Void> done;
         if (update.hasMessage() && update.getMessage().hasText()) {
             String messageText = update.getMessage().getText();
             String chatId = update.getMessage().getChatId().toString();
+            metrics.counter(UPDATES_METRIC, UPDATES_HELP, "type", "message").increment();
+            if (update.getMessage().getFrom() != null) {
+                responseRenderer.detectLanguage(chatId, update.getMessage().getFrom().getLanguageCode());
+            }
+            done = updateDispatcher.dispatch(chatId, () -> send(commandRouter.route(chatId, messageText)));
+        } else if (update.hasMessage() && update.getMessage().hasDocument()) {
+            Message message = update.getMessage();
+            String chatId = message.getChatId().toString();
+            metrics.counter(UPDATES_METRIC, UPDATES_HELP, "type", "document").increment();
+            done = updateDispatcher.dispatch(chatId, () -> send(importDocument(chatId, message)));
+        } else if (update.hasCallbackQuery() && update.getCallbackQuery().getMessage() != null
+                && serviceListPager.handles(update.getCallbackQuery().getData())) {
+            CallbackQuery query = update.getCallbackQuery();
+            String chatId = query.getMessage().getChatId().toString();
+            Integer messageId = query.getMessage().getMessageId();
+            metrics.counter(UPDATES_METRIC, UPDATES_HELP, "type", "callback").increment();
+            done = updateDispatcher.dispatch(chatId, () -> turnPage(chatId, messageId, query));
+        } else {
+            metrics.counter(UPDATES_METRIC, UPDATES_HELP, "type", "ignored").increment();
+            return CompletableFuture.completedFuture(null);
+        }
+        LatencyHistogram latency = metrics.histogram("bot_update_duration_seconds",
+                "Время от получения обновления до конца его обработки, включая ожидание в очереди чата");
+        done.whenComplete((result, error) -> latency.recordSince(started));
+        return done;
+    }
 
-            try {
-                if (messageText.startsWith("/start")) {
-                    execute(commandService.start(chatId));
-                } else if (messageText.startsWith("/add")) {
-                    String[] parts = messageText.split(" ", 4);
-                    if (parts.length == 4) {
-                        execute(commandService.addPassword(chatId, parts[1], parts[2], parts[3]));
-                    } else {
-                        execute(new SendMessage(chatId, "Неверный формат команды. Используйте /add <service> <username> <password>"));
-                    }
-                } else if (messageText.startsWith("/get")) {
-                    String[] parts = messageText.split(" ", 2);
-                    if (parts.length == 2) {
-                        execute(commandService.getPassword(chatId, parts[1]));
-                    } else {
-                        execute(new SendMessage(chatId, "Неверный формат команды. Используйте /get <service>"));
-                    }
-                } else if (messageText.startsWith("/delete")) {
-                    String[] parts = messageText.split(" ", 2);
-                    if (parts.length == 2) {
-                        execute(commandService.deletePassword(chatId, parts[1]));
-                    } else {
-                        execute(new SendMessage(chatId, "Неверный формат команды. Используйте /delete <service>"));
-                    }
-                } else if (messageText.equals("/list")) {
-                    execute(commandService.listPasswords(chatId));
-                } else if (messageText.equals("/help")) {
-                    execute(commandService.getHelp(chatId));
-                } else {
-                    execute(new SendMessage(chatId, "Неизвестная команда. Используйте /help для списка команд."));
-                }
-            } catch (TelegramApiException e) {
-                logger.error("Ошибка при обработке команды: " + e.getMessage());
+    /**
+     * Подтверждает Telegram обновления, обработанные до перезапуска, передавая в getUpdates
+     * сохранённый offset. Вызывается перед запуском long polling, чтобы Telegram не отдавал их снова.
+     * Ошибка не мешает запуску: повторы всё равно отсекает UpdateDeduplicator.
+     */
+    public void confirmProcessedUpdates() {
+        long offset = updateDeduplicator.getConfirmOffset();
+        if (offset <= 0) {
+            return;
+        }
+        try {
+            clearWebhook(); // getUpdates недоступен, пока установлен webhook
+            execute(GetUpdates.builder().offset((int) offset).limit(1).timeout(0).build());
+            logger.info("Обновления до ID {} подтверждены", offset - 1);
+        } catch (TelegramApiException e) {
+            logger.warn("Не удалось подтвердить обработанные обновления: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void onClosing() {
+        updateDispatcher.shutdown();
+        super.onClosing();
+    }
+
+    /**
+     * Выполняет запрос к Telegram API. Используется как MessageTransport для OutboundScheduler.
+     *
+     * @param method Запрос.
+     * @return Future с ответом API.
+     */
+    public <T extends Serializable> CompletableFuture<T> deliver(BotApiMethod<T> method) {
+        try {
+            return executeAsync(method);
+        } catch (TelegramApiException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Скачивает документ с подписью /import и импортирует из него пароли.
+     * Документ без такой подписи не скачивается, а в ответ приходит подсказка.
+     *
+     * @param chatId  ID чата.
+     * @param message Сообщение с документом.
+     * @return Сообщение с результатом импорта.
+     */
+    private SendMessage importDocument(String chatId, Message message) {
+        String caption = message.getCaption();
+        if (caption == null || !caption.trim().equals(VaultTransferService.IMPORT_COMMAND)) {
+            return vaultTransferService.importHelp(chatId);
+        }
+        Document document = message.getDocument();
+        try (InputStream content = downloadFileAsStream(execute(new GetFile(document.getFileId())))) {
+            return vaultTransferService.importDocument(chatId, document.getFileName(), content);
+        } catch (TelegramApiException | IOException e) {
+            logger.error("Не удалось скачать файл для импорта: {}", e.getMessage());
+            return responseRenderer.message(chatId, Reply.IMPORT_DOWNLOAD_FAILED);
+        }
+    }
+
+    /**
+     * Подтверждает нажатие кнопки и ставит в очередь изменение сообщения со списком.
+     *
+     * @param chatId    ID чата.
+     * @param messageId ID сообщения со списком.
+     * @param query     Нажатие кнопки.
+     * @return Завершённый future.
+     */
+    private CompletableFuture<?> turnPage(String chatId, Integer messageId, CallbackQuery query) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery();
+        answer.setCallbackQueryId(query.getId());
+        deliver(answer).whenComplete((result, error) -> {
+            if (error != null) {
+                logger.warn("Не удалось подтвердить нажатие кнопки: {}", error.getMessage());
             }
+        });
+        outboundScheduler.submit(chatId, serviceListPager.turn(chatId, messageId, query.getData()));
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Ставит ответ в очередь отправки. Порядок ответов в чате сохраняет планировщик,
+     * поэтому следующая команда чата не ждёт доставки и ответы могут быть объединены.
+     * Документ загружается сразу, и следующая команда чата ждёт окончания загрузки.
+     *
+     * @param response Сообщение, документ или null, если отвечать не нужно.
+     * @return Future отправки документа или завершённый future.
+     */
+    private CompletableFuture<?> send(PartialBotApiMethod<?> response) {
+        if (response == null) {
+            return CompletableFuture.completedFuture(null); // Команда другому боту в группе
         }
+        if (response instanceof SendMessage message) {
+            outboundScheduler.submit(message);
+            return CompletableFuture.completedFuture(null);
+        }
+        if (response instanceof SendDocument document) {
+            return upload(document);
+        }
+        throw new IllegalStateException("Неподдерживаемый тип ответа: " + response.getClass().getSimpleName());
+    }
+
+    /**
+     * Загружает документ и после загрузки закрывает поток с его содержимым.
+     *
+     * @param document Документ.
+     * @return Future загрузки.
+     */
+    private CompletableFuture<?> upload(SendDocument document) {
+        InputStream content = document.getDocument().getNewMediaStream();
+        return executeAsync(document).whenComplete((result, error) -> {
+            if (error != null) {
+                logger.error("Не удалось отправить документ: {}", error.getMessage());
+            }
+            if (content != null) {
+                try {
+                    content.close();
+                } catch (IOException e) {
+                    logger.warn("Не удалось закрыть поток документа: {}", e.getMessage());
+                }
+            }
+        });
     }
 }
\ No newline at end of file
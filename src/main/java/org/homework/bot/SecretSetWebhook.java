@@ -0,0 +1,29 @@
+package org.homework.bot;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import org.telegram.telegrambots.meta.api.methods.updates.SetWebhook;
+
+/**
+ * Регистрация webhook с секретом, который Telegram будет передавать в заголовке
+ * X-Telegram-Bot-Api-Secret-Token каждого запроса. В используемой версии telegrambots
+ * у SetWebhook нет поля secret_token, поэтому оно добавлено здесь.
+ */
+public class SecretSetWebhook extends SetWebhook {
+    @JsonProperty("secret_token")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String secretToken;
+
+    /**
+     * @param url         Адрес webhook.
+     * @param secretToken Секрет или null, если он не нужен.
+     */
+    public SecretSetWebhook(String url, String secretToken) {
+        super(url);
+        this.secretToken = secretToken;
+    }
+
+    public String getSecretToken() {
+        return secretToken;
+    }
+}
@@ -0,0 +1,62 @@
+package org.homework.bot;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ведро токенов для ограничения частоты отправки.
+ * Не потокобезопасно: используется только потоком OutboundScheduler.
+ */
+final class TokenBucket {
+    private final double capacity; // Максимальный запас токенов
+    private final double tokensPerNano; // Скорость пополнения
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double ratePerSecond, int burst, long now) {
+        this.capacity = Math.max(1, burst);
+        this.tokensPerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.tokens = capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Пытается взять токен.
+     *
+     * @param now Текущее время в наносекундах.
+     * @return 0, если токен взят, иначе время ожидания следующего токена в наносекундах.
+     */
+    long tryAcquire(long now) {
+        refill(now);
+        if (tokens >= 1) {
+            tokens -= 1;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    /**
+     * Возвращает время до появления токена, не забирая его.
+     *
+     * @param now Текущее время в наносекундах.
+     * @return 0, если токен доступен, иначе время ожидания в наносекундах.
+     */
+    long waitTime(long now) {
+        refill(now);
+        return tokens >= 1 ? 0 : Math.max(1, (long) Math.ceil((1 - tokens) / tokensPerNano));
+    }
+
+    /**
+     * Проверяет, заполнено ли ведро полностью (чат давно ничего не отправлял).
+     */
+    boolean isFull(long now) {
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        if (now > refilledAt) {
+            tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package org.homework.bot;
+
+import org.homework.Config;
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.logger.Logger;
+import org.homework.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отбрасывает повторно доставленные обновления по update_id.
+ * Telegram повторяет обновления после сбоев сети в long polling и при неответе webhook,
+ * и без проверки /add или /delete выполнялись бы дважды, а пользователь получал бы два ответа.
+ * <p>
+ * Подтверждённым считается наибольший ID, до которого включительно все обновления обработаны.
+ * Обновления с ID не больше подтверждённого — повторы. Для следующих window ID ведутся
+ * два кольцевых битовых массива: полученные и обработанные, поэтому память не зависит
+ * от нагрузки. Обновление, которое дальше подтверждённого больше чем на window,
+ * сдвигает окно вперёд: пропуски в ID перед ним считаются потерянными обновлениями.
+ * <p>
+ * Если обновлений не было неделю, Telegram выбирает следующий update_id случайно, и он может
+ * оказаться меньше подтверждённого. ID, который меньше подтверждённого больше чем на window,
+ * считается началом новой последовательности: окно очищается и отсчёт начинается с него.
+ * <p>
+ * Подтверждённый ID периодически сохраняется в файл update-offset в vault.dir. После перезапуска
+ * бот передаёт его в getUpdates как offset (см. {@link #getConfirmOffset()}), и Telegram
+ * не отдаёт уже обработанные обновления, а если они всё же придут, их отсекает окно.
+ */
+@Register
+public class UpdateDeduplicator {
+    private static final String OFFSET_FILE = "update-offset";
+    private static final int DEFAULT_WINDOW = 4096;
+    private static final long DEFAULT_FLUSH_MILLIS = 1000;
+    private static final long NONE = -1; // Ещё не получено ни одного обновления
+    private static final long SEQUENCE_RESET_MILLIS = TimeUnit.DAYS.toMillis(7); // Простой, после которого ID случайны
+
+    @Resolve
+    private Metrics metrics; // Метрики
+
+    @Resolve
+    private Logger logger; // Логгер
+
+    @Resolve
+    private ConfigLoader configLoader; // Конфигурация
+
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder windowShifts = new LongAdder();
+    private final LongAdder sequenceResets = new LongAdder();
+
+    private Path file;
+    private long[] received; // Полученные ID из окна, бит (id & mask)
+    private long[] processed; // Обработанные ID из окна
+    private int window;
+    private long committed = NONE; // Все ID до этого включительно обработаны
+    private long highest = NONE; // Наибольший полученный ID
+    private volatile long saved = NONE; // Последний записанный в файл ID
+    private volatile long savedAt; // Время записи saved в миллисекундах
+    private ScheduledExecutorService writer;
+
+    /**
+     * Отмечает начало обработки обновления.
+     *
+     * @param updateId ID обновления.
+     * @return false, если обновление уже было получено и его нужно пропустить.
+     */
+    public synchronized boolean begin(long updateId) {
+        ensureLoaded();
+        if (committed == NONE) {
+            committed = updateId - 1;
+            highest = committed;
+        }
+        if (committed - updateId > window) {
+            resetTo(updateId);
+        } else if (updateId <= committed) {
+            duplicates.increment();
+            return false;
+        }
+        if (updateId > committed + window) {
+            shiftTo(updateId - window);
+        }
+        if (isSet(received, updateId)) {
+            duplicates.increment();
+            return false;
+        }
+        set(received, updateId);
+        highest = Math.max(highest, updateId);
+        return true;
+    }
+
+    /**
+     * Отмечает обновление обработанным, в том числе с ошибкой: повторная попытка
+     * только повторила бы уже сделанные изменения.
+     *
+     * @param updateId ID обновления, для которого begin вернул true.
+     */
+    public synchronized void complete(long updateId) {
+        if (updateId <= committed) {
+            return; // Окно уже сдвинуто дальше
+        }
+        set(processed, updateId);
+        advance();
+    }
+
+    /**
+     * Возвращает наибольший ID, до которого включительно все обновления обработаны, или -1.
+     */
+    public synchronized long getCommittedId() {
+        ensureLoaded();
+        return committed;
+    }
+
+    /**
+     * Возвращает offset для getUpdates, подтверждающий Telegram обновления, обработанные до перезапуска.
+     * Если ID сохранён больше недели назад, Telegram мог начать новую последовательность с меньших ID,
+     * и такой offset подтвердил бы ещё не полученные обновления, поэтому возвращается 0.
+     *
+     * @return Подтверждённый ID + 1 или 0, если подтверждать нечего.
+     */
+    public synchronized long getConfirmOffset() {
+        ensureLoaded();
+        if (committed == NONE || System.currentTimeMillis() - savedAt >= SEQUENCE_RESET_MILLIS) {
+            return 0;
+        }
+        return committed + 1;
+    }
+
+    /**
+     * Возвращает число отброшенных повторов.
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Возвращает число сдвигов окна из-за пропусков в ID.
+     */
+    public long getWindowShiftCount() {
+        return windowShifts.sum();
+    }
+
+    /**
+     * Возвращает число случаев, когда Telegram начал новую последовательность update_id.
+     */
+    public long getSequenceResetCount() {
+        return sequenceResets.sum();
+    }
+
+    /**
+     * Начинает новую последовательность с updateId и сразу сохраняет её начало,
+     * чтобы после перезапуска не сравнивать новые ID со старой последовательностью.
+     */
+    private void resetTo(long updateId) {
+        sequenceResets.increment();
+        logger.warn("update_id {} намного меньше подтверждённого {}: Telegram начал новую последовательность",
+                updateId, committed);
+        Arrays.fill(received, 0);
+        Arrays.fill(processed, 0);
+        committed = updateId - 1;
+        highest = committed;
+        writer.execute(this::saveSafely);
+    }
+
+    /**
+     * Сдвигает окно так, чтобы подтверждённым стал ID newCommitted, и очищает биты вышедших ID.
+     */
+    private void shiftTo(long newCommitted) {
+        windowShifts.increment();
+        if (newCommitted - committed >= window) {
+            Arrays.fill(received, 0);
+            Arrays.fill(processed, 0);
+        } else {
+            for (long id = committed + 1; id <= newCommitted; id++) {
+                clear(received, id);
+                clear(processed, id);
+            }
+        }
+        logger.warn("Окно повторов сдвинуто с {} на {}: обновления между ними не получены или ещё обрабатываются",
+                committed, newCommitted);
+        committed = newCommitted;
+        highest = Math.max(highest, committed);
+        advance();
+    }
+
+    /**
+     * Продвигает подтверждённый ID по подряд идущим обработанным обновлениям.
+     */
+    private void advance() {
+        while (committed < highest && isSet(processed, committed + 1)) {
+            committed++;
+            clear(received, committed);
+            clear(processed, committed);
+        }
+    }
+
+    private boolean isSet(long[] bits, long id) {
+        int index = (int) id & (window - 1);
+        return (bits[index >>> 6] & 1L << index) != 0;
+    }
+
+    private void set(long[] bits, long id) {
+        int index = (int) id & (window - 1);
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private void clear(long[] bits, long id) {
+        int index = (int) id & (window - 1);
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * Читает сохранённый ID и запускает периодическую запись при первом обращении.
+     * Размер окна задаётся свойством updates.dedup.window (округляется до степени двойки),
+     * период записи — updates.offset.flush.millis.
+     */
+    private void ensureLoaded() {
+        if (received != null) {
+            return;
+        }
+        Config config = configLoader.get();
+        int size = Math.max(64, config.getInt("updates.dedup.window", DEFAULT_WINDOW));
+        window = Integer.highestOneBit(size - 1) << 1;
+        received = new long[window / 64];
+        processed = new long[window / 64];
+        file = Paths.get(config.getString("vault.dir", "data")).resolve(OFFSET_FILE);
+        try {
+            if (Files.exists(file)) {
+                committed = Long.parseLong(Files.readString(file, StandardCharsets.UTF_8).trim());
+                highest = committed;
+                saved = committed;
+                savedAt = Files.getLastModifiedTime(file).toMillis();
+                logger.info("Обработка обновлений продолжается после ID {}", committed);
+            }
+        } catch (IOException | NumberFormatException e) {
+            logger.warn("Не удалось прочитать {}: {}. Повторы до первого обновления не отсекаются", file, e.getMessage());
+        }
+        metrics.counter("bot_duplicate_updates_total", "Число отброшенных повторно доставленных обновлений",
+                this::getDuplicateCount);
+        metrics.counter("bot_update_window_shifts_total", "Число сдвигов окна повторов из-за пропусков в update_id",
+                this::getWindowShiftCount);
+        metrics.counter("bot_update_sequence_resets_total",
+                "Число случаев, когда update_id начал новую последовательность", this::getSequenceResetCount);
+        metrics.gauge("bot_committed_update_id", "Наибольший update_id, до которого все обновления обработаны",
+                () -> saved);
+
+        long period = config.getLong("updates.offset.flush.millis", DEFAULT_FLUSH_MILLIS);
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "update-offset-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(this::saveSafely, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    private void saveSafely() {
+        try {
+            save();
+        } catch (UncheckedIOException e) {
+            logger.error("Ошибка при сохранении ID обработанных обновлений: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Атомарно записывает подтверждённый ID, если он изменился.
+     */
+    private void save() {
+        long id = getCommittedId();
+        if (id == saved) {
+            return;
+        }
+        Path temp = file.resolveSibling(OFFSET_FILE + ".tmp");
+        try {
+            Files.createDirectories(file.getParent());
+            Files.writeString(temp, Long.toString(id), StandardCharsets.UTF_8);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            saved = id;
+            savedAt = System.currentTimeMillis();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при записи " + file, e);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package org.homework.bot;
+
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.logger.Logger;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Распределяет обработку обновлений по виртуальным потокам.
+ * Для каждого чата ведётся последовательная очередь: задачи одного чата
+ * выполняются строго по порядку, а разные чаты обслуживаются параллельно.
+ * Задача возвращает CompletableFuture (например, асинхронную отправку ответа),
+ * и следующая задача чата запускается только после его завершения,
+ * не занимая поток во время ожидания.
+ */
+@Register
+public class UpdateDispatcher {
+    @Resolve
+    private Logger logger; // Логгер
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Map<String, Queue<Supplier<CompletableFuture<?>>>> chats = new ConcurrentHashMap<>(); // Очереди активных чатов
+
+    /**
+     * Ставит задачу в очередь чата.
+     *
+     * @param chatId ID чата.
+     * @param task   Задача, возвращающая future своего завершения.
+     * @return Future, завершающийся после выполнения задачи (в том числе с ошибкой).
+     */
+    public CompletableFuture<Void> dispatch(String chatId, Supplier<CompletableFuture<?>> task) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Supplier<CompletableFuture<?>> tracked = () -> {
+            try {
+                return task.get().whenComplete((result, error) -> done.complete(null));
+            } catch (RuntimeException e) {
+                done.complete(null);
+                throw e;
+            }
+        };
+        boolean[] started = new boolean[1];
+        Queue<Supplier<CompletableFuture<?>>> queue = chats.compute(chatId, (id, existing) -> {
+            Queue<Supplier<CompletableFuture<?>>> tasks = existing != null ? existing : new ConcurrentLinkedQueue<>();
+            tasks.add(tracked);
+            started[0] = existing == null;
+            return tasks;
+        });
+        if (started[0]) {
+            executor.execute(() -> runNext(chatId, queue));
+        }
+        return done;
+    }
+
+    /**
+     * Выполняет следующую задачу чата. Очередь удаляется из карты, когда становится пустой;
+     * пока она в карте, у чата есть ровно один активный исполнитель.
+     */
+    private void runNext(String chatId, Queue<Supplier<CompletableFuture<?>>> queue) {
+        Supplier<CompletableFuture<?>> task = queue.poll();
+        if (task == null) {
+            boolean[] more = new boolean[1];
+            chats.computeIfPresent(chatId, (id, tasks) -> {
+                more[0] = !tasks.isEmpty();
+                return more[0] ? tasks : null;
+            });
+            if (more[0]) {
+                runNext(chatId, queue);
+            }
+            return;
+        }
+
+        CompletableFuture<?> completion;
+        try {
+            completion = task.get();
+        } catch (RuntimeException e) {
+            logger.error("Ошибка при обработке обновления: {}", e.getMessage());
+            completion = CompletableFuture.completedFuture(null);
+        }
+        completion.whenComplete((result, error) -> {
+            if (error != null) {
+                logger.error("Ошибка при обработке обновления: {}", error.getMessage());
+            }
+            executor.execute(() -> runNext(chatId, queue));
+        });
+    }
+
+    /**
+     * Останавливает приём новых задач.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,20 @@
+package org.homework.bot;
+
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Получатель входящих обновлений.
+ * Отделяет WebhookReceiver от бота, чтобы приёмник можно было проверить на заглушке.
+ */
+@FunctionalInterface
+public interface UpdateHandler {
+    /**
+     * Принимает обновление в обработку.
+     *
+     * @param update Обновление от Telegram.
+     * @return Future, завершающийся после обработки обновления.
+     */
+    CompletableFuture<?> handle(Update update);
+}
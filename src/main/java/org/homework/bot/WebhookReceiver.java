@@ -0,0 +1,248 @@
+package org.homework.bot;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.homework.Config;
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.logger.Logger;
+import org.homework.metrics.Metrics;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * Приём обновлений через webhook вместо long polling.
+ * Встроенный HTTP-сервер обслуживает запросы в виртуальных потоках, разбирает тело
+ * сразу в Update и передаёт его в ту же точку входа, что и long polling.
+ * Число принятых, но ещё не обработанных обновлений ограничено: при заполнении очереди
+ * сервер отвечает 429, и Telegram повторяет доставку позже, вместо того чтобы
+ * обновления копились в памяти.
+ * <p>
+ * Если задан webhook.secret, Telegram передаёт его в заголовке X-Telegram-Bot-Api-Secret-Token
+ * (см. {@link SecretSetWebhook}), и запросы без него отклоняются с кодом 401:
+ * иначе подделать обновление мог бы любой, кто узнал адрес.
+ */
+@Register
+public class WebhookReceiver {
+    private static final int MAX_BODY_BYTES = 1024 * 1024; // Обновления Telegram намного меньше
+    private static final String RETRY_AFTER_SECONDS = "1";
+    private static final String SECRET_HEADER = "X-Telegram-Bot-Api-Secret-Token";
+    private static final Pattern SECRET_FORMAT = Pattern.compile("[A-Za-z0-9_-]{1,256}"); // Требование Telegram
+
+    @Resolve
+    private Metrics metrics; // Метрики
+
+    @Resolve
+    private Logger logger; // Логгер
+
+    @Resolve
+    private ConfigLoader configLoader; // Конфигурация
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LongAdder acceptedUpdates = new LongAdder();
+    private final LongAdder rejectedUpdates = new LongAdder();
+    private final LongAdder malformedUpdates = new LongAdder();
+    private final LongAdder unauthorizedRequests = new LongAdder();
+
+    private HttpServer server;
+    private ExecutorService executor;
+    private Semaphore capacity; // Свободные места в очереди обновлений
+    private int queueCapacity;
+    private byte[] secret; // Ожидаемый секрет или null, если проверка выключена
+    private UpdateHandler handler;
+
+    /**
+     * Запускает HTTP-сервер. Порт задаётся свойством webhook.port, путь — webhook.path,
+     * наибольшее число обновлений в обработке — webhook.queue.capacity, секрет — webhook.secret.
+     *
+     * @param handler Получатель обновлений.
+     */
+    public synchronized void start(UpdateHandler handler) {
+        if (server != null) {
+            return;
+        }
+        Config config = configLoader.get();
+        int port = config.getInt("webhook.port", 8443);
+        String path = getPath();
+        queueCapacity = config.getInt("webhook.queue.capacity", 1000);
+        capacity = new Semaphore(queueCapacity);
+        secret = parseSecret(getSecretToken());
+        this.handler = handler;
+        try {
+            server = HttpServer.create(new InetSocketAddress(port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при запуске webhook-сервера", e);
+        }
+        executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext(path, this::receive);
+        server.start();
+        metrics.counter("webhook_accepted_total", "Число обновлений, принятых через webhook", this::getAcceptedCount);
+        metrics.counter("webhook_rejected_total", "Число обновлений, отклонённых из-за заполненной очереди",
+                this::getRejectedCount);
+        metrics.counter("webhook_malformed_total", "Число запросов webhook с неразборчивым телом",
+                this::getMalformedCount);
+        metrics.counter("webhook_unauthorized_total", "Число запросов webhook без верного секрета",
+                this::getUnauthorizedCount);
+        metrics.gauge("webhook_queue_depth", "Число принятых, но ещё не обработанных обновлений", this::getQueueDepth);
+        logger.info("Webhook-сервер слушает порт {}, путь {}", getPort(), path);
+        if (secret == null) {
+            logger.warn("webhook.secret не задан: отправитель обновлений не проверяется");
+        }
+    }
+
+    /**
+     * Останавливает HTTP-сервер, дав текущим запросам секунду на завершение.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(1);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    /**
+     * Возвращает путь, по которому сервер принимает обновления (свойство webhook.path).
+     */
+    public String getPath() {
+        return configLoader.get().getString("webhook.path", "/telegram");
+    }
+
+    /**
+     * Возвращает секрет, который Telegram должен передавать в заголовке запроса (свойство webhook.secret),
+     * или null, если он не задан.
+     */
+    public String getSecretToken() {
+        return configLoader.get().getString("webhook.secret", null);
+    }
+
+    /**
+     * Возвращает порт, на котором слушает сервер. Полезно при webhook.port=0.
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Возвращает число обновлений, принятых в обработку.
+     */
+    public long getAcceptedCount() {
+        return acceptedUpdates.sum();
+    }
+
+    /**
+     * Возвращает число обновлений, отклонённых из-за заполненной очереди.
+     */
+    public long getRejectedCount() {
+        return rejectedUpdates.sum();
+    }
+
+    /**
+     * Возвращает число запросов, тело которых не удалось разобрать.
+     */
+    public long getMalformedCount() {
+        return malformedUpdates.sum();
+    }
+
+    /**
+     * Возвращает число запросов, отклонённых из-за отсутствующего или неверного секрета.
+     */
+    public long getUnauthorizedCount() {
+        return unauthorizedRequests.sum();
+    }
+
+    /**
+     * Возвращает число обновлений, которые приняты, но ещё не обработаны.
+     */
+    public int getQueueDepth() {
+        return capacity == null ? 0 : queueCapacity - capacity.availablePermits();
+    }
+
+    private void receive(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405);
+                return;
+            }
+            if (!isAuthorized(exchange)) {
+                unauthorizedRequests.increment();
+                respond(exchange, 401);
+                return;
+            }
+            if (!capacity.tryAcquire()) {
+                rejectedUpdates.increment();
+                exchange.getResponseHeaders().set("Retry-After", RETRY_AFTER_SECONDS);
+                respond(exchange, 429);
+                return;
+            }
+            Update update;
+            try (InputStream body = exchange.getRequestBody()) {
+                update = parse(body);
+            } catch (IOException e) {
+                capacity.release();
+                malformedUpdates.increment();
+                logger.warn("Не удалось разобрать обновление: {}", e.getMessage());
+                respond(exchange, 400);
+                return;
+            }
+            acceptedUpdates.increment();
+            CompletableFuture<?> done;
+            try {
+                done = handler.handle(update);
+            } catch (RuntimeException e) {
+                done = CompletableFuture.failedFuture(e);
+            }
+            done.whenComplete((result, error) -> capacity.release());
+            respond(exchange, 200);
+        }
+    }
+
+    /**
+     * Сравнивает секрет из заголовка за время, не зависящее от совпавшего префикса.
+     */
+    private boolean isAuthorized(HttpExchange exchange) {
+        if (secret == null) {
+            return true;
+        }
+        String token = exchange.getRequestHeaders().getFirst(SECRET_HEADER);
+        return token != null && MessageDigest.isEqual(secret, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static byte[] parseSecret(String token) {
+        if (token == null) {
+            return null;
+        }
+        if (!SECRET_FORMAT.matcher(token).matches()) {
+            throw new IllegalArgumentException("webhook.secret должен состоять из 1-256 символов A-Z, a-z, 0-9, _ и -");
+        }
+        return token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Update parse(InputStream body) throws IOException {
+        byte[] bytes = body.readNBytes(MAX_BODY_BYTES + 1);
+        if (bytes.length > MAX_BODY_BYTES) {
+            throw new IOException("Слишком большое тело запроса");
+        }
+        return objectMapper.readValue(bytes, Update.class);
+    }
+
+    private static void respond(HttpExchange exchange, int status) throws IOException {
+        exchange.sendResponseHeaders(status, -1);
+    }
+}
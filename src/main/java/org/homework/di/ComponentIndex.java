@@ -0,0 +1,31 @@
+package org.homework.di;
+
+import java.util.function.Supplier;
+
+/**
+ * Индекс компонентов, сформированный на этапе компиляции.
+ * Реализацию GeneratedComponentIndex создаёт ComponentIndexProcessor,
+ * и DIContainer использует её вместо сканирования classpath.
+ */
+public interface ComponentIndex {
+    /**
+     * Передаёт все компоненты в реестр контейнера.
+     *
+     * @param registry Реестр компонентов.
+     */
+    void register(Registry registry);
+
+    /**
+     * Реестр, принимающий компоненты из индекса.
+     */
+    interface Registry {
+        /**
+         * Регистрирует компонент.
+         *
+         * @param type          Класс компонента.
+         * @param factory       Фабрика экземпляров или null, если конструктор недоступен напрямую.
+         * @param resolveFields Названия полей, помеченных @Resolve.
+         */
+        void component(Class<?> type, Supplier<?> factory, String... resolveFields);
+    }
+}
\ No newline at end of file
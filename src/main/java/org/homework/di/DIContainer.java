@@ -1,25 +1,98 @@
 package org.homework.di;
 
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Command;
+import org.homework.di.annotations.ConditionalOnProperty;
 import org.homework.di.annotations.Register;
 import org.homework.di.annotations.Resolve;
+import org.homework.di.annotations.Scope;
 import org.reflections.Reflections;
 import org.reflections.scanners.SubTypesScanner;
 import org.reflections.scanners.TypeAnnotationsScanner;
 
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
 
 /**
  * Контейнер для управления зависимостями и внедрения их в классы.
+ * Компоненты берутся из индекса, сгенерированного при компиляции;
+ * если индекса нет, classpath сканируется через Reflections.
+ * Контейнер потокобезопасен: готовые синглтоны читаются без блокировок,
+ * а создание новых экземпляров сериализуется.
+ * Первой создаётся конфигурация: по ней проверяются условия @ConditionalOnProperty,
+ * и она доступна конструкторам остальных компонентов через {@link ConfigLoader#current()}.
  */
 public class DIContainer {
-    private final Map<Class<?>, Object> createdServices = new HashMap<>();
-    private final Map<Class<?>, Class<?>> registeredImplementations = new HashMap<>();
+    private static final String INDEX_CLASS = "org.homework.di.GeneratedComponentIndex";
+
+    private final Map<Class<?>, Object> createdServices = new ConcurrentHashMap<>(); // Синглтоны по классу и интерфейсу
+    private final Map<String, Map<Class<?>, Object>> chatScopes = new ConcurrentHashMap<>(); // Компоненты области чата
+    private final Map<Class<?>, List<Class<?>>> registeredImplementations = new HashMap<>(); // Реализации в порядке регистрации
+    private final Map<Class<?>, Scope> scopes = new HashMap<>(); // Области компонентов
+    private final Object creationLock = new Object(); // Защищает создание синглтонов и компонентов чата
+    private final Map<Class<?>, Object> constructing = new HashMap<>(); // Создаваемые сейчас экземпляры
+    private final List<Runnable> publications = new ArrayList<>(); // Публикация экземпляров после создания цепочки
+    private final Map<Class<?>, Supplier<?>> factories = new HashMap<>(); // Фабрики из индекса
+    private final Map<Class<?>, Field[]> injectionPoints = new HashMap<>(); // Поля @Resolve из индекса
+    private final List<Method> commandMethods = new ArrayList<>(); // Обработчики команд, помеченные @Command
 
     public DIContainer() {
-        autoRegister();
+        this(true);
+    }
+
+    /**
+     * Создает контейнер.
+     *
+     * @param useIndex false, чтобы всегда сканировать classpath (например, для сравнения времени запуска).
+     */
+    public DIContainer(boolean useIndex) {
+        createdServices.put(DIContainer.class, this); // Контейнер доступен для внедрения
+        if (!useIndex || !loadIndex()) {
+            autoRegister();
+        }
+        resolve(ConfigLoader.class);
+    }
+
+    /**
+     * Регистрирует компоненты из индекса, сгенерированного ComponentIndexProcessor.
+     *
+     * @return true, если индекс найден и не устарел.
+     */
+    private boolean loadIndex() {
+        ComponentIndex index;
+        try {
+            index = (ComponentIndex) Class.forName(INDEX_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException e) {
+            return false;
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException("Could not load component index: " + INDEX_CLASS, e);
+        }
+        // Индекс от прежней сборки может ссылаться на класс, с которого сняли @Register
+        List<Class<?>> stale = new ArrayList<>();
+        index.register((type, factory, resolveFields) -> {
+            if (!type.isAnnotationPresent(Register.class)) {
+                stale.add(type);
+            }
+        });
+        if (!stale.isEmpty()) {
+            return false;
+        }
+        index.register((type, factory, resolveFields) -> {
+            registerComponent(type);
+            if (factory != null) {
+                factories.put(type, factory);
+            }
+            injectionPoints.put(type, findFields(type, resolveFields));
+        });
+        return true;
     }
 
     /**
@@ -41,75 +114,225 @@ public class DIContainer {
                 continue; // Пропускаем классы без конструктора по умолчанию
             }
 
-            // Регистрируем класс и его интерфейсы
-            Class<?>[] interfaces = clazz.getInterfaces();
-            for (Class<?> intf : interfaces) {
-                if (!registeredImplementations.containsKey(intf) || registeredImplementations.get(intf).isInterface()) {
-                    registeredImplementations.put(intf, clazz);
-                }
+            registerComponent(clazz);
+        }
+    }
+
+    /**
+     * Регистрирует класс, его интерфейсы и обработчики команд.
+     *
+     * @param clazz Класс компонента.
+     */
+    private void registerComponent(Class<?> clazz) {
+        scopes.put(clazz, clazz.getAnnotation(Register.class).scope());
+
+        // Регистрируем класс и его интерфейсы, включая интерфейсы базовых классов
+        List<Class<?>> interfaces = new ArrayList<>();
+        for (Class<?> type = clazz; type != null && type != Object.class; type = type.getSuperclass()) {
+            interfaces.addAll(List.of(type.getInterfaces()));
+        }
+        for (Class<?> intf : interfaces) {
+            registeredImplementations.computeIfAbsent(intf, key -> new ArrayList<>()).add(clazz);
+        }
+
+        if (interfaces.isEmpty()) {
+            registeredImplementations.computeIfAbsent(clazz, key -> new ArrayList<>()).add(clazz);
+        }
+
+        for (Method method : clazz.getDeclaredMethods()) {
+            if (method.isAnnotationPresent(Command.class)) {
+                commandMethods.add(method);
             }
+        }
+    }
 
-            if (interfaces.length == 0) {
-                registeredImplementations.put(clazz, clazz);
+    /**
+     * Находит поля для внедрения по именам из индекса.
+     *
+     * @param clazz      Класс компонента.
+     * @param fieldNames Названия полей.
+     * @return Доступные для записи поля.
+     */
+    private Field[] findFields(Class<?> clazz, String[] fieldNames) {
+        Field[] fields = new Field[fieldNames.length];
+        for (int i = 0; i < fieldNames.length; i++) {
+            try {
+                fields[i] = clazz.getDeclaredField(fieldNames[i]);
+                fields[i].setAccessible(true);
+            } catch (NoSuchFieldException e) {
+                throw new IllegalStateException("Component index is out of date for class: " + clazz.getName(), e);
             }
         }
+        return fields;
+    }
+
+    /**
+     * Возвращает методы зарегистрированных классов, помеченные аннотацией @Command.
+     *
+     * @return Список методов-обработчиков команд.
+     */
+    public List<Method> getCommandMethods() {
+        return Collections.unmodifiableList(commandMethods);
     }
 
     /**
      * Разрешает зависимость для указанного класса.
+     * Готовые синглтоны читаются из ConcurrentHashMap без блокировок.
      *
      * @param serviceClass Класс, для которого требуется разрешить зависимость.
      * @return Экземпляр класса.
      */
     public <T> T resolve(Class<T> serviceClass) {
-        @SuppressWarnings("unchecked")
-        T service = (T) createdServices.get(serviceClass);
+        Object service = createdServices.get(serviceClass);
+        if (service != null) {
+            return serviceClass.cast(service);
+        }
+        return createService(serviceClass, null);
+    }
+
+    /**
+     * Разрешает зависимость в области указанного чата.
+     * Компоненты с областью CHAT создаются один раз на чат, остальные разрешаются как обычно.
+     *
+     * @param serviceClass Класс, для которого требуется разрешить зависимость.
+     * @param chatId       ID чата.
+     * @return Экземпляр класса.
+     */
+    public <T> T resolve(Class<T> serviceClass, String chatId) {
+        Object service = createdServices.get(serviceClass);
         if (service == null) {
-            service = createService(serviceClass);
+            Map<Class<?>, Object> chatServices = chatScopes.get(chatId);
+            service = chatServices != null ? chatServices.get(serviceClass) : null;
+        }
+        if (service != null) {
+            return serviceClass.cast(service);
+        }
+        return createService(serviceClass, chatId);
+    }
+
+    /**
+     * Закрывает область чата, освобождая созданные в ней компоненты.
+     * Вызывается PasswordService, когда VaultJournal выгружает неактивный чат.
+     * Выполняется под той же блокировкой, что и создание компонентов, поэтому компонент,
+     * создаваемый в это время, не попадает в уже удалённую область.
+     *
+     * @param chatId ID чата.
+     */
+    public void closeChatScope(String chatId) {
+        synchronized (creationLock) {
+            chatScopes.remove(chatId);
         }
-        return service;
     }
 
     /**
-     * Создает экземпляр сервиса.
+     * Создает экземпляр сервиса с учетом его области.
      *
-     * @param serviceClass Класс сервиса.
+     * @param serviceClass Класс или интерфейс сервиса.
+     * @param chatId       ID чата или null вне области чата.
      * @return Экземпляр сервиса.
      */
-    private <T> T createService(Class<T> serviceClass) {
-        if (serviceClass.isInterface()) {
-            return createServiceFromInterface(serviceClass);
-        } else {
-            return createServiceFromClass(serviceClass);
+    private <T> T createService(Class<T> serviceClass, String chatId) {
+        Class<? extends T> implementationClass = implementationOf(serviceClass);
+        Scope scope = scopes.getOrDefault(implementationClass, Scope.SINGLETON);
+        if (scope == Scope.PROTOTYPE) {
+            T instance = instantiate(implementationClass);
+            injectDependencies(instance, chatId);
+            return instance;
+        }
+        if (scope == Scope.CHAT && chatId == null) {
+            throw new IllegalStateException("Chat-scoped service requires a chat id: " + implementationClass.getName());
+        }
+
+        synchronized (creationLock) {
+            Map<Class<?>, Object> target = scope == Scope.CHAT
+                    ? chatScopes.computeIfAbsent(chatId, id -> new ConcurrentHashMap<>())
+                    : createdServices;
+            Object existing = target.get(serviceClass);
+            if (existing == null) {
+                existing = target.get(implementationClass);
+            }
+            if (existing == null) {
+                existing = constructing.get(implementationClass); // Циклическая зависимость в текущем создании
+            }
+            if (existing != null) {
+                return serviceClass.cast(existing);
+            }
+
+            boolean outermost = constructing.isEmpty();
+            boolean completed = false;
+            try {
+                T instance = instantiate(implementationClass);
+                constructing.put(implementationClass, instance); // Сохраняем перед инъекцией зависимостей
+                injectDependencies(instance, scope == Scope.CHAT ? chatId : null);
+                publications.add(() -> {
+                    target.put(implementationClass, instance);
+                    target.put(serviceClass, instance);
+                });
+                completed = true;
+                return instance;
+            } finally {
+                if (outermost) {
+                    // Экземпляры становятся видны другим потокам только после полной инъекции всей цепочки
+                    if (completed) {
+                        publications.forEach(Runnable::run);
+                    }
+                    publications.clear();
+                    constructing.clear();
+                }
+            }
         }
     }
 
     /**
-     * Создает экземпляр сервиса для интерфейса.
+     * Находит класс реализации для интерфейса или возвращает сам класс.
+     * Из нескольких реализаций выбирается первая, чьё условие @ConditionalOnProperty выполнено.
      *
-     * @param serviceClass Интерфейс сервиса.
-     * @return Экземпляр реализации.
+     * @param serviceClass Класс или интерфейс сервиса.
+     * @return Класс реализации.
      */
-    private <T> T createServiceFromInterface(Class<T> serviceClass) {
-        Class<?> implementationClass = registeredImplementations.get(serviceClass);
-        if (implementationClass == null) {
+    private <T> Class<? extends T> implementationOf(Class<T> serviceClass) {
+        if (!serviceClass.isInterface()) {
+            return serviceClass;
+        }
+        List<Class<?>> candidates = registeredImplementations.get(serviceClass);
+        if (candidates == null) {
             throw new IllegalStateException("No implementation registered for interface: " + serviceClass.getName());
         }
-        return createServiceFromClass(implementationClass.asSubclass(serviceClass));
+        for (Class<?> candidate : candidates) {
+            if (isEnabled(candidate)) {
+                return candidate.asSubclass(serviceClass);
+            }
+        }
+        throw new IllegalStateException("No implementation enabled by configuration for interface: " + serviceClass.getName());
     }
 
     /**
-     * Создает экземпляр сервиса для конкретного класса.
+     * Проверяет условие @ConditionalOnProperty по текущему снимку конфигурации.
+     *
+     * @param clazz Класс компонента.
+     * @return true, если условия нет или оно выполнено.
+     */
+    private boolean isEnabled(Class<?> clazz) {
+        ConditionalOnProperty condition = clazz.getAnnotation(ConditionalOnProperty.class);
+        if (condition == null) {
+            return true;
+        }
+        String value = resolve(ConfigLoader.class).get().getString(condition.name(), null);
+        return value == null ? condition.matchIfMissing() : value.trim().equalsIgnoreCase(condition.havingValue());
+    }
+
+    /**
+     * Создает экземпляр класса через фабрику из индекса или конструктор по умолчанию.
      *
      * @param concreteClass Класс сервиса.
-     * @return Экземпляр сервиса.
+     * @return Новый экземпляр без внедренных зависимостей.
      */
-    private <T> T createServiceFromClass(Class<T> concreteClass) {
+    private <T> T instantiate(Class<T> concreteClass) {
         try {
-            T instance = concreteClass.getDeclaredConstructor().newInstance();
-            createdServices.put(concreteClass, instance); // Сохраняем перед инъекцией зависимостей
-            injectDependencies(instance);
-            return instance;
+            Supplier<?> factory = factories.get(concreteClass);
+            return factory != null
+                    ? concreteClass.cast(factory.get())
+                    : concreteClass.getDeclaredConstructor().newInstance();
         } catch (Exception e) {
             throw new RuntimeException("Could not instantiate service: " + concreteClass.getName(), e);
         }
@@ -119,23 +342,41 @@ public class DIContainer {
      * Внедряет зависимости в объект.
      *
      * @param object Объект для внедрения зависимостей.
+     * @param chatId ID чата, если объект создан в области чата.
      */
-    private void injectDependencies(Object object) {
+    private void injectDependencies(Object object, String chatId) {
         Class<?> clazz = object.getClass();
+        Field[] indexedFields = injectionPoints.get(clazz);
+        if (indexedFields != null) {
+            for (Field field : indexedFields) {
+                setField(object, field, chatId);
+            }
+            return;
+        }
         for (Field field : clazz.getDeclaredFields()) {
             if (field.isAnnotationPresent(Resolve.class)) {
                 field.setAccessible(true);
-                Class<?> dependencyType = field.getType();
-                Object dependency = resolve(dependencyType);
-                try {
-                    field.set(object, dependency);
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(String.format("Could not set field '%s' on class '%s'.", field.getName(), clazz.getName()), e);
-                }
+                setField(object, field, chatId);
             }
         }
     }
 
+    /**
+     * Разрешает зависимость по типу поля и записывает её в поле.
+     *
+     * @param object Объект для внедрения зависимостей.
+     * @param field  Поле, помеченное @Resolve.
+     * @param chatId ID чата, если объект создан в области чата.
+     */
+    private void setField(Object object, Field field, String chatId) {
+        Object dependency = chatId != null ? resolve(field.getType(), chatId) : resolve(field.getType());
+        try {
+            field.set(object, dependency);
+        } catch (IllegalAccessException e) {
+            throw new RuntimeException(String.format("Could not set field '%s' on class '%s'.", field.getName(), object.getClass().getName()), e);
+        }
+    }
+
     /**
      * Проверяет наличие конструктора без аргументов.
      *
@@ -0,0 +1,26 @@
+package org.homework.di.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+
+/**
+ * Помечает метод-обработчик команды бота.
+ * Первый параметр метода — ID чата, остальные — аргументы команды;
+ * последний аргумент получает остаток строки.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(METHOD)
+public @interface Command {
+    /**
+     * Название команды, например "/add".
+     */
+    String value();
+
+    /**
+     * Подсказка, которая показывается при неверном числе аргументов.
+     */
+    String usage() default "";
+}
\ No newline at end of file
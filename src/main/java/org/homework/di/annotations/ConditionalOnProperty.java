@@ -0,0 +1,32 @@
+package org.homework.di.annotations;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+
+/**
+ * Делает компонент доступным только при заданном значении свойства в снимке конфигурации
+ * {@link org.homework.Config}, который загружает ConfigLoader.
+ * Позволяет выбрать одну из нескольких реализаций интерфейса через конфигурацию.
+ * Условие проверяется при первом разрешении интерфейса.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(TYPE)
+public @interface ConditionalOnProperty {
+    /**
+     * Название свойства, например "vault.store".
+     */
+    String name();
+
+    /**
+     * Значение свойства, при котором компонент доступен (без учета регистра).
+     */
+    String havingValue();
+
+    /**
+     * Доступен ли компонент, если свойство не задано.
+     */
+    boolean matchIfMissing() default false;
+}
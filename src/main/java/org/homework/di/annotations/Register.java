@@ -8,4 +8,9 @@ import static java.lang.annotation.ElementType.TYPE;
 
 @Retention(RetentionPolicy.RUNTIME)
 @Target(TYPE)
-public @interface Register {}
\ No newline at end of file
+public @interface Register {
+    /**
+     * Время жизни компонента.
+     */
+    Scope scope() default Scope.SINGLETON;
+}
\ No newline at end of file
@@ -0,0 +1,23 @@
+package org.homework.di.annotations;
+
+/**
+ * Время жизни компонента в DIContainer.
+ */
+public enum Scope {
+    /**
+     * Один экземпляр на контейнер.
+     */
+    SINGLETON,
+
+    /**
+     * Новый экземпляр при каждом разрешении.
+     */
+    PROTOTYPE,
+
+    /**
+     * Один экземпляр на чат; разрешается через DIContainer.resolve(type, chatId).
+     * Экземпляры освобождаются вместе с выгрузкой неактивного чата (vault.tenant.idle.seconds),
+     * поэтому при vault.tenant.idle.seconds=0 они живут до остановки.
+     */
+    CHAT
+}
\ No newline at end of file
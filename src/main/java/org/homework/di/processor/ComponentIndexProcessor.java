@@ -0,0 +1,173 @@
+package org.homework.di.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Обработчик аннотаций, формирующий индекс компонентов для DIContainer.
+ * Для каждого класса с @Register генерирует фабрику через ссылку на конструктор
+ * и список полей с @Resolve, чтобы при запуске не сканировать classpath.
+ * Аннотации указаны по имени, поэтому обработчик компилируется отдельно от них.
+ * <p>
+ * При инкрементальной сборке компилятору передаются только изменённые исходники,
+ * поэтому рядом с индексом сохраняется список компонентов. Компоненты из прежнего списка,
+ * которые не перекомпилировались, берутся из уже скомпилированных классов: удалённые классы
+ * и классы, потерявшие @Register, в новый индекс не попадают.
+ */
+@SupportedAnnotationTypes("*") // Индекс переписывается, даже если среди изменённых исходников нет компонентов
+public class ComponentIndexProcessor extends AbstractProcessor {
+    static final String REGISTER = "org.homework.di.annotations.Register";
+    static final String RESOLVE = "org.homework.di.annotations.Resolve";
+    static final String INDEX_PACKAGE = "org.homework.di";
+    static final String INDEX_CLASS = "GeneratedComponentIndex";
+    static final String COMPONENT_LIST = "META-INF/homework/components"; // Компоненты прежнего индекса
+
+    private final TreeMap<String, String> components = new TreeMap<>(); // Строки регистрации по имени класса
+    private final TreeMap<String, String> names = new TreeMap<>(); // Каноническое имя по имени класса
+    private boolean generated;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        TypeElement register = processingEnv.getElementUtils().getTypeElement(REGISTER);
+        if (register == null) {
+            return false;
+        }
+        for (Element element : roundEnv.getElementsAnnotatedWith(register)) {
+            add(element);
+        }
+        if (!generated) {
+            addPreviousComponents();
+            if (!components.isEmpty()) {
+                writeIndex();
+                generated = true;
+            }
+        }
+        return false;
+    }
+
+    private void add(Element element) {
+        if (element.getKind() != ElementKind.CLASS || element.getModifiers().contains(Modifier.ABSTRACT)) {
+            return;
+        }
+        TypeElement type = (TypeElement) element;
+        ExecutableElement constructor = noArgConstructor(type);
+        if (constructor == null) {
+            return; // Как и при сканировании, классы без конструктора по умолчанию пропускаются
+        }
+        components.put(binaryName(type), registration(type, constructor));
+        names.put(binaryName(type), type.getQualifiedName().toString());
+    }
+
+    /**
+     * Добавляет компоненты прежнего индекса, которых нет среди компилируемых сейчас исходников.
+     * Перекомпилированные классы уже учтены: если @Register с них сняли, они не добавляются повторно.
+     */
+    private void addPreviousComponents() {
+        Elements elements = processingEnv.getElementUtils();
+        for (String name : readPreviousComponents()) {
+            TypeElement type = elements.getTypeElement(name);
+            if (type == null || names.containsKey(binaryName(type))) {
+                continue; // Класс удалён или уже обработан в этом проходе
+            }
+            if (hasAnnotation(type, REGISTER)) {
+                add(type);
+            }
+        }
+    }
+
+    private List<String> readPreviousComponents() {
+        try {
+            FileObject list = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", COMPONENT_LIST);
+            try (BufferedReader reader = new BufferedReader(list.openReader(true))) {
+                return reader.lines().filter(line -> !line.isBlank()).toList();
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            return List.of(); // Первая сборка или чистая сборка
+        }
+    }
+
+    private String registration(TypeElement type, ExecutableElement constructor) {
+        String name = type.getQualifiedName().toString();
+        boolean direct = type.getNestingKind() == NestingKind.TOP_LEVEL
+                && type.getModifiers().contains(Modifier.PUBLIC)
+                && constructor.getModifiers().contains(Modifier.PUBLIC);
+        StringBuilder line = new StringBuilder("        registry.component(")
+                .append(name).append(".class, ")
+                .append(direct ? name + "::new" : "null");
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            if (hasAnnotation(field, RESOLVE)) {
+                line.append(", \"").append(field.getSimpleName()).append('"');
+            }
+        }
+        return line.append(");\n").toString();
+    }
+
+    private void writeIndex() {
+        try (Writer writer = processingEnv.getFiler()
+                .createSourceFile(INDEX_PACKAGE + "." + INDEX_CLASS).openWriter()) {
+            writer.write("package " + INDEX_PACKAGE + ";\n\n");
+            writer.write("/**\n * Индекс компонентов. Сгенерирован ComponentIndexProcessor, не редактировать.\n */\n");
+            writer.write("public final class " + INDEX_CLASS + " implements ComponentIndex {\n");
+            writer.write("    @Override\n    public void register(Registry registry) {\n");
+            for (String line : components.values()) {
+                writer.write(line);
+            }
+            writer.write("    }\n}\n");
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Не удалось записать индекс компонентов: " + e.getMessage());
+        }
+        try (Writer writer = processingEnv.getFiler()
+                .createResource(StandardLocation.CLASS_OUTPUT, "", COMPONENT_LIST).openWriter()) {
+            for (String name : names.values()) {
+                writer.write(name + "\n");
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                    "Не удалось записать список компонентов: " + e.getMessage());
+        }
+    }
+
+    private ExecutableElement noArgConstructor(TypeElement type) {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()) {
+                return constructor;
+            }
+        }
+        return null;
+    }
+
+    private boolean hasAnnotation(Element element, String annotation) {
+        return element.getAnnotationMirrors().stream()
+                .anyMatch(mirror -> mirror.getAnnotationType().toString().equals(annotation));
+    }
+
+    private String binaryName(TypeElement type) {
+        return processingEnv.getElementUtils().getBinaryName(type).toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,91 @@
+package org.homework.logger;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ограниченный кольцевой буфер событий журнала: много писателей, один читатель.
+ * Слоты выделяются заранее и переиспользуются, поэтому запись события не создаёт объектов.
+ * Писатель захватывает номер слота CAS-ом, заполняет слот и публикует его, записывая номер
+ * в volatile-поле слота; читатель обрабатывает слоты строго по порядку номеров.
+ */
+final class LogRingBuffer {
+    private final LogEvent[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong(); // Следующий номер для захвата
+    private volatile long head; // Следующий номер для чтения; пишет только читатель
+
+    LogRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Размер буфера журнала должен быть степенью двойки: " + capacity);
+        }
+        slots = new LogEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new LogEvent();
+        }
+        mask = capacity - 1;
+    }
+
+    /**
+     * Пытается захватить слот для записи.
+     *
+     * @return Номер слота или -1, если буфер заполнен.
+     */
+    long tryClaim() {
+        while (true) {
+            long sequence = tail.get();
+            if (sequence - head >= slots.length) {
+                return -1;
+            }
+            if (tail.compareAndSet(sequence, sequence + 1)) {
+                return sequence;
+            }
+        }
+    }
+
+    LogEvent slot(long sequence) {
+        return slots[(int) sequence & mask];
+    }
+
+    /**
+     * Делает заполненный слот видимым для читателя.
+     */
+    void publish(long sequence) {
+        slot(sequence).published = sequence;
+    }
+
+    /**
+     * Возвращает следующее опубликованное событие или null. Вызывается только читателем.
+     */
+    LogEvent peek() {
+        LogEvent event = slot(head);
+        return event.published == head ? event : null;
+    }
+
+    /**
+     * Освобождает прочитанный слот. Вызывается только читателем.
+     */
+    void release(LogEvent event) {
+        event.clear();
+        head = head + 1;
+    }
+
+    /**
+     * Событие журнала в слоте буфера.
+     */
+    static final class LogEvent {
+        volatile long published = -1; // Номер, под которым слот опубликован
+        int level;
+        String format;
+        int argCount; // 0, 1, 2 или -1 для массива аргументов
+        Object arg1;
+        Object arg2;
+        Object[] args;
+
+        private void clear() {
+            format = null;
+            arg1 = null;
+            arg2 = null;
+            args = null;
+        }
+    }
+}
\ No newline at end of file
@@ -1,8 +1,32 @@
 package org.homework.logger;
 
+/**
+ * Логгер приложения. Сообщения с параметрами используют шаблоны SLF4J ("{}"):
+ * строка собирается только если уровень включён, и уже в фоновом потоке.
+ */
 public interface Logger {
     void debug(String message);
     void info(String message);
     void warn(String message);
     void error(String message);
+
+    void debug(String format, Object arg);
+    void info(String format, Object arg);
+    void warn(String format, Object arg);
+    void error(String format, Object arg);
+
+    void debug(String format, Object arg1, Object arg2);
+    void info(String format, Object arg1, Object arg2);
+    void warn(String format, Object arg1, Object arg2);
+    void error(String format, Object arg1, Object arg2);
+
+    void debug(String format, Object... args);
+    void info(String format, Object... args);
+    void warn(String format, Object... args);
+    void error(String format, Object... args);
+
+    boolean isDebugEnabled();
+    boolean isInfoEnabled();
+    boolean isWarnEnabled();
+    boolean isErrorEnabled();
 }
@@ -1,33 +1,272 @@
 package org.homework.logger;
 
+import org.homework.Config;
+import org.homework.ConfigLoader;
 import org.homework.di.annotations.Register;
 import org.slf4j.LoggerFactory;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Асинхронный логгер поверх SLF4J.
+ * Уровень проверяется в вызывающем потоке; включённые события кладутся в LogRingBuffer,
+ * а форматирование и вывод выполняет фоновый поток.
+ * При заполненном буфере событие отбрасывается (политика DROP) или
+ * вызывающий поток ждёт свободного места (политика BLOCK). Политику можно сменить
+ * без перезапуска, размер буфера задаётся только при запуске.
+ */
 @Register
 public class LoggerImpl implements Logger {
+    private static final int DEBUG = 0;
+    private static final int INFO = 1;
+    private static final int WARN = 2;
+    private static final int ERROR = 3;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
     private final org.slf4j.Logger logger;
+    private final LogRingBuffer buffer;
+    private volatile boolean blockWhenFull; // Политика BLOCK
+    private final LongAdder droppedEvents = new LongAdder();
 
     public LoggerImpl() {
+        Config config = ConfigLoader.current(); // Загрузчик создаётся раньше логгера, см. DIContainer
         this.logger = LoggerFactory.getLogger(LoggerImpl.class);
+        this.buffer = new LogRingBuffer(config.getInt("logging.async.buffer", 8192));
+        applyConfig(config);
+
+        Thread writer = new Thread(this::writeLoop, "async-logger");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain, "async-logger-flush"));
+    }
+
+    /**
+     * Применяет политику заполненного буфера из конфигурации.
+     *
+     * @param config Снимок конфигурации.
+     */
+    public void applyConfig(Config config) {
+        blockWhenFull = "BLOCK".equalsIgnoreCase(config.getString("logging.async.policy", "DROP"));
+    }
+
+    /**
+     * Возвращает число событий, отброшенных из-за заполненного буфера.
+     */
+    public long getDroppedCount() {
+        return droppedEvents.sum();
     }
 
     @Override
     public void debug(String message) {
-        logger.debug(message);
+        if (logger.isDebugEnabled()) {
+            enqueue(DEBUG, message, 0, null, null, null);
+        }
     }
 
     @Override
     public void info(String message) {
-        logger.info(message);
+        if (logger.isInfoEnabled()) {
+            enqueue(INFO, message, 0, null, null, null);
+        }
     }
 
     @Override
     public void warn(String message) {
-        logger.warn(message);
+        if (logger.isWarnEnabled()) {
+            enqueue(WARN, message, 0, null, null, null);
+        }
     }
 
     @Override
     public void error(String message) {
-        logger.error(message);
+        if (logger.isErrorEnabled()) {
+            enqueue(ERROR, message, 0, null, null, null);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object arg) {
+        if (logger.isDebugEnabled()) {
+            enqueue(DEBUG, format, 1, arg, null, null);
+        }
+    }
+
+    @Override
+    public void info(String format, Object arg) {
+        if (logger.isInfoEnabled()) {
+            enqueue(INFO, format, 1, arg, null, null);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object arg) {
+        if (logger.isWarnEnabled()) {
+            enqueue(WARN, format, 1, arg, null, null);
+        }
+    }
+
+    @Override
+    public void error(String format, Object arg) {
+        if (logger.isErrorEnabled()) {
+            enqueue(ERROR, format, 1, arg, null, null);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object arg1, Object arg2) {
+        if (logger.isDebugEnabled()) {
+            enqueue(DEBUG, format, 2, arg1, arg2, null);
+        }
+    }
+
+    @Override
+    public void info(String format, Object arg1, Object arg2) {
+        if (logger.isInfoEnabled()) {
+            enqueue(INFO, format, 2, arg1, arg2, null);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object arg1, Object arg2) {
+        if (logger.isWarnEnabled()) {
+            enqueue(WARN, format, 2, arg1, arg2, null);
+        }
+    }
+
+    @Override
+    public void error(String format, Object arg1, Object arg2) {
+        if (logger.isErrorEnabled()) {
+            enqueue(ERROR, format, 2, arg1, arg2, null);
+        }
+    }
+
+    @Override
+    public void debug(String format, Object... args) {
+        if (logger.isDebugEnabled()) {
+            enqueue(DEBUG, format, -1, null, null, args);
+        }
+    }
+
+    @Override
+    public void info(String format, Object... args) {
+        if (logger.isInfoEnabled()) {
+            enqueue(INFO, format, -1, null, null, args);
+        }
+    }
+
+    @Override
+    public void warn(String format, Object... args) {
+        if (logger.isWarnEnabled()) {
+            enqueue(WARN, format, -1, null, null, args);
+        }
+    }
+
+    @Override
+    public void error(String format, Object... args) {
+        if (logger.isErrorEnabled()) {
+            enqueue(ERROR, format, -1, null, null, args);
+        }
+    }
+
+    @Override
+    public boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    @Override
+    public boolean isInfoEnabled() {
+        return logger.isInfoEnabled();
+    }
+
+    @Override
+    public boolean isWarnEnabled() {
+        return logger.isWarnEnabled();
+    }
+
+    @Override
+    public boolean isErrorEnabled() {
+        return logger.isErrorEnabled();
+    }
+
+    private void enqueue(int level, String format, int argCount, Object arg1, Object arg2, Object[] args) {
+        long sequence = buffer.tryClaim();
+        while (sequence < 0) {
+            if (!blockWhenFull) {
+                droppedEvents.increment();
+                return;
+            }
+            Thread.onSpinWait();
+            sequence = buffer.tryClaim();
+        }
+        LogRingBuffer.LogEvent event = buffer.slot(sequence);
+        event.level = level;
+        event.format = format;
+        event.argCount = argCount;
+        event.arg1 = arg1;
+        event.arg2 = arg2;
+        event.args = args;
+        buffer.publish(sequence);
+    }
+
+    private void writeLoop() {
+        while (true) {
+            if (!drain()) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Выводит все опубликованные события.
+     *
+     * @return true, если было выведено хотя бы одно событие.
+     */
+    private synchronized boolean drain() {
+        boolean written = false;
+        for (LogRingBuffer.LogEvent event = buffer.peek(); event != null; event = buffer.peek()) {
+            write(event);
+            buffer.release(event);
+            written = true;
+        }
+        return written;
+    }
+
+    private void write(LogRingBuffer.LogEvent event) {
+        switch (event.level) {
+            case DEBUG -> {
+                switch (event.argCount) {
+                    case 0 -> logger.debug(event.format);
+                    case 1 -> logger.debug(event.format, event.arg1);
+                    case 2 -> logger.debug(event.format, event.arg1, event.arg2);
+                    default -> logger.debug(event.format, event.args);
+                }
+            }
+            case INFO -> {
+                switch (event.argCount) {
+                    case 0 -> logger.info(event.format);
+                    case 1 -> logger.info(event.format, event.arg1);
+                    case 2 -> logger.info(event.format, event.arg1, event.arg2);
+                    default -> logger.info(event.format, event.args);
+                }
+            }
+            case WARN -> {
+                switch (event.argCount) {
+                    case 0 -> logger.warn(event.format);
+                    case 1 -> logger.warn(event.format, event.arg1);
+                    case 2 -> logger.warn(event.format, event.arg1, event.arg2);
+                    default -> logger.warn(event.format, event.args);
+                }
+            }
+            default -> {
+                switch (event.argCount) {
+                    case 0 -> logger.error(event.format);
+                    case 1 -> logger.error(event.format, event.arg1);
+                    case 2 -> logger.error(event.format, event.arg1, event.arg2);
+                    default -> logger.error(event.format, event.args);
+                }
+            }
+        }
     }
 }
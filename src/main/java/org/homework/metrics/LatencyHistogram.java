@@ -0,0 +1,153 @@
+package org.homework.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма задержек в наносекундах с логарифмически-линейными корзинами, как в HdrHistogram.
+ * Каждый диапазон [2^k, 2^(k+1)) делится на 16 равных корзин, поэтому перцентили
+ * оцениваются с относительной ошибкой не больше 1/16 при фиксированном объёме памяти.
+ * Счётчики разнесены по полосам по ID потока, чтобы параллельные записи не боролись
+ * за одну строку кэша; полосы складываются только при чтении снимка.
+ */
+public final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS; // Корзин в одном двоичном порядке
+    private static final int MAX_MAGNITUDE = 40; // Значения до 2^41 нс (около 36 минут)
+    private static final int BUCKETS = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+    private static final int STRIPES = Math.min(16,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1));
+
+    private final AtomicLongArray[] stripes = new AtomicLongArray[STRIPES]; // Счётчики корзин по полосам
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new AtomicLongArray(BUCKETS);
+        }
+    }
+
+    /**
+     * Записывает задержку, отсчитанную от момента started.
+     *
+     * @param started Значение System.nanoTime() в начале операции.
+     */
+    public void recordSince(long started) {
+        record(System.nanoTime() - started);
+    }
+
+    /**
+     * Записывает задержку.
+     *
+     * @param nanos Задержка в наносекундах. Значения вне диапазона приводятся к его границам.
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        int stripe = (int) (Thread.currentThread().threadId() * 0x9E3779B97F4A7C15L >>> 32) & (STRIPES - 1);
+        stripes[stripe].incrementAndGet(index(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Складывает полосы в снимок. Записи, идущие во время чтения, могут попасть в снимок частично.
+     *
+     * @return Снимок гистограммы.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (AtomicLongArray stripe : stripes) {
+            for (int i = 0; i < BUCKETS; i++) {
+                long bucket = stripe.get(i);
+                counts[i] += bucket;
+                count += bucket;
+            }
+        }
+        return new Snapshot(counts, count, sum.sum(), max.get());
+    }
+
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >>> shift & (SUB_BUCKETS - 1));
+    }
+
+    /**
+     * Возвращает наибольшее значение, попадающее в корзину.
+     */
+    private static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / SUB_BUCKETS - 1;
+        return ((SUB_BUCKETS + index % SUB_BUCKETS + 1L) << shift) - 1;
+    }
+
+    /**
+     * Неизменяемый снимок гистограммы.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Возвращает число записанных значений.
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * Возвращает сумму записанных значений в наносекундах.
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Возвращает наибольшее записанное значение в наносекундах.
+         */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * Возвращает перцентиль в наносекундах: верхнюю границу корзины, в которую он попал.
+         *
+         * @param percentile Перцентиль от 0 до 100.
+         * @return Значение перцентиля или 0, если значений нет.
+         */
+        public long getPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+package org.homework.metrics;
+
+import org.homework.di.annotations.Register;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Реестр метрик приложения: счётчики, гистограммы задержек и показатели, читаемые из компонентов.
+ * Метрика задаётся названием и необязательной меткой с одним значением, например
+ * bot_command_duration_seconds{command="/get"}. Повторный запрос с тем же названием и
+ * значением метки возвращает тот же объект; поиск идёт по двум хеш-таблицам без выделения памяти,
+ * поэтому обращаться к реестру можно прямо на горячем пути.
+ * Метрики выводятся в текстовом формате Prometheus.
+ */
+@Register
+public class Metrics {
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String NO_LABEL = "";
+
+    private final Map<String, Family> families = new ConcurrentHashMap<>(); // Метрики по названию
+
+    /**
+     * Возвращает счётчик без меток.
+     *
+     * @param name Название метрики.
+     * @param help Описание, используемое при первой регистрации.
+     * @return Счётчик.
+     */
+    public LongAdder counter(String name, String help) {
+        return counter(name, help, null, NO_LABEL);
+    }
+
+    /**
+     * Возвращает счётчик с меткой.
+     *
+     * @param name  Название метрики.
+     * @param help  Описание, используемое при первой регистрации.
+     * @param label Название метки.
+     * @param value Значение метки.
+     * @return Счётчик.
+     */
+    public LongAdder counter(String name, String help, String label, String value) {
+        return (LongAdder) family(name, help, Type.COUNTER, label).child(value, LongAdder::new);
+    }
+
+    /**
+     * Возвращает гистограмму задержек без меток.
+     *
+     * @param name Название метрики.
+     * @param help Описание, используемое при первой регистрации.
+     * @return Гистограмма.
+     */
+    public LatencyHistogram histogram(String name, String help) {
+        return histogram(name, help, null, NO_LABEL);
+    }
+
+    /**
+     * Возвращает гистограмму задержек с меткой.
+     *
+     * @param name  Название метрики.
+     * @param help  Описание, используемое при первой регистрации.
+     * @param label Название метки.
+     * @param value Значение метки.
+     * @return Гистограмма.
+     */
+    public LatencyHistogram histogram(String name, String help, String label, String value) {
+        return (LatencyHistogram) family(name, help, Type.SUMMARY, label).child(value, LatencyHistogram::new);
+    }
+
+    /**
+     * Регистрирует показатель, значение которого читается при выводе метрик.
+     * Повторная регистрация заменяет источник значения.
+     *
+     * @param name   Название метрики.
+     * @param help   Описание.
+     * @param source Источник текущего значения.
+     */
+    public void gauge(String name, String help, DoubleSupplier source) {
+        family(name, help, Type.GAUGE, null).children.put(NO_LABEL, source);
+    }
+
+    /**
+     * Регистрирует счётчик, значение которого хранит сам компонент.
+     * Повторная регистрация заменяет источник значения.
+     *
+     * @param name   Название метрики.
+     * @param help   Описание.
+     * @param source Источник текущего значения.
+     */
+    public void counter(String name, String help, DoubleSupplier source) {
+        family(name, help, Type.COUNTER, null).children.put(NO_LABEL, source);
+    }
+
+    /**
+     * Возвращает текущие значения всех счётчиков и показателей.
+     *
+     * @return Значения по названию метрики с меткой, в алфавитном порядке.
+     */
+    public Map<String, Double> values() {
+        Map<String, Double> values = new TreeMap<>();
+        for (Family family : new TreeMap<>(families).values()) {
+            if (family.type != Type.SUMMARY) {
+                family.children.forEach((value, child) -> values.put(family.series(value, null, null), read(child)));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Возвращает снимки всех гистограмм.
+     *
+     * @return Снимки по названию метрики с меткой, в алфавитном порядке.
+     */
+    public Map<String, LatencyHistogram.Snapshot> histograms() {
+        Map<String, LatencyHistogram.Snapshot> snapshots = new TreeMap<>();
+        for (Family family : new TreeMap<>(families).values()) {
+            if (family.type == Type.SUMMARY) {
+                family.children.forEach((value, child) ->
+                        snapshots.put(family.series(value, null, null), ((LatencyHistogram) child).snapshot()));
+            }
+        }
+        return snapshots;
+    }
+
+    /**
+     * Выводит все метрики в текстовом формате Prometheus. Задержки выводятся в секундах.
+     *
+     * @param out Строка, в которую дописывается результат.
+     */
+    public void writePrometheus(StringBuilder out) {
+        for (Family family : new TreeMap<>(families).values()) {
+            out.append("# HELP ").append(family.name).append(' ').append(family.help).append('\n');
+            out.append("# TYPE ").append(family.name).append(' ').append(family.type.prometheusName).append('\n');
+            for (Map.Entry<String, Object> child : new TreeMap<>(family.children).entrySet()) {
+                String value = child.getKey();
+                if (family.type != Type.SUMMARY) {
+                    out.append(family.series(value, null, null)).append(' ').append(number(read(child.getValue()))).append('\n');
+                    continue;
+                }
+                LatencyHistogram.Snapshot snapshot = ((LatencyHistogram) child.getValue()).snapshot();
+                for (double quantile : QUANTILES) {
+                    out.append(family.series(value, "quantile", Double.toString(quantile))).append(' ')
+                            .append(seconds(snapshot.getPercentile(quantile * 100))).append('\n');
+                }
+                out.append(family.name).append("_sum").append(family.labels(value, null, null)).append(' ')
+                        .append(seconds(snapshot.getSum())).append('\n');
+                out.append(family.name).append("_count").append(family.labels(value, null, null)).append(' ')
+                        .append(snapshot.getCount()).append('\n');
+            }
+        }
+    }
+
+    private Family family(String name, String help, Type type, String label) {
+        Family family = families.get(name);
+        if (family == null) {
+            family = families.computeIfAbsent(name, key -> new Family(name, help, type, label));
+        }
+        if (family.type != type) {
+            throw new IllegalStateException("Метрика " + name + " уже зарегистрирована с другим типом");
+        }
+        return family;
+    }
+
+    private static double read(Object child) {
+        return child instanceof LongAdder adder ? adder.sum() : ((DoubleSupplier) child).getAsDouble();
+    }
+
+    /**
+     * Выводит целые значения без дробной части, остальные — как есть.
+     */
+    private static String number(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private enum Type {
+        COUNTER("counter"), GAUGE("gauge"), SUMMARY("summary");
+
+        private final String prometheusName;
+
+        Type(String prometheusName) {
+            this.prometheusName = prometheusName;
+        }
+    }
+
+    /**
+     * Метрики с общим названием, различающиеся значением метки.
+     */
+    private static final class Family {
+        private final String name;
+        private final String help;
+        private final Type type;
+        private final String label; // Название метки или null
+        private final Map<String, Object> children = new ConcurrentHashMap<>(); // Метрики по значению метки
+
+        private Family(String name, String help, Type type, String label) {
+            this.name = name;
+            this.help = help;
+            this.type = type;
+            this.label = label;
+        }
+
+        private Object child(String value, Supplier<Object> factory) {
+            Object child = children.get(value);
+            return child != null ? child : children.computeIfAbsent(value, key -> factory.get());
+        }
+
+        private String series(String value, String extraLabel, String extraValue) {
+            return name + labels(value, extraLabel, extraValue);
+        }
+
+        /**
+         * Формирует список меток в фигурных скобках или пустую строку, если меток нет.
+         */
+        private String labels(String value, String extraLabel, String extraValue) {
+            List<String> pairs = new ArrayList<>(2);
+            if (label != null) {
+                pairs.add(label + "=\"" + escape(value) + '"');
+            }
+            if (extraLabel != null) {
+                pairs.add(extraLabel + "=\"" + escape(extraValue) + '"');
+            }
+            return pairs.isEmpty() ? "" : "{" + String.join(",", pairs) + "}";
+        }
+
+        private static String escape(String value) {
+            return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+        }
+    }
+}
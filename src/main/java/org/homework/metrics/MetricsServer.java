@@ -0,0 +1,102 @@
+package org.homework.metrics;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.homework.Config;
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.logger.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HTTP-сервер, отдающий метрики в формате Prometheus по пути /metrics.
+ * Слушает только локальный адрес: метрики предназначены для агента сбора на той же машине.
+ */
+@Register
+public class MetricsServer {
+    private static final String PATH = "/metrics";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Resolve
+    private Metrics metrics; // Реестр метрик
+
+    @Resolve
+    private Logger logger; // Логгер
+
+    @Resolve
+    private ConfigLoader configLoader; // Конфигурация
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Запускает сервер на порту из свойства metrics.port. Пустое значение отключает сервер.
+     */
+    public synchronized void start() {
+        Config config = configLoader.get();
+        if (server != null || config.getString("metrics.port", null) == null) {
+            return;
+        }
+        int port = config.getInt("metrics.port", 0);
+        try {
+            server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при запуске сервера метрик", e);
+        }
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "metrics-server");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        server.createContext(PATH, this::export);
+        server.start();
+        logger.info("Метрики доступны по адресу http://{}:{}{}",
+                server.getAddress().getHostString(), server.getAddress().getPort(), PATH);
+    }
+
+    /**
+     * Возвращает порт, на котором слушает сервер, или -1, если сервер не запущен.
+     */
+    public synchronized int getPort() {
+        return server == null ? -1 : server.getAddress().getPort();
+    }
+
+    /**
+     * Останавливает сервер.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdown();
+            server = null;
+        }
+    }
+
+    private void export(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            StringBuilder text = new StringBuilder(4096);
+            metrics.writePrometheus(text);
+            byte[] body = text.toString().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+}
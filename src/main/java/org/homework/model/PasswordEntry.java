@@ -34,8 +34,12 @@ public class PasswordEntry {
         return password;
     }
 
+    /**
+     * Возвращает описание записи без пароля, чтобы пароль не попадал в логи.
+     * Ответ пользователю формируется по шаблону в ResponseRenderer.
+     */
     @Override
     public String toString() {
-        return "Service: " + name + "\nUsername: " + username + "\nPassword: " + password;
+        return "Service: " + name + "\nUsername: " + username + "\nPassword: ***";
     }
 }
\ No newline at end of file
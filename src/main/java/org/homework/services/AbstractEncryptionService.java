@@ -0,0 +1,121 @@
+package org.homework.services;
+
+import org.homework.api.EncryptionService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Общая часть реализаций шифрования: строки в Base64 поверх байтовых методов
+ * и пакетная обработка, выбор расшифровки потока по заголовку. Большие пакеты обрабатываются
+ * параллельно в ForkJoinPool, небольшие — в текущем потоке.
+ */
+public abstract class AbstractEncryptionService implements EncryptionService {
+    private static final int BATCH_THRESHOLD = 256; // Размер части, обрабатываемой без разбиения
+
+    @Override
+    public String encrypt(String data) {
+        byte[] encryptedBytes = encrypt(data.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(encryptedBytes);
+    }
+
+    @Override
+    public String decrypt(String encryptedData) {
+        byte[] decryptedBytes = decrypt(Base64.getDecoder().decode(encryptedData));
+        return new String(decryptedBytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public List<String> encryptAll(List<String> data) {
+        return transformAll(data, this::encrypt);
+    }
+
+    @Override
+    public List<String> decryptAll(List<String> encryptedData) {
+        return transformAll(encryptedData, this::decrypt);
+    }
+
+    /**
+     * Читает заголовок [формат][версия ключа] и оборачивает поток подходящей расшифровкой,
+     * так что поток читается независимо от выбранного encryption.algorithm.
+     *
+     * @param in     Поток с шифротекстом.
+     * @param legacy Расшифровка потоков AES.
+     * @param gcm    Расшифровка потоков AES-GCM.
+     * @return Поток открытых данных.
+     * @throws IOException Если заголовок потока не распознан.
+     */
+    protected static InputStream decryptingStream(InputStream in, AesDecryptor legacy, GcmDecryptor gcm)
+            throws IOException {
+        int format = in.read();
+        int version = in.read();
+        if (version < 0) {
+            throw new IOException("Неизвестный формат зашифрованного потока");
+        }
+        if (format == AesDecryptor.FORMAT) {
+            return legacy.decryptingStream(in, version);
+        }
+        if (format == GcmDecryptor.STREAM_FORMAT) {
+            return gcm.decryptingStream(in, version);
+        }
+        throw new IOException("Неизвестный формат зашифрованного потока");
+    }
+
+    /**
+     * Применяет преобразование к каждому элементу, сохраняя порядок.
+     *
+     * @param input     Входные данные.
+     * @param transform Преобразование одного элемента.
+     * @return Результаты в порядке входных данных.
+     */
+    private List<String> transformAll(List<String> input, UnaryOperator<String> transform) {
+        String[] source = input.toArray(new String[0]);
+        String[] result = new String[source.length];
+        BatchTask task = new BatchTask(source, result, 0, source.length, transform);
+        if (source.length <= BATCH_THRESHOLD) {
+            task.compute();
+        } else {
+            ForkJoinPool.commonPool().invoke(task);
+        }
+        return Arrays.asList(result);
+    }
+
+    /**
+     * Задача, делящая диапазон элементов пополам, пока он не станет меньше порога.
+     */
+    private static final class BatchTask extends RecursiveAction {
+        private final String[] source;
+        private final String[] result;
+        private final int from;
+        private final int to;
+        private final UnaryOperator<String> transform;
+
+        private BatchTask(String[] source, String[] result, int from, int to, UnaryOperator<String> transform) {
+            this.source = source;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+            this.transform = transform;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    result[i] = transform.apply(source[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new BatchTask(source, result, from, middle, transform),
+                    new BatchTask(source, result, middle, to, transform));
+        }
+    }
+}
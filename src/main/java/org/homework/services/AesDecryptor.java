@@ -0,0 +1,115 @@
+package org.homework.services;
+
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Расшифровка записей AES без режима: исходных записей без заголовка (ключ версии 0),
+ * записей [формат 1][версия ключа], записей чатов [формат 4][версия ключа] и потоков формата 1.
+ * Используется {@link BasicEncryptionService} и {@link GcmEncryptionService}, который
+ * продолжает читать записи прежнего формата. Компонент не реализует EncryptionService,
+ * поэтому не участвует в выборе реализации по encryption.algorithm.
+ */
+@Register
+public class AesDecryptor {
+    static final String ALGORITHM = "AES";
+    static final byte FORMAT = 1; // Формат шифротекста с версией ключа
+    static final byte TENANT_FORMAT = 4; // Шифротекст ключом чата
+    static final int HEADER_LENGTH = 2;
+    static final int TENANT_POOLS = 4096; // Число чатов с готовыми пулами
+    private static final int BLOCK_SIZE = 16;
+
+    @Resolve
+    private KeyRing keyRing; // Версии ключей шифрования
+
+    private final Map<Integer, CipherPool> decryptors = new ConcurrentHashMap<>(); // Пулы по версии ключа
+    private final Map<String, CipherPool> tenantDecryptors = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CipherPool> eldest) {
+            return size() > TENANT_POOLS;
+        }
+    }; // Пулы по версии ключа и чату в порядке обращения
+
+    /**
+     * Расшифровывает запись. Записи чатов распознаются, только когда известен чат.
+     *
+     * @param chatId        ID чата или null.
+     * @param encryptedData Зашифрованные данные.
+     * @return Расшифрованные данные.
+     */
+    public byte[] decrypt(String chatId, byte[] encryptedData) {
+        try {
+            if (isLegacy(encryptedData)) {
+                return pool(KeyRing.LEGACY_VERSION).doFinal(encryptedData);
+            }
+            int length = encryptedData.length - HEADER_LENGTH;
+            if (encryptedData[0] == TENANT_FORMAT && chatId != null) {
+                return tenantPool(keyVersion(encryptedData), chatId)
+                        .doFinal(encryptedData, HEADER_LENGTH, length, 0);
+            }
+            if (encryptedData[0] != FORMAT) {
+                throw new IllegalArgumentException("Неизвестный формат шифротекста: " + encryptedData[0]);
+            }
+            return pool(keyVersion(encryptedData)).doFinal(encryptedData, HEADER_LENGTH, length, 0);
+        } catch (Exception e) {
+            throw new RuntimeException("Ошибка при дешифровании данных", e);
+        }
+    }
+
+    /**
+     * Оборачивает поток формата 1, из которого уже прочитаны байты формата и версии ключа.
+     *
+     * @param in      Поток после заголовка.
+     * @param version Версия ключа.
+     * @return Поток расшифрованных данных.
+     */
+    public InputStream decryptingStream(InputStream in, int version) throws IOException {
+        try {
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(Cipher.DECRYPT_MODE, keyRing.getKey(version));
+            return new CipherInputStream(in, cipher);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Ошибка при создании шифра", e);
+        }
+    }
+
+    /**
+     * Шифротекст без заголовка имеет длину, кратную блоку AES, а с заголовком — нет.
+     */
+    static boolean isLegacy(byte[] encryptedData) {
+        return encryptedData.length % BLOCK_SIZE == 0;
+    }
+
+    static int keyVersion(byte[] encryptedData) {
+        return encryptedData[1] & 0xFF;
+    }
+
+    private CipherPool pool(int version) {
+        return decryptors.computeIfAbsent(version,
+                v -> new CipherPool(ALGORITHM, Cipher.DECRYPT_MODE, keyRing.getKey(v)));
+    }
+
+    private CipherPool tenantPool(int version, String chatId) {
+        String cacheKey = version + ":" + chatId;
+        synchronized (tenantDecryptors) {
+            CipherPool pool = tenantDecryptors.get(cacheKey);
+            if (pool != null) {
+                return pool;
+            }
+        }
+        CipherPool pool = new CipherPool(ALGORITHM, Cipher.DECRYPT_MODE, keyRing.getTenantKey(version, chatId));
+        synchronized (tenantDecryptors) {
+            CipherPool existing = tenantDecryptors.putIfAbsent(cacheKey, pool);
+            return existing != null ? existing : pool;
+        }
+    }
+}
@@ -1,43 +1,153 @@
 package org.homework.services;
 
-import org.homework.api.EncryptionService;
+import org.homework.di.annotations.ConditionalOnProperty;
 import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
 
 import javax.crypto.Cipher;
-import javax.crypto.spec.SecretKeySpec;
-import java.util.Base64;
+import javax.crypto.CipherOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Реализация сервиса шифрования с использованием алгоритма AES.
+ * Шифротекст начинается с заголовка [формат][версия ключа], поэтому после смены ключа
+ * старые записи расшифровываются прежним ключом. Шифротексты без заголовка
+ * (их длина кратна блоку AES) относятся к исходному ключу версии 0.
+ * Записи чатов имеют отдельный формат и шифруются ключом чата из {@link KeyRing#getTenantKey}.
+ * Объекты Cipher переиспользуются через пулы, по пулу на версию ключа
+ * и на пару (версия ключа, чат). Пулы чатов хранятся для недавно активных чатов,
+ * поэтому Cipher.init с ключом чата выполняется только при создании экземпляра.
+ * Расшифровку выполняет {@link AesDecryptor}, а записи и потоки AES-GCM, оставшиеся после
+ * encryption.algorithm=aes-gcm, — {@link GcmDecryptor}; фоновое перешифрование переводит их в формат AES.
+ * Используется по умолчанию (encryption.algorithm=aes).
  */
 @Register
-public class BasicEncryptionService implements EncryptionService {
-    private static final String SECRET_KEY = "mySuperSecretKey"; // Ключ шифрования
-    private static final String ALGORITHM = "AES"; // Используемый алгоритм
+@ConditionalOnProperty(name = "encryption.algorithm", havingValue = "aes", matchIfMissing = true)
+public class BasicEncryptionService extends AbstractEncryptionService {
+    private static final String ALGORITHM = AesDecryptor.ALGORITHM; // Используемый алгоритм
+    private static final byte FORMAT = AesDecryptor.FORMAT;
+    private static final byte TENANT_FORMAT = AesDecryptor.TENANT_FORMAT;
+    private static final int HEADER_LENGTH = AesDecryptor.HEADER_LENGTH;
+
+    @Resolve
+    private KeyRing keyRing; // Версии ключей шифрования
+
+    @Resolve
+    private AesDecryptor decryptor; // Расшифровка записей
+
+    @Resolve
+    private GcmDecryptor gcm; // Расшифровка записей, оставшихся от encryption.algorithm=aes-gcm
+
+    private final Map<Integer, CipherPool> encryptors = new ConcurrentHashMap<>(); // Пулы по версии ключа
+    private final Map<String, CipherPool> tenantEncryptors = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CipherPool> eldest) {
+            return size() > AesDecryptor.TENANT_POOLS;
+        }
+    }; // Пулы по версии ключа и чату в порядке обращения
 
     @Override
-    public String encrypt(String data) {
+    public byte[] encrypt(byte[] data) {
+        int version = keyRing.getActiveVersion();
         try {
-            SecretKeySpec key = new SecretKeySpec(SECRET_KEY.getBytes(), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            byte[] encryptedBytes = cipher.doFinal(data.getBytes());
-            return Base64.getEncoder().encodeToString(encryptedBytes);
+            byte[] encrypted = pool(version).doFinal(data, 0, data.length, HEADER_LENGTH);
+            encrypted[0] = FORMAT;
+            encrypted[1] = (byte) version;
+            return encrypted;
         } catch (Exception e) {
             throw new RuntimeException("Ошибка при шифровании данных", e);
         }
     }
 
     @Override
-    public String decrypt(String encryptedData) {
+    public byte[] encrypt(String chatId, byte[] data) {
+        int version = keyRing.getActiveVersion();
         try {
-            SecretKeySpec key = new SecretKeySpec(SECRET_KEY.getBytes(), ALGORITHM);
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, key);
-            byte[] decryptedBytes = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
-            return new String(decryptedBytes);
+            byte[] encrypted = tenantPool(version, chatId).doFinal(data, 0, data.length, HEADER_LENGTH);
+            encrypted[0] = TENANT_FORMAT;
+            encrypted[1] = (byte) version;
+            return encrypted;
         } catch (Exception e) {
-            throw new RuntimeException("Ошибка при дешифровании данных", e);
+            throw new RuntimeException("Ошибка при шифровании данных", e);
+        }
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedData) {
+        return decrypt(null, encryptedData);
+    }
+
+    @Override
+    public byte[] decrypt(String chatId, byte[] encryptedData) {
+        if (GcmDecryptor.isGcm(chatId, encryptedData)) {
+            if (!AesDecryptor.isLegacy(encryptedData)) {
+                return gcm.decrypt(chatId, encryptedData);
+            }
+            // Длина кратна блоку: это может быть и запись без заголовка, начавшаяся с байта формата GCM
+            try {
+                return gcm.decrypt(chatId, encryptedData);
+            } catch (RuntimeException e) {
+                return decryptor.decrypt(chatId, encryptedData);
+            }
+        }
+        return decryptor.decrypt(chatId, encryptedData);
+    }
+
+    @Override
+    public boolean isCurrent(String chatId, byte[] encryptedData) {
+        return !AesDecryptor.isLegacy(encryptedData) && encryptedData[0] == TENANT_FORMAT
+                && AesDecryptor.keyVersion(encryptedData) == keyRing.getActiveVersion();
+    }
+
+    private CipherPool pool(int version) {
+        return encryptors.computeIfAbsent(version,
+                v -> new CipherPool(ALGORITHM, Cipher.ENCRYPT_MODE, keyRing.getKey(v)));
+    }
+
+    /**
+     * Возвращает пул, инициализированный ключом чата.
+     */
+    private CipherPool tenantPool(int version, String chatId) {
+        String cacheKey = version + ":" + chatId;
+        synchronized (tenantEncryptors) {
+            CipherPool pool = tenantEncryptors.get(cacheKey);
+            if (pool != null) {
+                return pool;
+            }
+        }
+        CipherPool pool = new CipherPool(ALGORITHM, Cipher.ENCRYPT_MODE, keyRing.getTenantKey(version, chatId));
+        synchronized (tenantEncryptors) {
+            CipherPool existing = tenantEncryptors.putIfAbsent(cacheKey, pool);
+            return existing != null ? existing : pool;
+        }
+    }
+
+    @Override
+    public OutputStream encryptingStream(OutputStream out) throws IOException {
+        int version = keyRing.getActiveVersion();
+        out.write(FORMAT);
+        out.write(version);
+        return new CipherOutputStream(out, newCipher(Cipher.ENCRYPT_MODE, version));
+    }
+
+    @Override
+    public InputStream decryptingStream(InputStream in) throws IOException {
+        return decryptingStream(in, decryptor, gcm);
+    }
+
+    private Cipher newCipher(int mode, int version) throws IOException {
+        try {
+            Cipher cipher = Cipher.getInstance(ALGORITHM);
+            cipher.init(mode, keyRing.getKey(version));
+            return cipher;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Ошибка при создании шифра", e);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,66 @@
+package org.homework.services;
+
+import javax.crypto.Cipher;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Пул заранее инициализированных объектов Cipher.
+ * Cipher не потокобезопасен, поэтому каждый вызов берёт экземпляр из пула
+ * и возвращает его после doFinal. Поиск провайдера и init выполняются
+ * только при создании нового экземпляра.
+ */
+final class CipherPool {
+    private final Queue<Cipher> idle = new ConcurrentLinkedQueue<>(); // Свободные экземпляры
+    private final String transformation;
+    private final int mode;
+    private final Key key;
+
+    CipherPool(String transformation, int mode, Key key) {
+        this.transformation = transformation;
+        this.mode = mode;
+        this.key = key;
+    }
+
+    /**
+     * Выполняет шифрование или дешифрование одним вызовом doFinal.
+     *
+     * @param input Входные байты.
+     * @return Результат преобразования.
+     */
+    byte[] doFinal(byte[] input) throws GeneralSecurityException {
+        Cipher cipher = acquire();
+        byte[] output = cipher.doFinal(input);
+        idle.offer(cipher); // После ошибки экземпляр в пул не возвращается
+        return output;
+    }
+
+    /**
+     * Преобразует часть входных байтов, оставляя в начале результата место под заголовок.
+     *
+     * @param input        Входные байты.
+     * @param offset       Начало преобразуемой части.
+     * @param length       Длина преобразуемой части.
+     * @param headerLength Число байтов, зарезервированных перед результатом.
+     * @return Заголовок (заполненный нулями) и результат преобразования.
+     */
+    byte[] doFinal(byte[] input, int offset, int length, int headerLength) throws GeneralSecurityException {
+        Cipher cipher = acquire();
+        byte[] output = new byte[headerLength + cipher.getOutputSize(length)];
+        int written = cipher.doFinal(input, offset, length, output, headerLength);
+        idle.offer(cipher);
+        return headerLength + written == output.length ? output : Arrays.copyOf(output, headerLength + written);
+    }
+
+    private Cipher acquire() throws GeneralSecurityException {
+        Cipher cipher = idle.poll();
+        if (cipher == null) {
+            cipher = Cipher.getInstance(transformation);
+            cipher.init(mode, key);
+        }
+        return cipher;
+    }
+}
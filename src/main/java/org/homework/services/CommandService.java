@@ -1,5 +1,6 @@
 package org.homework.services;
 
+import org.homework.di.annotations.Command;
 import org.homework.di.annotations.Register;
 import org.homework.di.annotations.Resolve;
 import org.homework.logger.Logger;
@@ -10,12 +11,24 @@ import java.util.List;
 
 /**
  * Сервис для обработки команд бота.
+ * Методы, помеченные @Command, вызываются через CommandRouter.
+ * Тексты ответов берутся из шаблонов ResponseRenderer на языке чата.
  */
 @Register
 public class CommandService {
+    private static final int MAX_FIND_RESULTS = 50; // Наибольшее число сервисов в ответе /find
+    private static final String FIND_RESULTS_LIMIT = String.valueOf(MAX_FIND_RESULTS);
+    private static final int MAX_SUGGESTIONS = 3; // Число подсказок при ненайденном сервисе
+
     @Resolve
     private PasswordService passwordService; // Сервис для работы с паролями
 
+    @Resolve
+    private ServiceListPager serviceListPager; // Постраничный вывод списка сервисов
+
+    @Resolve
+    private ResponseRenderer responseRenderer; // Шаблоны ответов
+
     @Resolve
     private Logger logger; // Логгер
 
@@ -25,14 +38,9 @@ public class CommandService {
      * @param chatId ID чата.
      * @return Сообщение с приветствием и списком команд.
      */
+    @Command("/start")
     public SendMessage start(String chatId) {
-        return new SendMessage(chatId, "Добро пожаловать в PasswordManagerBot!\n\n" +
-                "Используйте команды:\n" +
-                "/add <service> <username> <password> - Добавить пароль\n" +
-                "/get <service> - Получить пароль\n" +
-                "/delete <service> - Удалить пароль\n" +
-                "/list - Показать все сервисы\n" +
-                "/help - Справка");
+        return responseRenderer.message(chatId, Reply.WELCOME);
     }
 
     /**
@@ -44,10 +52,11 @@ public class CommandService {
      * @param password Пароль.
      * @return Сообщение о результате операции.
      */
+    @Command(value = "/add", usage = "/add <service> <username> <password>")
     public SendMessage addPassword(String chatId, String name, String username, String password) {
-        passwordService.addPassword(name, username, password);
-        logger.info("Пароль добавлен для сервиса: " + name);
-        return new SendMessage(chatId, "Пароль для " + name + " успешно добавлен!");
+        passwordService.addPassword(chatId, name, username, password);
+        logger.info("Пароль добавлен для сервиса: {}", name);
+        return responseRenderer.message(chatId, Reply.PASSWORD_ADDED, name);
     }
 
     /**
@@ -57,13 +66,19 @@ public class CommandService {
      * @param name   Название сервиса.
      * @return Сообщение с паролем или ошибкой.
      */
+    @Command(value = "/get", usage = "/get <service>")
     public SendMessage getPassword(String chatId, String name) {
-        PasswordEntry entry = passwordService.getPassword(name);
+        PasswordEntry entry = passwordService.getPassword(chatId, name);
         if (entry != null) {
-            return new SendMessage(chatId, entry.toString());
-        } else {
-            return new SendMessage(chatId, "Пароль для " + name + " не найден.");
+            return responseRenderer.message(chatId, Reply.PASSWORD_ENTRY,
+                    entry.getName(), entry.getUsername(), entry.getPassword());
         }
+        List<String> suggestions = passwordService.suggestServices(chatId, name, MAX_SUGGESTIONS);
+        if (suggestions.isEmpty()) {
+            return responseRenderer.message(chatId, Reply.PASSWORD_NOT_FOUND, name);
+        }
+        return responseRenderer.message(chatId, Reply.PASSWORD_NOT_FOUND_SUGGESTIONS, name,
+                String.join(", ", suggestions));
     }
 
     /**
@@ -73,29 +88,42 @@ public class CommandService {
      * @param name   Название сервиса.
      * @return Сообщение о результате операции.
      */
+    @Command(value = "/delete", usage = "/delete <service>")
     public SendMessage deletePassword(String chatId, String name) {
-        passwordService.deletePassword(name);
-        logger.info("Пароль удален для сервиса: " + name);
-        return new SendMessage(chatId, "Пароль для " + name + " удален.");
+        passwordService.deletePassword(chatId, name);
+        logger.info("Пароль удален для сервиса: {}", name);
+        return responseRenderer.message(chatId, Reply.PASSWORD_DELETED, name);
     }
 
     /**
      * Обрабатывает команду /list.
      *
      * @param chatId ID чата.
-     * @return Сообщение со списком всех сервисов.
+     * @return Сообщение с первой страницей списка сервисов.
      */
+    @Command("/list")
     public SendMessage listPasswords(String chatId) {
-        List<String> services = passwordService.getAllServices();
+        return serviceListPager.firstPage(chatId);
+    }
+
+    /**
+     * Обрабатывает команду /find.
+     *
+     * @param chatId ID чата.
+     * @param prefix Начало названия сервиса.
+     * @return Сообщение с найденными сервисами.
+     */
+    @Command(value = "/find", usage = "/find <prefix>")
+    public SendMessage findServices(String chatId, String prefix) {
+        List<String> services = passwordService.findServices(chatId, prefix, MAX_FIND_RESULTS + 1);
         if (services.isEmpty()) {
-            return new SendMessage(chatId, "Сохраненных паролей нет.");
-        } else {
-            StringBuilder response = new StringBuilder("Сохраненные сервисы:\n");
-            for (String service : services) {
-                response.append("- ").append(service).append("\n");
-            }
-            return new SendMessage(chatId, response.toString());
+            return responseRenderer.message(chatId, Reply.FIND_NOT_FOUND, prefix);
+        }
+        if (services.size() <= MAX_FIND_RESULTS) {
+            return responseRenderer.list(chatId, Reply.FIND_HEADER, services, null);
         }
+        return responseRenderer.list(chatId, Reply.FIND_HEADER, services.subList(0, MAX_FIND_RESULTS),
+                responseRenderer.text(chatId, Reply.FIND_TRUNCATED, FIND_RESULTS_LIMIT));
     }
 
     /**
@@ -104,12 +132,25 @@ public class CommandService {
      * @param chatId ID чата.
      * @return Сообщение со списком команд.
      */
+    @Command("/help")
     public SendMessage getHelp(String chatId) {
-        return new SendMessage(chatId, "Доступные команды:\n" +
-                "/add <service> <username> <password> - Добавить пароль\n" +
-                "/get <service> - Получить пароль\n" +
-                "/delete <service> - Удалить пароль\n" +
-                "/list - Показать все сервисы\n" +
-                "/help - Справка");
+        return responseRenderer.message(chatId, Reply.HELP);
+    }
+
+    /**
+     * Обрабатывает команду /language.
+     *
+     * @param chatId ID чата.
+     * @param code   Код языка: ru или en.
+     * @return Сообщение на выбранном языке.
+     */
+    @Command(value = "/language", usage = "/language <ru|en>")
+    public SendMessage setLanguage(String chatId, String code) {
+        Language language = Language.fromCode(code);
+        if (language == null) {
+            return responseRenderer.message(chatId, Reply.LANGUAGE_UNKNOWN);
+        }
+        responseRenderer.setLanguage(chatId, language);
+        return responseRenderer.message(chatId, Reply.LANGUAGE_CHANGED);
     }
 }
\ No newline at end of file
@@ -0,0 +1,124 @@
+package org.homework.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковый разбор CSV (RFC 4180): поля в кавычках могут содержать запятые,
+ * переводы строк и удвоенные кавычки. Записи читаются по одной через буфер
+ * фиксированного размера, поэтому расход памяти не зависит от размера файла.
+ */
+final class CsvReader {
+    private static final int MAX_FIELD_LENGTH = 64 * 1024; // Защита от файла без переводов строк
+    private static final char BOM = '\uFEFF';
+
+    private final Reader in;
+    private final char[] buffer = new char[8192];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private int line = 1; // Номер строки, с которой начинается следующая запись
+    private int recordLine;
+    private boolean started;
+
+    CsvReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Читает следующую запись. Пустые строки пропускаются.
+     *
+     * @return Поля записи или null, если файл закончился.
+     * @throws IOException Если не удалось прочитать файл или запись слишком длинная.
+     */
+    List<String> next() throws IOException {
+        int c = read();
+        if (!started) {
+            started = true;
+            if (c == BOM) {
+                c = read();
+            }
+        }
+        while (c == '\r' || c == '\n') {
+            c = skipLineBreak(c);
+        }
+        if (c < 0) {
+            return null;
+        }
+        recordLine = line;
+        List<String> fields = new ArrayList<>();
+        boolean quoted = false;
+        field.setLength(0);
+        while (true) {
+            if (quoted) {
+                if (c < 0) {
+                    throw new IOException("Незакрытая кавычка в записи, начинающейся на строке " + recordLine);
+                }
+                if (c == '"') {
+                    c = read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                } else if (c == '\n') {
+                    line++;
+                }
+                append(c);
+            } else if (c == '"' && field.isEmpty()) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c < 0 || c == '\r' || c == '\n') {
+                fields.add(field.toString());
+                if (c >= 0) {
+                    int next = skipLineBreak(c);
+                    if (next >= 0) {
+                        position--; // Символ относится к следующей записи и ещё лежит в буфере
+                    }
+                }
+                return fields;
+            } else {
+                append(c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Возвращает номер строки, с которой началась последняя прочитанная запись.
+     */
+    int getLine() {
+        return recordLine;
+    }
+
+    private void append(int c) throws IOException {
+        if (field.length() == MAX_FIELD_LENGTH) {
+            throw new IOException("Слишком длинное поле в записи, начинающейся на строке " + recordLine);
+        }
+        field.append((char) c);
+    }
+
+    /**
+     * Пропускает перевод строки \n, \r или \r\n и возвращает следующий за ним символ.
+     */
+    private int skipLineBreak(int c) throws IOException {
+        line++;
+        int next = read();
+        return c == '\r' && next == '\n' ? read() : next;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++];
+    }
+}
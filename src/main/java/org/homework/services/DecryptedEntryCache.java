@@ -0,0 +1,300 @@
+package org.homework.services;
+
+import org.homework.Config;
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Register;
+import org.homework.model.PasswordEntry;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Кэш расшифрованных записей для повторных запросов /get.
+ * Размер ограничен свойством cache.size (0 отключает кэш), время жизни записи — cache.ttl.seconds.
+ * Кэш разбит на сегменты с вытеснением давно не использованных записей.
+ * Устаревшие записи удаляет фоновая очистка. Записи чата удаляются целиком,
+ * когда его раздел выгружается из памяти, а запись — когда её перешифровывают новым ключом.
+ * Открытые пароли не затираются: PasswordEntry хранит пароль в неизменяемой String,
+ * поэтому удалённая из кэша запись остаётся в куче до сборки мусора. Кэш лишь ограничивает
+ * время, в течение которого на неё есть ссылка.
+ * Размер и время жизни можно изменить без перезапуска через applyConfig; число сегментов
+ * выбирается при создании по исходному размеру.
+ */
+@Register
+public class DecryptedEntryCache {
+    private static final int MAX_SEGMENTS = 16;
+    private static final long DEFAULT_TTL_SECONDS = 60;
+
+    private final Segment[] segments;
+    private volatile boolean enabled;
+    private volatile long ttlNanos;
+    private ScheduledExecutorService sweeper;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public DecryptedEntryCache() {
+        Config config = ConfigLoader.current();
+        int capacity = config.getInt("cache.size", 0);
+        enabled = capacity > 0;
+        ttlNanos = TimeUnit.SECONDS.toNanos(config.getLong("cache.ttl.seconds", DEFAULT_TTL_SECONDS));
+        segments = new Segment[Math.min(MAX_SEGMENTS, Integer.highestOneBit(Math.max(1, capacity)))];
+        int segmentCapacity = Math.max(1, (capacity + segments.length - 1) / segments.length);
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        if (enabled) {
+            startSweeper();
+        }
+    }
+
+    /**
+     * Применяет размер и время жизни из конфигурации. При уменьшении размера лишние записи
+     * вытесняются сразу, при cache.size=0 кэш очищается и отключается.
+     *
+     * @param config Снимок конфигурации.
+     */
+    public void applyConfig(Config config) {
+        int capacity = config.getInt("cache.size", 0);
+        ttlNanos = TimeUnit.SECONDS.toNanos(config.getLong("cache.ttl.seconds", DEFAULT_TTL_SECONDS));
+        int segmentCapacity = capacity > 0 ? (capacity + segments.length - 1) / segments.length : 0;
+        if (capacity == 0) {
+            enabled = false;
+        }
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.capacity = Math.max(1, segmentCapacity);
+                segment.trimTo(segmentCapacity);
+            }
+        }
+        if (capacity > 0) {
+            enabled = true;
+            startSweeper();
+        }
+    }
+
+    private synchronized void startSweeper() {
+        if (sweeper != null) {
+            return;
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(TimeUnit.SECONDS.toNanos(1), ttlNanos);
+        sweeper.scheduleWithFixedDelay(this::removeExpired, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Возвращает запись из кэша.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     * @return Запись с открытым паролем или null, если её нет в кэше.
+     */
+    public PasswordEntry get(String chatId, String name) {
+        if (!enabled) {
+            return null;
+        }
+        Key key = new Key(chatId, name);
+        Segment segment = segment(key);
+        synchronized (segment) {
+            CachedEntry cached = segment.get(key);
+            if (cached != null && cached.expiresAt - System.nanoTime() <= 0) {
+                segment.remove(key);
+                evictions.increment();
+                cached = null;
+            }
+            if (cached == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return cached.entry;
+        }
+    }
+
+    /**
+     * Возвращает метку сегмента, которую нужно получить до чтения из хранилища.
+     * Если между чтением и вызовом put запись была инвалидирована, put ничего не сохранит.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     * @return Метка для put.
+     */
+    public long stamp(String chatId, String name) {
+        Segment segment = segment(new Key(chatId, name));
+        synchronized (segment) {
+            return segment.invalidations;
+        }
+    }
+
+    /**
+     * Сохраняет расшифрованную запись.
+     *
+     * @param chatId ID чата.
+     * @param entry  Запись с открытым паролем.
+     * @param stamp  Метка, полученная через stamp до чтения записи.
+     */
+    public void put(String chatId, PasswordEntry entry, long stamp) {
+        if (!enabled) {
+            return;
+        }
+        Key key = new Key(chatId, entry.getName());
+        Segment segment = segment(key);
+        synchronized (segment) {
+            if (segment.invalidations != stamp) {
+                return;
+            }
+            segment.put(key, new CachedEntry(entry, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    /**
+     * Удаляет запись из кэша после изменения или удаления пароля.
+     * Выполняется и при отключённом кэше, чтобы после его включения не вернуть устаревшую запись.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     */
+    public void invalidate(String chatId, String name) {
+        Key key = new Key(chatId, name);
+        Segment segment = segment(key);
+        synchronized (segment) {
+            segment.invalidations++;
+            segment.remove(key);
+        }
+    }
+
+    /**
+     * Удаляет все записи чата, например при выгрузке его раздела из памяти.
+     *
+     * @param chatId ID чата.
+     */
+    public void invalidateChat(String chatId) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.invalidations++;
+                Iterator<Map.Entry<Key, CachedEntry>> iterator = segment.entrySet().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().getKey().chatId().equals(chatId)) {
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает число попаданий в кэш.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Возвращает число промахов кэша.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Возвращает число записей, вытесненных по размеру или времени жизни.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * Возвращает долю попаданий среди всех обращений.
+     */
+    public double getHitRate() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : hitCount / (double) total;
+    }
+
+    /**
+     * Возвращает текущее число записей в кэше.
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    private void removeExpired() {
+        long now = System.nanoTime();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                Iterator<CachedEntry> iterator = segment.values().iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().expiresAt - now <= 0) {
+                        iterator.remove();
+                        evictions.increment();
+                    }
+                }
+            }
+        }
+    }
+
+    private Segment segment(Key key) {
+        int hash = key.hashCode();
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    private record Key(String chatId, String name) {
+    }
+
+    /**
+     * Сегмент кэша: LinkedHashMap в порядке доступа. Доступ только под блокировкой на сегменте.
+     */
+    private final class Segment extends LinkedHashMap<Key, CachedEntry> {
+        private int capacity;
+        private long invalidations; // Число инвалидаций, защищает от записи устаревших данных
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        /**
+         * Вытесняет давно не использованные записи, пока их не останется не больше limit.
+         */
+        private void trimTo(int limit) {
+            Iterator<CachedEntry> iterator = values().iterator();
+            while (size() > limit && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+                evictions.increment();
+            }
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, CachedEntry> eldest) {
+            if (size() <= capacity) {
+                return false;
+            }
+            evictions.increment();
+            return true;
+        }
+    }
+
+    /**
+     * Расшифрованная запись и момент её истечения.
+     */
+    private record CachedEntry(PasswordEntry entry, long expiresAt) {
+    }
+}
@@ -0,0 +1,222 @@
+package org.homework.services;
+
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Расшифровка записей AES-GCM: [формат 2][версия ключа][nonce][шифротекст с тегом],
+ * записей чатов с форматом 5 и потоков с форматом 3.
+ * Используется {@link GcmEncryptionService} и {@link BasicEncryptionService}, поэтому записи GCM
+ * читаются и после возврата к encryption.algorithm=aes, а фоновое перешифрование переводит их
+ * в формат AES. Запись с байтом формата GCM, не прошедшая проверку тега, отклоняется.
+ */
+@Register
+public class GcmDecryptor {
+    static final String TRANSFORMATION = "AES/GCM/NoPadding";
+    static final byte FORMAT = 2; // Запись AES-GCM
+    static final byte STREAM_FORMAT = 3; // Поток из блоков AES-GCM
+    static final byte TENANT_FORMAT = 5; // Запись AES-GCM ключом чата
+    static final int HEADER_LENGTH = 2;
+    static final int NONCE_LENGTH = 12;
+    static final int STREAM_NONCE_PREFIX = 8; // Остальные 4 байта nonce — номер блока
+    static final int TAG_BITS = 128;
+    static final int TAG_LENGTH = TAG_BITS / 8;
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    @Resolve
+    private KeyRing keyRing; // Версии ключей шифрования
+
+    private final Map<Integer, Queue<Cipher>> idle = new ConcurrentHashMap<>(); // Свободные Cipher по версии ключа
+    private final Map<String, Queue<Cipher>> tenantIdle = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Queue<Cipher>> eldest) {
+            return size() > AesDecryptor.TENANT_POOLS;
+        }
+    }; // Свободные Cipher по версии ключа и чату в порядке обращения
+
+    /**
+     * Проверяет по байту формата, что запись зашифрована AES-GCM.
+     * Запись ключом чата распознаётся, только когда известен чат.
+     *
+     * @param chatId        ID чата или null.
+     * @param encryptedData Зашифрованные данные.
+     * @return true для записи формата 2 или 5.
+     */
+    static boolean isGcm(String chatId, byte[] encryptedData) {
+        return encryptedData.length >= HEADER_LENGTH + NONCE_LENGTH + TAG_LENGTH
+                && (encryptedData[0] == FORMAT || encryptedData[0] == TENANT_FORMAT && chatId != null);
+    }
+
+    /**
+     * Расшифровывает запись AES-GCM и проверяет её тег.
+     *
+     * @param chatId        ID чата или null.
+     * @param encryptedData Запись, для которой {@link #isGcm} вернул true.
+     * @return Расшифрованные данные.
+     * @throws RuntimeException если тег не совпал или ключ неизвестен.
+     */
+    public byte[] decrypt(String chatId, byte[] encryptedData) {
+        try {
+            return open(chatId, encryptedData);
+        } catch (AEADBadTagException e) {
+            throw new RuntimeException("Нарушена целостность зашифрованных данных", e);
+        } catch (GeneralSecurityException | IllegalStateException e) {
+            throw new RuntimeException("Ошибка при дешифровании данных", e);
+        }
+    }
+
+    /**
+     * Оборачивает поток формата 3, из которого уже прочитаны байты формата и версии ключа.
+     *
+     * @param in      Поток после заголовка.
+     * @param version Версия ключа.
+     * @return Поток расшифрованных данных.
+     */
+    public InputStream decryptingStream(InputStream in, int version) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        byte[] prefix = new byte[STREAM_NONCE_PREFIX];
+        data.readFully(prefix);
+        return new OpeningInputStream(data, keyRing.getKey(version), prefix);
+    }
+
+    private byte[] open(String chatId, byte[] encryptedData) throws GeneralSecurityException {
+        int version = encryptedData[1] & 0xFF;
+        boolean tenant = encryptedData[0] == TENANT_FORMAT;
+        Key key = tenant ? keyRing.getTenantKey(version, chatId) : keyRing.getKey(version);
+        Queue<Cipher> ciphers = tenant ? idle(tenantIdle, version, chatId) : idle(idle, version);
+        Cipher cipher = acquire(ciphers);
+        cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, encryptedData, HEADER_LENGTH, NONCE_LENGTH));
+        int offset = HEADER_LENGTH + NONCE_LENGTH;
+        byte[] plain = cipher.doFinal(encryptedData, offset, encryptedData.length - offset);
+        ciphers.offer(cipher); // После ошибки экземпляр в пул не возвращается
+        return plain;
+    }
+
+    /**
+     * Свободные Cipher для ключа версии. Экземпляр всегда получает один и тот же ключ,
+     * поэтому при init провайдер не пересчитывает раундовые ключи AES.
+     */
+    static Queue<Cipher> idle(Map<Integer, Queue<Cipher>> pools, int version) {
+        return pools.computeIfAbsent(version, v -> new ConcurrentLinkedQueue<>());
+    }
+
+    /**
+     * Свободные Cipher для ключа чата.
+     */
+    static Queue<Cipher> idle(Map<String, Queue<Cipher>> pools, int version, String chatId) {
+        synchronized (pools) {
+            return pools.computeIfAbsent(version + ":" + chatId, key -> new ConcurrentLinkedQueue<>());
+        }
+    }
+
+    static Cipher acquire(Queue<Cipher> ciphers) throws GeneralSecurityException {
+        Cipher cipher = ciphers.poll();
+        return cipher != null ? cipher : Cipher.getInstance(TRANSFORMATION);
+    }
+
+    /**
+     * Nonce блока потока: случайный префикс и номер блока.
+     */
+    static GCMParameterSpec chunkNonce(byte[] prefix, int index) {
+        byte[] nonce = new byte[NONCE_LENGTH];
+        System.arraycopy(prefix, 0, nonce, 0, STREAM_NONCE_PREFIX);
+        nonce[8] = (byte) (index >>> 24);
+        nonce[9] = (byte) (index >>> 16);
+        nonce[10] = (byte) (index >>> 8);
+        nonce[11] = (byte) index;
+        return new GCMParameterSpec(TAG_BITS, nonce);
+    }
+
+    /**
+     * Читает и проверяет блоки [длина][признак последнего блока][шифротекст с тегом],
+     * записанные потоком GcmEncryptionService.
+     */
+    private static final class OpeningInputStream extends InputStream {
+        private final DataInputStream in;
+        private final Key key;
+        private final byte[] prefix;
+        private final Cipher cipher;
+        private byte[] chunk = new byte[0];
+        private int position;
+        private int index;
+        private boolean finished;
+
+        private OpeningInputStream(DataInputStream in, Key key, byte[] prefix) throws IOException {
+            this.in = in;
+            this.key = key;
+            this.prefix = prefix;
+            try {
+                this.cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Ошибка при создании шифра", e);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position == chunk.length) {
+                if (finished) {
+                    return -1;
+                }
+                openNext();
+            }
+            int n = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        private void openNext() throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                throw new IOException("Зашифрованный поток обрезан", e);
+            }
+            boolean last = in.readBoolean();
+            if (length < TAG_LENGTH || length > CHUNK_SIZE + TAG_LENGTH) {
+                throw new IOException("Неверная длина блока зашифрованного потока: " + length);
+            }
+            byte[] sealed = new byte[length];
+            in.readFully(sealed);
+            try {
+                cipher.init(Cipher.DECRYPT_MODE, key, chunkNonce(prefix, index++));
+                cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+                chunk = cipher.doFinal(sealed);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Нарушена целостность зашифрованного потока", e);
+            }
+            position = 0;
+            finished = last;
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package org.homework.services;
+
+import org.homework.di.annotations.ConditionalOnProperty;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.SecureRandom;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Аутентифицированное шифрование AES-GCM (encryption.algorithm=aes-gcm).
+ * Каждый шифротекст получает уникальный 96-битный nonce и тег целостности;
+ * формат записи — [формат][версия ключа][nonce][шифротекст с тегом].
+ * Nonce — случайный префикс процесса и 64-битный счётчик со случайного начала,
+ * поэтому на запись не тратится обращение к SecureRandom.
+ * Записи чатов имеют тот же формат с другим байтом формата и шифруются
+ * ключом чата из {@link KeyRing#getTenantKey}.
+ * Используется стандартный провайдер SunJCE, для которого JIT подставляет
+ * инструкции AES-NI и ускоренное умножение GHASH, поэтому данные передаются
+ * в Cipher целиком одним doFinal. Объекты Cipher переиспользуются по ключу, поэтому
+ * раундовые ключи AES не пересчитываются, но init с новым nonce нужен на каждую запись.
+ * <p>
+ * Цель сравняться по скорости с AES без режима на коротких записях не достигнута:
+ * на 256 байтах GCM выполняет около 2 млн операций в секунду против 5–6 млн
+ * (EncryptionBenchmark), на 16 байтах разрыв ещё больше. Разница — цена init
+ * с новым nonce и вычисления тега; к 64 КБ скорости почти сравниваются.
+ * <p>
+ * Расшифровку выполняет {@link GcmDecryptor}; записи прежнего формата (AES без режима)
+ * по-прежнему расшифровываются через {@link AesDecryptor} и перешифровываются в фоне как устаревшие.
+ * Реализация выбирается по байту формата, и запись GCM с неверным тегом не читается как прежняя.
+ * Поэтому исходные записи без заголовка нужно перешифровать при encryption.algorithm=aes
+ * до перехода на aes-gcm: первый байт такой записи может совпасть с байтом формата GCM.
+ * Потоковый формат делит данные на блоки по 64 КБ с собственным тегом,
+ * так что большой поток не держится в памяти целиком, а его обрезка обнаруживается.
+ */
+@Register
+@ConditionalOnProperty(name = "encryption.algorithm", havingValue = "aes-gcm")
+public class GcmEncryptionService extends AbstractEncryptionService {
+    private static final String TRANSFORMATION = GcmDecryptor.TRANSFORMATION;
+    private static final byte FORMAT = GcmDecryptor.FORMAT;
+    private static final byte STREAM_FORMAT = GcmDecryptor.STREAM_FORMAT;
+    private static final byte TENANT_FORMAT = GcmDecryptor.TENANT_FORMAT;
+    private static final int HEADER_LENGTH = GcmDecryptor.HEADER_LENGTH;
+    private static final int NONCE_LENGTH = GcmDecryptor.NONCE_LENGTH;
+    private static final int STREAM_NONCE_PREFIX = GcmDecryptor.STREAM_NONCE_PREFIX;
+    private static final int TAG_BITS = GcmDecryptor.TAG_BITS;
+    private static final int TAG_LENGTH = GcmDecryptor.TAG_LENGTH;
+    private static final int CHUNK_SIZE = GcmDecryptor.CHUNK_SIZE;
+
+    @Resolve
+    private KeyRing keyRing; // Версии ключей шифрования
+
+    @Resolve
+    private GcmDecryptor decryptor; // Расшифровка записей AES-GCM
+
+    @Resolve
+    private AesDecryptor legacy; // Расшифровка записей прежнего формата
+
+    private final SecureRandom random = new SecureRandom();
+    private final byte[] noncePrefix = new byte[NONCE_LENGTH - Long.BYTES]; // Случайная часть nonce процесса
+    private final AtomicLong nonceCounter; // Счётчик nonce, начинается со случайного значения
+    private final Map<Integer, Queue<Cipher>> idle = new ConcurrentHashMap<>(); // Свободные Cipher по версии ключа
+    private final Map<String, Queue<Cipher>> tenantIdle = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Queue<Cipher>> eldest) {
+            return size() > AesDecryptor.TENANT_POOLS;
+        }
+    }; // Свободные Cipher по версии ключа и чату в порядке обращения
+
+    public GcmEncryptionService() {
+        random.nextBytes(noncePrefix);
+        nonceCounter = new AtomicLong(random.nextLong());
+    }
+
+    @Override
+    public byte[] encrypt(byte[] data) {
+        int version = keyRing.getActiveVersion();
+        return seal(FORMAT, version, keyRing.getKey(version), GcmDecryptor.idle(idle, version), data);
+    }
+
+    @Override
+    public byte[] encrypt(String chatId, byte[] data) {
+        int version = keyRing.getActiveVersion();
+        Queue<Cipher> ciphers = GcmDecryptor.idle(tenantIdle, version, chatId);
+        return seal(TENANT_FORMAT, version, keyRing.getTenantKey(version, chatId), ciphers, data);
+    }
+
+    @Override
+    public byte[] decrypt(byte[] encryptedData) {
+        return decrypt(null, encryptedData);
+    }
+
+    @Override
+    public byte[] decrypt(String chatId, byte[] encryptedData) {
+        // Реализация выбирается только по байту формата: запись GCM с неверным тегом отклоняется
+        if (GcmDecryptor.isGcm(chatId, encryptedData)) {
+            return decryptor.decrypt(chatId, encryptedData);
+        }
+        return legacy.decrypt(chatId, encryptedData);
+    }
+
+    @Override
+    public boolean isCurrent(String chatId, byte[] encryptedData) {
+        return GcmDecryptor.isGcm(chatId, encryptedData) && encryptedData[0] == TENANT_FORMAT
+                && (encryptedData[1] & 0xFF) == keyRing.getActiveVersion();
+    }
+
+    /**
+     * Шифрует запись с новым nonce и заголовком [формат][версия ключа].
+     */
+    private byte[] seal(byte format, int version, Key key, Queue<Cipher> ciphers, byte[] data) {
+        byte[] encrypted = new byte[HEADER_LENGTH + NONCE_LENGTH + data.length + TAG_LENGTH];
+        encrypted[0] = format;
+        encrypted[1] = (byte) version;
+        System.arraycopy(noncePrefix, 0, encrypted, HEADER_LENGTH, noncePrefix.length);
+        long counter = nonceCounter.getAndIncrement();
+        for (int i = 0; i < Long.BYTES; i++) {
+            encrypted[HEADER_LENGTH + NONCE_LENGTH - 1 - i] = (byte) (counter >>> (8 * i));
+        }
+        try {
+            Cipher cipher = GcmDecryptor.acquire(ciphers);
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, encrypted, HEADER_LENGTH, NONCE_LENGTH));
+            cipher.doFinal(data, 0, data.length, encrypted, HEADER_LENGTH + NONCE_LENGTH);
+            ciphers.offer(cipher);
+            return encrypted;
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException("Ошибка при шифровании данных", e);
+        }
+    }
+
+    @Override
+    public OutputStream encryptingStream(OutputStream out) throws IOException {
+        int version = keyRing.getActiveVersion();
+        byte[] prefix = new byte[STREAM_NONCE_PREFIX];
+        random.nextBytes(prefix);
+        out.write(STREAM_FORMAT);
+        out.write(version);
+        out.write(prefix);
+        return new SealingOutputStream(out, keyRing.getKey(version), prefix);
+    }
+
+    @Override
+    public InputStream decryptingStream(InputStream in) throws IOException {
+        return decryptingStream(in, legacy, decryptor);
+    }
+
+    /**
+     * Пишет блоки [длина][признак последнего блока][шифротекст с тегом].
+     * Признак последнего блока входит в аутентифицируемые данные.
+     */
+    private static final class SealingOutputStream extends OutputStream {
+        private final DataOutputStream out;
+        private final Key key;
+        private final byte[] prefix;
+        private final byte[] buffer = new byte[CHUNK_SIZE];
+        private final Cipher cipher;
+        private int count;
+        private int index;
+        private boolean closed;
+
+        private SealingOutputStream(OutputStream out, Key key, byte[] prefix) throws IOException {
+            this.out = new DataOutputStream(out);
+            this.key = key;
+            this.prefix = prefix;
+            try {
+                this.cipher = Cipher.getInstance(TRANSFORMATION);
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Ошибка при создании шифра", e);
+            }
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (closed) {
+                throw new IOException("Поток закрыт");
+            }
+            while (len > 0) {
+                if (count == CHUNK_SIZE) {
+                    seal(false); // Блок пишется, только когда известно, что он не последний
+                }
+                int n = Math.min(len, CHUNK_SIZE - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            seal(true);
+            out.close();
+        }
+
+        private void seal(boolean last) throws IOException {
+            try {
+                cipher.init(Cipher.ENCRYPT_MODE, key, GcmDecryptor.chunkNonce(prefix, index++));
+                cipher.updateAAD(new byte[]{(byte) (last ? 1 : 0)});
+                byte[] sealed = cipher.doFinal(buffer, 0, count);
+                out.writeInt(sealed.length);
+                out.writeBoolean(last);
+                out.write(sealed);
+                count = 0;
+            } catch (GeneralSecurityException e) {
+                throw new IOException("Ошибка при шифровании данных", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.homework.services;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+
+/**
+ * Выработка ключей HKDF-SHA256 (RFC 5869): извлечение псевдослучайного ключа
+ * из исходного материала и его расширение до нужной длины с привязкой к контексту.
+ */
+final class Hkdf {
+    private static final String MAC = "HmacSHA256";
+    private static final int HASH_LENGTH = 32;
+
+    private Hkdf() {
+    }
+
+    /**
+     * Вырабатывает ключ.
+     *
+     * @param ikm    Исходный ключевой материал.
+     * @param salt   Соль; пустая соль заменяется нулями длины хеша.
+     * @param info   Контекст, к которому привязан ключ.
+     * @param length Длина ключа в байтах, не больше 255 длин хеша.
+     * @return Выработанный ключ.
+     */
+    static byte[] derive(byte[] ikm, byte[] salt, byte[] info, int length) {
+        if (length > 255 * HASH_LENGTH) {
+            throw new IllegalArgumentException("Слишком большая длина ключа: " + length);
+        }
+        try {
+            Mac mac = Mac.getInstance(MAC);
+            mac.init(new SecretKeySpec(salt.length == 0 ? new byte[HASH_LENGTH] : salt, MAC));
+            byte[] prk = mac.doFinal(ikm);
+            mac.init(new SecretKeySpec(prk, MAC));
+            Arrays.fill(prk, (byte) 0);
+            byte[] okm = new byte[length];
+            byte[] block = new byte[0];
+            for (int i = 1, position = 0; position < length; i++) {
+                mac.update(block);
+                mac.update(info);
+                mac.update((byte) i);
+                block = mac.doFinal();
+                int n = Math.min(block.length, length - position);
+                System.arraycopy(block, 0, okm, position, n);
+                position += n;
+            }
+            Arrays.fill(block, (byte) 0);
+            return okm;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Ошибка при выработке ключа", e);
+        }
+    }
+}
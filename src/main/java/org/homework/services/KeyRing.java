@@ -0,0 +1,125 @@
+package org.homework.services;
+
+import org.homework.Config;
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Register;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Версионированные ключи шифрования.
+ * Версия 0 — исходный ключ приложения, которым зашифрованы старые записи.
+ * Остальные ключи задаются свойством encryption.keys в виде "1:ключBase64,2:ключBase64",
+ * а ключ для новых записей — свойством encryption.key.version.
+ * Старые ключи остаются в списке, пока записи не перешифрованы.
+ * Записи чата шифруются ключом, выработанным из ключа версии и ID чата по HKDF,
+ * поэтому ключ одного чата не раскрывает записи других.
+ */
+@Register
+public class KeyRing {
+    public static final int LEGACY_VERSION = 0;
+    private static final String LEGACY_KEY = "mySuperSecretKey"; // Исходный ключ приложения
+    private static final String ALGORITHM = "AES";
+    private static final int MAX_VERSION = 255; // Версия хранится в одном байте
+    private static final byte[] TENANT_SALT = "org.homework.vault".getBytes(StandardCharsets.UTF_8);
+    private static final int TENANT_CACHE_SIZE = 4096; // Число запоминаемых ключей чатов
+
+    private final Map<Integer, SecretKeySpec> keys = new TreeMap<>();
+    private final int activeVersion;
+    private final Map<String, SecretKeySpec> tenantKeys = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SecretKeySpec> eldest) {
+            return size() > TENANT_CACHE_SIZE;
+        }
+    }; // Выработанные ключи чатов в порядке обращения
+
+    public KeyRing() {
+        Config config = ConfigLoader.current(); // Ключи меняются только с перезапуском
+        keys.put(LEGACY_VERSION, new SecretKeySpec(LEGACY_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+        String configured = config.getString("encryption.keys", "");
+        if (!configured.isEmpty()) {
+            for (String item : configured.split(",")) {
+                int separator = item.indexOf(':');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("Неверный формат ключа шифрования, ожидается версия:ключBase64");
+                }
+                int version = Integer.parseInt(item.substring(0, separator).trim());
+                if (version <= LEGACY_VERSION || version > MAX_VERSION) {
+                    throw new IllegalArgumentException("Версия ключа шифрования должна быть от 1 до " + MAX_VERSION + ": " + version);
+                }
+                byte[] key = Base64.getDecoder().decode(item.substring(separator + 1).trim());
+                if (key.length != 16 && key.length != 24 && key.length != 32) {
+                    throw new IllegalArgumentException("Ключ шифрования версии " + version + " должен быть длиной 16, 24 или 32 байта");
+                }
+                keys.put(version, new SecretKeySpec(key, ALGORITHM));
+            }
+        }
+        activeVersion = config.getInt("encryption.key.version", LEGACY_VERSION);
+        if (!keys.containsKey(activeVersion)) {
+            throw new IllegalArgumentException("Не задан ключ шифрования версии " + activeVersion);
+        }
+    }
+
+    /**
+     * Возвращает версию ключа для новых записей.
+     */
+    public int getActiveVersion() {
+        return activeVersion;
+    }
+
+    /**
+     * Возвращает ключ по версии.
+     *
+     * @param version Версия ключа.
+     * @return Ключ.
+     */
+    public SecretKeySpec getKey(int version) {
+        SecretKeySpec key = keys.get(version);
+        if (key == null) {
+            throw new IllegalStateException("Неизвестная версия ключа шифрования: " + version);
+        }
+        return key;
+    }
+
+    /**
+     * Возвращает ключ чата: HKDF-SHA256 от ключа версии с контекстом "tenant:ID чата".
+     * Длина ключа чата совпадает с длиной исходного ключа.
+     *
+     * @param version Версия ключа.
+     * @param chatId  ID чата.
+     * @return Ключ чата.
+     */
+    public SecretKeySpec getTenantKey(int version, String chatId) {
+        String cacheKey = version + ":" + chatId;
+        synchronized (tenantKeys) {
+            SecretKeySpec key = tenantKeys.get(cacheKey);
+            if (key != null) {
+                return key;
+            }
+        }
+        byte[] master = getKey(version).getEncoded();
+        byte[] derived = Hkdf.derive(master, TENANT_SALT, ("tenant:" + chatId).getBytes(StandardCharsets.UTF_8), master.length);
+        SecretKeySpec key = new SecretKeySpec(derived, ALGORITHM);
+        Arrays.fill(master, (byte) 0);
+        Arrays.fill(derived, (byte) 0);
+        synchronized (tenantKeys) {
+            tenantKeys.put(cacheKey, key);
+        }
+        return key;
+    }
+
+    /**
+     * Возвращает все известные версии ключей.
+     */
+    public Set<Integer> getVersions() {
+        return Collections.unmodifiableSet(keys.keySet());
+    }
+}
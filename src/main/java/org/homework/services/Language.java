@@ -0,0 +1,40 @@
+package org.homework.services;
+
+import java.util.Locale;
+
+/**
+ * Язык ответов бота. Шаблоны ответов читаются из messages_&lt;код&gt;.properties.
+ */
+public enum Language {
+    RU("ru"),
+    EN("en");
+
+    private final String code;
+
+    Language(String code) {
+        this.code = code;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    /**
+     * Находит язык по коду, например по language_code пользователя Telegram ("en-US").
+     *
+     * @param code Код языка.
+     * @return Язык или null, если такого языка нет.
+     */
+    public static Language fromCode(String code) {
+        if (code == null) {
+            return null;
+        }
+        String normalized = code.trim().toLowerCase(Locale.ROOT);
+        for (Language language : values()) {
+            if (normalized.equals(language.code) || normalized.startsWith(language.code + "-")) {
+                return language;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,472 @@
+package org.homework.services;
+
+import org.homework.api.PasswordStore;
+import org.homework.di.annotations.ConditionalOnProperty;
+import org.homework.di.annotations.Register;
+import org.homework.model.PasswordEntry;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Хранилище паролей вне кучи (vault.store=offheap).
+ * Записи каждого чата лежат подряд в своей области direct-памяти в виде
+ * [длина][название UTF-8][длина][имя пользователя UTF-8][длина][шифротекст],
+ * причём шифротекст хранится в исходных байтах, а не в Base64.
+ * Индекс — открытая адресация на массивах int со смещениями записей,
+ * поэтому хранение записи не создаёт объектов в куче,
+ * а PasswordEntry собирается только при чтении.
+ * Области чатов нарезаются из общих блоков по {@value SlabAllocator#SLAB_SIZE} байт
+ * (см. {@link SlabAllocator}), а не выделяются отдельным direct-буфером на чат.
+ */
+@Register
+@ConditionalOnProperty(name = "vault.store", havingValue = "offheap")
+public class OffHeapPasswordStore implements PasswordStore {
+    private final Map<String, Shard> shards = new ConcurrentHashMap<>(); // Шарды по ID чата
+    private final SlabAllocator allocator = new SlabAllocator(); // Области чатов в общих блоках
+
+    @Override
+    public void put(String chatId, PasswordEntry entry) {
+        byte[] name = entry.getName().getBytes(StandardCharsets.UTF_8);
+        byte[] username = entry.getUsername().getBytes(StandardCharsets.UTF_8);
+        byte[] ciphertext = Base64.getDecoder().decode(entry.getPassword());
+        // Шард, закрытый выгрузкой чата между поиском и записью, заменяется новым
+        while (!shards.computeIfAbsent(chatId, id -> new Shard(allocator)).put(name, username, ciphertext)) {
+            // removeChat удаляет шард из таблицы до закрытия, поэтому повтор найдёт новый
+        }
+    }
+
+    @Override
+    public PasswordEntry get(String chatId, String name) {
+        Shard shard = shards.get(chatId);
+        return shard != null ? shard.get(name, null) : null;
+    }
+
+    @Override
+    public PasswordEntry get(String chatId, String name, Function<byte[], String> decryptor) {
+        Shard shard = shards.get(chatId);
+        return shard != null ? shard.get(name, decryptor) : null;
+    }
+
+    @Override
+    public PasswordEntry remove(String chatId, String name) {
+        Shard shard = shards.get(chatId);
+        return shard != null ? shard.remove(name) : null;
+    }
+
+    @Override
+    public void removeChat(String chatId) {
+        Shard shard = shards.remove(chatId);
+        if (shard != null) {
+            shard.close(); // Область возвращается в распределитель для других чатов
+        }
+    }
+
+    @Override
+    public List<String> names(String chatId) {
+        Shard shard = shards.get(chatId);
+        return shard != null ? shard.names() : new ArrayList<>();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, PasswordEntry> action) {
+        shards.forEach((chatId, shard) -> shard.forEach(entry -> action.accept(chatId, entry)));
+    }
+
+    /**
+     * Записи одного чата: область с записями и индекс смещений.
+     * Перезаписанные и удалённые записи остаются в области как мусор
+     * и вычищаются, когда область приходится расширять. После close область
+     * может достаться другому чату, поэтому закрытый шард не читает и не пишет её.
+     */
+    private static final class Shard {
+        private static final int INITIAL_INDEX = 16;
+        private static final int MAX_SLAB = Integer.MAX_VALUE - 8;
+
+        private final StampedLock lock = new StampedLock();
+        private final SlabAllocator allocator;
+        private ByteBuffer slab; // Область чата, null после close
+        private int used; // Занятые байты буфера
+        private int garbage; // Байты перезаписанных и удалённых записей
+        private int[] offsets = new int[INITIAL_INDEX]; // Смещение записи + 1, 0 — свободная ячейка
+        private int[] hashes = new int[INITIAL_INDEX]; // Хеши названий для быстрого сравнения
+        private int size;
+
+        Shard(SlabAllocator allocator) {
+            this.allocator = allocator;
+            this.slab = allocator.allocate(SlabAllocator.MIN_REGION);
+        }
+
+        /**
+         * Сохраняет запись.
+         *
+         * @return false, если шард уже закрыт и запись нужно сделать в новый.
+         */
+        boolean put(byte[] name, byte[] username, byte[] ciphertext) {
+            int hash = hash(name);
+            int length = 12 + name.length + username.length + ciphertext.length;
+            long stamp = lock.writeLock();
+            try {
+                if (slab == null) {
+                    return false;
+                }
+                ensureCapacity(length);
+                int offset = used;
+                int position = writeField(offset, name);
+                position = writeField(position, username);
+                writeField(position, ciphertext);
+                used += length;
+
+                int slot = find(name, hash);
+                if (slot >= 0) {
+                    garbage += recordLength(offsets[slot] - 1);
+                    offsets[slot] = offset + 1;
+                    return true;
+                }
+                if ((size + 1) * 4 > offsets.length * 3) {
+                    resizeIndex();
+                }
+                insert(offset, hash);
+                size++;
+                return true;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Читает запись. Шифротекст копируется под блокировкой, а расшифровывается после неё.
+         *
+         * @param name      Название сервиса.
+         * @param decryptor Расшифровщик или null, чтобы вернуть шифротекст в Base64.
+         * @return Запись или null, если она не найдена.
+         */
+        PasswordEntry get(String name, Function<byte[], String> decryptor) {
+            byte[] key = name.getBytes(StandardCharsets.UTF_8);
+            String username;
+            byte[] ciphertext;
+            long stamp = lock.readLock();
+            try {
+                int slot = slab != null ? find(key, hash(key)) : -1;
+                if (slot < 0) {
+                    return null;
+                }
+                int position = skipField(offsets[slot] - 1);
+                username = readString(position);
+                ciphertext = readBytes(skipField(position));
+            } finally {
+                lock.unlockRead(stamp);
+            }
+            String password = decryptor != null ? decryptor.apply(ciphertext) : Base64.getEncoder().encodeToString(ciphertext);
+            return new PasswordEntry(name, username, password);
+        }
+
+        PasswordEntry remove(String name) {
+            byte[] key = name.getBytes(StandardCharsets.UTF_8);
+            long stamp = lock.writeLock();
+            try {
+                int slot = slab != null ? find(key, hash(key)) : -1;
+                if (slot < 0) {
+                    return null;
+                }
+                int offset = offsets[slot] - 1;
+                PasswordEntry removed = materialize(offset);
+                garbage += recordLength(offset);
+                deleteSlot(slot);
+                size--;
+                return removed;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        List<String> names() {
+            long stamp = lock.readLock();
+            try {
+                List<String> names = new ArrayList<>(size);
+                if (slab == null) {
+                    return names;
+                }
+                for (int stored : offsets) {
+                    if (stored != 0) {
+                        names.add(readString(stored - 1));
+                    }
+                }
+                return names;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        void forEach(Consumer<PasswordEntry> action) {
+            long stamp = lock.readLock();
+            try {
+                if (slab == null) {
+                    return;
+                }
+                for (int stored : offsets) {
+                    if (stored != 0) {
+                        action.accept(materialize(stored - 1));
+                    }
+                }
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Возвращает область распределителю. Читатели и писатели, получившие шард
+         * до выгрузки чата, после этого видят его пустым.
+         */
+        void close() {
+            long stamp = lock.writeLock();
+            try {
+                if (slab != null) {
+                    allocator.release(slab);
+                    slab = null;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        /**
+         * Ищет ячейку индекса с записью по названию.
+         *
+         * @return Номер ячейки или -1.
+         */
+        private int find(byte[] name, int hash) {
+            int mask = offsets.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int stored = offsets[i];
+                if (stored == 0) {
+                    return -1;
+                }
+                if (hashes[i] == hash && nameEquals(stored - 1, name)) {
+                    return i;
+                }
+            }
+        }
+
+        private void insert(int offset, int hash) {
+            int mask = offsets.length - 1;
+            int i = hash & mask;
+            while (offsets[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            offsets[i] = offset + 1;
+            hashes[i] = hash;
+        }
+
+        /**
+         * Освобождает ячейку со сдвигом следующих за ней записей,
+         * чтобы цепочки линейного пробирования не разрывались.
+         */
+        private void deleteSlot(int slot) {
+            int mask = offsets.length - 1;
+            int hole = slot;
+            for (int i = (slot + 1) & mask; offsets[i] != 0; i = (i + 1) & mask) {
+                int home = hashes[i] & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    offsets[hole] = offsets[i];
+                    hashes[hole] = hashes[i];
+                    hole = i;
+                }
+            }
+            offsets[hole] = 0;
+            hashes[hole] = 0;
+        }
+
+        private void resizeIndex() {
+            int[] oldOffsets = offsets;
+            int[] oldHashes = hashes;
+            offsets = new int[oldOffsets.length * 2];
+            hashes = new int[oldOffsets.length * 2];
+            for (int i = 0; i < oldOffsets.length; i++) {
+                if (oldOffsets[i] != 0) {
+                    insert(oldOffsets[i] - 1, oldHashes[i]);
+                }
+            }
+        }
+
+        /**
+         * Гарантирует место под новую запись. Живые записи переносятся подряд в новую область
+         * с запасом не меньше половины нужного, поэтому мусор при этом исчезает, а прежняя
+         * область возвращается распределителю.
+         */
+        private void ensureCapacity(int length) {
+            if ((long) used + length <= slab.capacity()) {
+                return;
+            }
+            long required = (long) used - garbage + length;
+            if (required > MAX_SLAB) {
+                throw new IllegalStateException("Превышен максимальный размер хранилища чата");
+            }
+            // Размер области округляется до степени двойки, поэтому запаса в половину нужного хватает
+            ByteBuffer target = allocator.allocate((int) Math.min(MAX_SLAB, required + required / 2));
+            int position = 0;
+            for (int i = 0; i < offsets.length; i++) {
+                if (offsets[i] != 0) {
+                    int from = offsets[i] - 1;
+                    int recordLength = recordLength(from);
+                    target.put(position, slab, from, recordLength);
+                    offsets[i] = position + 1;
+                    position += recordLength;
+                }
+            }
+            allocator.release(slab);
+            slab = target;
+            used = position;
+            garbage = 0;
+        }
+
+        private PasswordEntry materialize(int offset) {
+            String name = readString(offset);
+            int position = skipField(offset);
+            String username = readString(position);
+            byte[] ciphertext = readBytes(skipField(position));
+            return new PasswordEntry(name, username, Base64.getEncoder().encodeToString(ciphertext));
+        }
+
+        private int writeField(int position, byte[] value) {
+            slab.putInt(position, value.length);
+            slab.put(position + 4, value);
+            return position + 4 + value.length;
+        }
+
+        private int skipField(int position) {
+            return position + 4 + slab.getInt(position);
+        }
+
+        private byte[] readBytes(int position) {
+            byte[] value = new byte[slab.getInt(position)];
+            slab.get(position + 4, value);
+            return value;
+        }
+
+        private String readString(int position) {
+            return new String(readBytes(position), StandardCharsets.UTF_8);
+        }
+
+        private int recordLength(int offset) {
+            return skipField(skipField(skipField(offset))) - offset;
+        }
+
+        private boolean nameEquals(int offset, byte[] name) {
+            if (slab.getInt(offset) != name.length) {
+                return false;
+            }
+            for (int i = 0; i < name.length; i++) {
+                if (slab.get(offset + 4 + i) != name[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(byte[] name) {
+            int hash = 1;
+            for (byte b : name) {
+                hash = 31 * hash + b;
+            }
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    /**
+     * Нарезает области чатов из общих direct-блоков по {@value #SLAB_SIZE} байт.
+     * Размер области — степень двойки от {@value #MIN_REGION} байт, поэтому новый чат
+     * занимает 256 байт вместо отдельного буфера. Освобождённые области попадают в список
+     * свободных своего размера и достаются следующим чатам. Области больше блока выделяются
+     * отдельным буфером и освобождаются сборщиком мусора.
+     * Общие блоки не возвращаются системе: память, занятая в пике, остаётся за процессом.
+     */
+    static final class SlabAllocator {
+        static final int MIN_REGION = 256;
+        static final int SLAB_SIZE = 1 << 20;
+        private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_REGION);
+        private static final int CLASSES = Integer.numberOfTrailingZeros(SLAB_SIZE) - MIN_SHIFT + 1;
+
+        private final List<List<ByteBuffer>> free = new ArrayList<>(CLASSES); // Свободные области по размеру
+        private ByteBuffer slab; // Блок, из которого нарезаются новые области
+        private int position; // Начало свободной части блока
+
+        SlabAllocator() {
+            for (int i = 0; i < CLASSES; i++) {
+                free.add(new ArrayList<>());
+            }
+        }
+
+        /**
+         * Выделяет область не меньше заданного размера.
+         *
+         * @param minimum Нужный размер в байтах.
+         * @return Область; её ёмкость может быть больше запрошенной.
+         */
+        synchronized ByteBuffer allocate(int minimum) {
+            int size = regionSize(minimum);
+            if (size > SLAB_SIZE) {
+                return ByteBuffer.allocateDirect(size);
+            }
+            List<ByteBuffer> regions = free.get(sizeClass(size));
+            if (!regions.isEmpty()) {
+                return regions.remove(regions.size() - 1);
+            }
+            if (slab == null || SLAB_SIZE - position < size) {
+                retireTail();
+                slab = ByteBuffer.allocateDirect(SLAB_SIZE);
+                position = 0;
+            }
+            ByteBuffer region = slab.slice(position, size);
+            position += size;
+            return region;
+        }
+
+        /**
+         * Возвращает область для повторного использования.
+         *
+         * @param region Область, полученная из allocate.
+         */
+        synchronized void release(ByteBuffer region) {
+            if (region.capacity() <= SLAB_SIZE) {
+                free.get(sizeClass(region.capacity())).add(region);
+            }
+        }
+
+        /**
+         * Раскладывает остаток блока по спискам свободных областей. Области выделяются
+         * степенями двойки, поэтому остаток кратен наименьшей из них.
+         */
+        private void retireTail() {
+            while (slab != null && position < SLAB_SIZE) {
+                int size = Integer.highestOneBit(SLAB_SIZE - position);
+                free.get(sizeClass(size)).add(slab.slice(position, size));
+                position += size;
+            }
+        }
+
+        /**
+         * Наименьшая степень двойки, не меньшая запрошенного размера.
+         */
+        private static int regionSize(int minimum) {
+            if (minimum <= MIN_REGION) {
+                return MIN_REGION;
+            }
+            int size = Integer.highestOneBit(minimum - 1) << 1;
+            return size > 0 ? size : minimum; // Больше 2^30 — буфер ровно нужного размера
+        }
+
+        private static int sizeClass(int size) {
+            return Integer.numberOfTrailingZeros(size) - MIN_SHIFT;
+        }
+    }
+}
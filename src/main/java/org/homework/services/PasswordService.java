@@ -1,65 +1,378 @@
 package org.homework.services;
 
 import org.homework.api.EncryptionService;
+import org.homework.api.PasswordStore;
+import org.homework.di.DIContainer;
 import org.homework.di.annotations.Register;
 import org.homework.di.annotations.Resolve;
+import org.homework.metrics.LatencyHistogram;
+import org.homework.metrics.Metrics;
 import org.homework.model.PasswordEntry;
+import org.homework.storage.VaultJournal;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Function;
 
 /**
  * Сервис для управления паролями.
  * Позволяет добавлять, получать, удалять и перечислять пароли.
+ * Записи каждого чата хранятся в отдельном разделе, который загружается при первом
+ * обращении к чату, и шифруются ключом, производным от ключа приложения и ID чата.
  */
 @Register
 public class PasswordService {
     @Resolve
     private EncryptionService encryptionService; // Сервис шифрования
 
-    private final Map<String, PasswordEntry> passwords = new HashMap<>(); // Хранилище паролей
+    @Resolve
+    private PasswordStore passwordStore; // Хранилище паролей
+
+    @Resolve
+    private VaultJournal vaultJournal; // Журнал для долговременного хранения
+
+    @Resolve
+    private ServiceNameIndex serviceNameIndex; // Поисковый индекс названий сервисов
+
+    @Resolve
+    private DecryptedEntryCache decryptedEntryCache; // Кэш расшифрованных записей
+
+    @Resolve
+    private Metrics metrics; // Метрики
+
+    @Resolve
+    private DIContainer container; // Компоненты области чата закрываются при выгрузке чата
+
+    private volatile boolean recovered; // Загружено ли хранилище с диска
 
     /**
      * Добавляет пароль в хранилище.
      *
+     * @param chatId   ID чата.
      * @param name     Название сервиса.
      * @param username Имя пользователя.
      * @param password Пароль.
      */
-    public void addPassword(String name, String username, String password) {
-        String encryptedPassword = encryptionService.encrypt(password);
-        passwords.put(name, new PasswordEntry(name, username, encryptedPassword));
+    public void addPassword(String chatId, String name, String username, String password) {
+        long started = System.nanoTime();
+        byte[] encrypted = encryptionService.encrypt(chatId, password.getBytes(StandardCharsets.UTF_8));
+        encryptionLatency("encrypt").recordSince(started);
+        String encryptedPassword = Base64.getEncoder().encodeToString(encrypted);
+        store(chatId);
+        vaultJournal.put(chatId, new PasswordEntry(name, username, encryptedPassword));
+        decryptedEntryCache.invalidate(chatId, name);
+        syncIndex(chatId, name);
     }
 
     /**
-     * Получает пароль по названию сервиса.
+     * Получает пароль по названию сервиса. Повторные запросы обслуживаются из кэша без расшифровки,
+     * но и они отмечают обращение к чату, чтобы его раздел не выгрузили как неактивный.
      *
-     * @param name Название сервиса.
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
      * @return Запись о пароле или null, если пароль не найден.
      */
-    public PasswordEntry getPassword(String name) {
-        PasswordEntry entry = passwords.get(name);
+    public PasswordEntry getPassword(String chatId, String name) {
+        PasswordEntry cached = decryptedEntryCache.get(chatId, name);
+        if (cached != null) {
+            store(chatId);
+            return cached;
+        }
+        long stamp = decryptedEntryCache.stamp(chatId, name);
+        PasswordEntry entry = store(chatId).get(chatId, name, decryptor(chatId));
         if (entry != null) {
-            String decryptedPassword = encryptionService.decrypt(entry.getPassword());
-            return new PasswordEntry(entry.getName(), entry.getUsername(), decryptedPassword);
+            decryptedEntryCache.put(chatId, entry, stamp);
         }
-        return null;
+        return entry;
     }
 
     /**
      * Удаляет пароль по названию сервиса.
      *
-     * @param name Название сервиса.
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
      */
-    public void deletePassword(String name) {
-        passwords.remove(name);
+    public void deletePassword(String chatId, String name) {
+        store(chatId);
+        vaultJournal.remove(chatId, name);
+        decryptedEntryCache.invalidate(chatId, name);
+        syncIndex(chatId, name);
     }
 
     /**
      * Возвращает список всех сохранённых сервисов.
      *
-     * @return Список названий сервисов.
+     * @param chatId ID чата.
+     * @return Список названий сервисов в алфавитном порядке.
+     */
+    public List<String> getAllServices(String chatId) {
+        store(chatId);
+        return serviceNameIndex.names(chatId);
+    }
+
+    /**
+     * Возвращает страницу названий сервисов после курсора.
+     *
+     * @param chatId ID чата.
+     * @param cursor Название, после которого начинается страница, или null для первой страницы.
+     * @param limit  Размер страницы.
+     * @return Названия сервисов в алфавитном порядке.
+     */
+    public List<String> getServicesAfter(String chatId, String cursor, int limit) {
+        store(chatId);
+        return serviceNameIndex.namesAfter(chatId, cursor, limit);
+    }
+
+    /**
+     * Возвращает страницу названий сервисов перед курсором.
+     *
+     * @param chatId ID чата.
+     * @param cursor Название, перед которым заканчивается страница.
+     * @param limit  Размер страницы.
+     * @return Названия сервисов в алфавитном порядке.
+     */
+    public List<String> getServicesBefore(String chatId, String cursor, int limit) {
+        store(chatId);
+        return serviceNameIndex.namesBefore(chatId, cursor, limit);
+    }
+
+    /**
+     * Ищет сервисы по началу названия без учета регистра.
+     *
+     * @param chatId ID чата.
+     * @param prefix Начало названия.
+     * @param limit  Наибольшее число результатов.
+     * @return Названия сервисов в алфавитном порядке.
+     */
+    public List<String> findServices(String chatId, String prefix, int limit) {
+        store(chatId);
+        return serviceNameIndex.findByPrefix(chatId, prefix, limit);
+    }
+
+    /**
+     * Подбирает похожие названия сервисов для названия с опечаткой.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     * @param limit  Наибольшее число подсказок.
+     * @return Похожие названия, ближайшие первыми.
+     */
+    public List<String> suggestServices(String chatId, String name, int limit) {
+        store(chatId);
+        return serviceNameIndex.suggest(chatId, name, limit);
+    }
+
+    /**
+     * Возвращает ID всех чатов, в которых есть сохранённые пароли.
+     *
+     * @return Список ID чатов.
+     */
+    public List<String> getChatIds() {
+        recover();
+        return vaultJournal.chatIds();
+    }
+
+    /**
+     * Проверяет записи чата и находит зашифрованные не текущим ключом или форматом.
+     * Раздел чата читается с диска и не загружается в память.
+     *
+     * @param chatId ID чата.
+     * @return Число проверенных записей и названия сервисов с устаревшими записями.
+     */
+    public StaleServices findStaleServices(String chatId) {
+        recover();
+        List<PasswordEntry> entries = vaultJournal.entries(chatId);
+        List<String> names = new ArrayList<>();
+        for (PasswordEntry entry : entries) {
+            if (!encryptionService.isCurrent(chatId, Base64.getDecoder().decode(entry.getPassword()))) {
+                names.add(entry.getName());
+            }
+        }
+        return new StaleServices(entries.size(), names);
+    }
+
+    /**
+     * Перешифровывает запись текущим ключом, если она зашифрована устаревшим.
+     * Запись, изменённая пользователем во время перешифрования, не затирается.
+     * Перешифрованная запись удаляется из кэша расшифрованных записей.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     * @return true, если запись перешифрована.
+     */
+    public boolean reencrypt(String chatId, String name) {
+        PasswordEntry entry = store(chatId).get(chatId, name);
+        if (entry == null) {
+            return false;
+        }
+        byte[] encrypted = Base64.getDecoder().decode(entry.getPassword());
+        if (encryptionService.isCurrent(chatId, encrypted)) {
+            return false;
+        }
+        long started = System.nanoTime();
+        byte[] plain = encryptionService.decrypt(chatId, encrypted);
+        encryptionLatency("decrypt").recordSince(started);
+        started = System.nanoTime();
+        byte[] reencrypted = encryptionService.encrypt(chatId, plain);
+        encryptionLatency("encrypt").recordSince(started);
+        Arrays.fill(plain, (byte) 0);
+        PasswordEntry replacement = new PasswordEntry(name, entry.getUsername(), Base64.getEncoder().encodeToString(reencrypted));
+        if (!vaultJournal.replace(chatId, entry, replacement)) {
+            return false;
+        }
+        decryptedEntryCache.invalidate(chatId, name); // Не держим открытый пароль, расшифрованный прежним ключом
+        return true;
+    }
+
+    /**
+     * Добавляет пакет записей. Используется при импорте: запись пакета в журнал
+     * подтверждается одним ожиданием, а не ожиданием на каждую запись.
+     * Зашифрованные пароли должны быть зашифрованы ключом этого же чата;
+     * записи, которые не удаётся им расшифровать, пропускаются.
+     *
+     * @param chatId    ID чата.
+     * @param entries   Записи о паролях.
+     * @param encrypted true, если пароли уже зашифрованы и закодированы в Base64.
+     * @return Число добавленных записей.
+     */
+    public int addPasswords(String chatId, List<PasswordEntry> entries, boolean encrypted) {
+        List<PasswordEntry> sealed = new ArrayList<>(entries.size());
+        for (PasswordEntry entry : entries) {
+            long started = System.nanoTime();
+            if (encrypted) {
+                try {
+                    Arrays.fill(encryptionService.decrypt(chatId, Base64.getDecoder().decode(entry.getPassword())), (byte) 0);
+                } catch (RuntimeException e) {
+                    continue; // Запись другого чата или повреждённая запись
+                }
+                encryptionLatency("decrypt").recordSince(started);
+                sealed.add(entry);
+            } else {
+                byte[] encryptedPassword = encryptionService.encrypt(chatId, entry.getPassword().getBytes(StandardCharsets.UTF_8));
+                encryptionLatency("encrypt").recordSince(started);
+                sealed.add(new PasswordEntry(entry.getName(), entry.getUsername(),
+                        Base64.getEncoder().encodeToString(encryptedPassword)));
+            }
+        }
+        store(chatId);
+        vaultJournal.putAll(chatId, sealed);
+        for (PasswordEntry entry : sealed) {
+            decryptedEntryCache.invalidate(chatId, entry.getName());
+            syncIndex(chatId, entry.getName());
+        }
+        return sealed.size();
+    }
+
+    /**
+     * Возвращает страницу записей после курсора в алфавитном порядке названий.
+     * Записи не кладутся в кэш расшифрованных записей, чтобы выгрузка не вытесняла из него рабочие записи.
+     *
+     * @param chatId  ID чата.
+     * @param cursor  Название, после которого начинается страница, или null для первой страницы.
+     * @param limit   Размер страницы.
+     * @param decrypt true, чтобы расшифровать пароли; иначе они остаются зашифрованными ключом чата.
+     * @return Записи о паролях.
+     */
+    public List<PasswordEntry> getPasswordsAfter(String chatId, String cursor, int limit, boolean decrypt) {
+        PasswordStore store = store(chatId);
+        List<PasswordEntry> page = new ArrayList<>(limit);
+        for (String name : serviceNameIndex.namesAfter(chatId, cursor, limit)) {
+            PasswordEntry entry = decrypt ? store.get(chatId, name, decryptor(chatId)) : store.get(chatId, name);
+            if (entry != null) {
+                page.add(entry);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Расшифровка пароля ключом чата с учётом времени в метриках.
+     */
+    private Function<byte[], String> decryptor(String chatId) {
+        return ciphertext -> {
+            long started = System.nanoTime();
+            byte[] plain = encryptionService.decrypt(chatId, ciphertext);
+            encryptionLatency("decrypt").recordSince(started);
+            return new String(plain, StandardCharsets.UTF_8);
+        };
+    }
+
+    private LatencyHistogram encryptionLatency(String operation) {
+        return metrics.histogram("encryption_duration_seconds", "Время одного вызова сервиса шифрования",
+                "operation", operation);
+    }
+
+    /**
+     * Регистрирует показатели кэша расшифрованных записей.
+     */
+    private void registerCacheMetrics() {
+        metrics.counter("cache_hits_total", "Число запросов, обслуженных кэшем расшифрованных записей",
+                decryptedEntryCache::getHitCount);
+        metrics.counter("cache_misses_total", "Число промахов кэша расшифрованных записей",
+                decryptedEntryCache::getMissCount);
+        metrics.counter("cache_evictions_total", "Число записей, вытесненных из кэша или устаревших",
+                decryptedEntryCache::getEvictionCount);
+        metrics.gauge("cache_size", "Число записей в кэше расшифрованных записей", decryptedEntryCache::getSize);
+    }
+
+    /**
+     * Обновляет индекс названий по текущему состоянию хранилища.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     */
+    private void syncIndex(String chatId, String name) {
+        serviceNameIndex.sync(chatId, name, () -> passwordStore.get(chatId, name) != null);
+    }
+
+    /**
+     * Возвращает хранилище с загруженным разделом чата.
+     *
+     * @param chatId ID чата.
+     * @return Хранилище паролей.
+     */
+    private PasswordStore store(String chatId) {
+        recover();
+        vaultJournal.open(chatId);
+        return passwordStore;
+    }
+
+    /**
+     * При первом обращении восстанавливает хранилище с диска. Индекс названий ведётся
+     * только для чатов, раздел которых загружен в память.
+     */
+    private void recover() {
+        if (!recovered) {
+            synchronized (this) {
+                if (!recovered) {
+                    vaultJournal.recover(passwordStore, new VaultJournal.TenantListener() {
+                        @Override
+                        public void loaded(String chatId) {
+                            passwordStore.names(chatId).forEach(name -> serviceNameIndex.add(chatId, name));
+                        }
+
+                        @Override
+                        public void evicted(String chatId) {
+                            serviceNameIndex.removeChat(chatId);
+                            decryptedEntryCache.invalidateChat(chatId);
+                            container.closeChatScope(chatId);
+                        }
+                    });
+                    registerCacheMetrics();
+                    metrics.gauge("vault_loaded_chats", "Число чатов, разделы которых загружены в память",
+                            vaultJournal::getLoadedCount);
+                    recovered = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Результат проверки записей чата.
+     *
+     * @param scanned Число проверенных записей.
+     * @param names   Названия сервисов с устаревшими записями.
      */
-    public List<String> getAllServices() {
-        return new ArrayList<>(passwords.keySet());
+    public record StaleServices(int scanned, List<String> names) {
     }
-}
\ No newline at end of file
+}
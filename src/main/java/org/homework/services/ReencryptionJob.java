@@ -0,0 +1,205 @@
+package org.homework.services;
+
+import org.homework.Config;
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.logger.Logger;
+import org.homework.metrics.Metrics;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Фоновое перешифрование хранилища текущим ключом после его смены.
+ * Разделы чатов читаются с диска без загрузки в память, и загружаются только чаты,
+ * в которых есть записи устаревшего ключа или формата. Они перешифровываются пакетами
+ * по reencryption.batch.size; после пакета задача делает паузу reencryption.pause.millis,
+ * чтобы не отнимать ресурсы у обработки команд. Бот при этом продолжает работать:
+ * запись заменяется, только если пользователь не изменил её во время обхода.
+ * <p>
+ * После обхода без ошибок в vault.dir сохраняется отметка с версией ключа и алгоритмом.
+ * Если они не изменились, при следующем запуске обход не выполняется: новые записи
+ * всегда шифруются текущим ключом.
+ */
+@Register
+public class ReencryptionJob {
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final long DEFAULT_PAUSE_MILLIS = 50;
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final String MARKER_FILE = "reencryption.done"; // Отметка о завершённом обходе
+
+    @Resolve
+    private PasswordService passwordService; // Сервис для работы с паролями
+
+    @Resolve
+    private Metrics metrics; // Метрики
+
+    @Resolve
+    private ConfigLoader configLoader; // Конфигурация
+
+    @Resolve
+    private Logger logger; // Логгер
+
+    @Resolve
+    private KeyRing keyRing; // Версии ключей шифрования
+
+    private final LongAdder scanned = new LongAdder();
+    private final LongAdder reencrypted = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final AtomicInteger processedChats = new AtomicInteger();
+    private volatile int totalChats;
+    private volatile boolean running;
+    private Thread worker;
+    private Path marker;
+    private String target; // Версия ключа и алгоритм, к которым приводятся записи
+
+    /**
+     * Запускает обход хранилища в фоновом потоке, если он ещё не запущен
+     * и с прошлого завершённого обхода сменились ключ или алгоритм шифрования.
+     */
+    public synchronized void start() {
+        if (worker != null) {
+            return;
+        }
+        Config config = configLoader.get();
+        marker = Paths.get(config.getString("vault.dir", "data")).resolve(MARKER_FILE);
+        target = "version=" + keyRing.getActiveVersion() + "\nalgorithm="
+                + config.getString("encryption.algorithm", "aes") + "\n";
+        try {
+            if (Files.exists(marker) && Files.readString(marker).equals(target)) {
+                logger.info("Перешифрование не требуется: все записи приведены к текущему ключу");
+                return;
+            }
+        } catch (IOException e) {
+            logger.warn("Не удалось прочитать отметку перешифрования: {}", e.getMessage());
+        }
+        metrics.counter("reencryption_scanned_total", "Число записей, проверенных фоновым перешифрованием",
+                this::getScannedCount);
+        metrics.counter("reencryption_reencrypted_total", "Число записей, перешифрованных текущим ключом",
+                this::getReencryptedCount);
+        metrics.counter("reencryption_failed_total", "Число записей, которые не удалось перешифровать",
+                this::getFailedCount);
+        running = true;
+        worker = new Thread(this::run, "reencryption");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Возвращает true, пока идёт обход.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Возвращает число проверенных записей.
+     */
+    public long getScannedCount() {
+        return scanned.sum();
+    }
+
+    /**
+     * Возвращает число перешифрованных записей.
+     */
+    public long getReencryptedCount() {
+        return reencrypted.sum();
+    }
+
+    /**
+     * Возвращает число записей, которые не удалось перешифровать.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Возвращает число полностью обработанных чатов.
+     */
+    public int getProcessedChats() {
+        return processedChats.get();
+    }
+
+    /**
+     * Возвращает число чатов на момент начала обхода.
+     */
+    public int getTotalChats() {
+        return totalChats;
+    }
+
+    private void run() {
+        long started = System.nanoTime();
+        long lastReport = started;
+        try {
+            List<String> chatIds = passwordService.getChatIds();
+            totalChats = chatIds.size();
+            for (String chatId : chatIds) {
+                PasswordService.StaleServices check = passwordService.findStaleServices(chatId);
+                scanned.add(check.scanned());
+                List<String> stale = check.names();
+                for (int from = 0; from < stale.size(); ) {
+                    Config config = configLoader.get(); // Размер пакета и паузу можно менять на ходу
+                    int batchSize = Math.max(1, config.getInt("reencryption.batch.size", DEFAULT_BATCH_SIZE));
+                    long pauseMillis = config.getLong("reencryption.pause.millis", DEFAULT_PAUSE_MILLIS);
+                    int to = Math.min(stale.size(), from + batchSize);
+                    int changed = 0;
+                    for (String name : stale.subList(from, to)) {
+                        try {
+                            if (passwordService.reencrypt(chatId, name)) {
+                                changed++;
+                            }
+                        } catch (RuntimeException e) {
+                            failed.increment();
+                            logger.error("Не удалось перешифровать запись {} в чате {}: {}", name, chatId, e.getMessage());
+                        }
+                    }
+                    reencrypted.add(changed);
+                    from = to;
+                    if (changed > 0 && pauseMillis > 0) {
+                        Thread.sleep(pauseMillis);
+                    }
+                }
+                processedChats.incrementAndGet();
+                if (System.nanoTime() - lastReport >= PROGRESS_INTERVAL_NANOS) {
+                    lastReport = System.nanoTime();
+                    logProgress();
+                }
+            }
+            logger.info("Перешифрование завершено за {} с: проверено {}, перешифровано {}, ошибок {}",
+                    TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - started), scanned.sum(), reencrypted.sum(), failed.sum());
+            if (failed.sum() == 0) {
+                markCompleted();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * Сохраняет отметку о завершённом обходе для текущих версии ключа и алгоритма.
+     */
+    private void markCompleted() {
+        try {
+            Path temp = marker.resolveSibling(MARKER_FILE + ".tmp");
+            Files.writeString(temp, target);
+            Files.move(temp, marker, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Не удалось сохранить отметку перешифрования: {}", e.getMessage());
+        }
+    }
+
+    private void logProgress() {
+        logger.info("Перешифрование: чатов {} из {}, проверено {}, перешифровано {}",
+                processedChats.get(), totalChats, scanned.sum(), reencrypted.sum());
+    }
+}
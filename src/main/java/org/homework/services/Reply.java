@@ -0,0 +1,47 @@
+package org.homework.services;
+
+import java.util.Locale;
+
+/**
+ * Ответы бота, для которых есть шаблоны на каждом языке.
+ * Ключ шаблона в messages_&lt;код&gt;.properties — имя константы в нижнем регистре с точками вместо "_".
+ */
+public enum Reply {
+    WELCOME,
+    HELP,
+    PASSWORD_ADDED,
+    PASSWORD_DELETED,
+    PASSWORD_ENTRY,
+    PASSWORD_NOT_FOUND,
+    PASSWORD_NOT_FOUND_SUGGESTIONS,
+    FIND_HEADER,
+    FIND_NOT_FOUND,
+    FIND_TRUNCATED,
+    UNKNOWN_COMMAND,
+    INVALID_FORMAT,
+    LANGUAGE_CHANGED,
+    LANGUAGE_UNKNOWN,
+    LIST_EMPTY,
+    LIST_HEADER,
+    LIST_PREVIOUS,
+    LIST_NEXT,
+    STATS_FORBIDDEN,
+    STATS_LATENCY_HEADER,
+    STATS_COUNTERS_HEADER,
+    IMPORT_USAGE,
+    IMPORT_COMPLETED,
+    IMPORT_FAILED,
+    IMPORT_PARSE_ERROR,
+    IMPORT_FOREIGN_ARCHIVE,
+    IMPORT_DOWNLOAD_FAILED,
+    EXPORT_UNKNOWN_FORMAT,
+    EXPORT_EMPTY,
+    EXPORT_ARCHIVE_CAPTION,
+    EXPORT_PLAIN_CAPTION;
+
+    private final String key = name().toLowerCase(Locale.ROOT).replace('_', '.');
+
+    public String getKey() {
+        return key;
+    }
+}
@@ -0,0 +1,269 @@
+package org.homework.services;
+
+import org.homework.Config;
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Register;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Формирование ответов бота по шаблонам на языке чата.
+ * Шаблоны читаются из messages_&lt;код&gt;.properties один раз и разбираются на части
+ * между аргументами {0}, {1}, {2}, поэтому при ответе текст только дописывается в буфер.
+ * Ответы без аргументов собираются заранее и возвращаются одной и той же строкой.
+ * Буферы берутся из общего пула: обработчики выполняются в виртуальных потоках,
+ * которые не переиспользуются, и буфер в ThreadLocal создавался бы заново на каждое обновление.
+ * Язык чата выбирается командой /language или по языку пользователя Telegram,
+ * иначе используется bot.language, который можно сменить без перезапуска через applyConfig.
+ * Выбор чата хранится в памяти до перезапуска.
+ */
+@Register
+public class ResponseRenderer {
+    private static final int MAX_POOLED_CAPACITY = 4096; // Большие буферы не возвращаются в пул
+
+    private final Template[][] templates = new Template[Language.values().length][Reply.values().length];
+    private final Map<String, Language> chatLanguages = new ConcurrentHashMap<>(); // Язык по ID чата
+    private final Queue<StringBuilder> builders = new ConcurrentLinkedQueue<>(); // Свободные буферы
+    private volatile Language defaultLanguage;
+
+    public ResponseRenderer() {
+        for (Language language : Language.values()) {
+            Properties messages = load(language);
+            for (Reply reply : Reply.values()) {
+                String pattern = messages.getProperty(reply.getKey());
+                if (pattern == null) {
+                    throw new IllegalStateException("Нет шаблона " + reply.getKey() + " для языка " + language.getCode());
+                }
+                templates[language.ordinal()][reply.ordinal()] = new Template(pattern);
+            }
+        }
+        applyConfig(ConfigLoader.current());
+    }
+
+    /**
+     * Применяет язык по умолчанию из конфигурации.
+     *
+     * @param config Снимок конфигурации.
+     * @throws IllegalArgumentException если язык неизвестен.
+     */
+    public void applyConfig(Config config) {
+        String configured = config.getString("bot.language", Language.RU.getCode());
+        Language language = Language.fromCode(configured);
+        if (language == null) {
+            throw new IllegalArgumentException("Неизвестный язык в bot.language: " + configured);
+        }
+        defaultLanguage = language;
+    }
+
+    /**
+     * Возвращает язык ответов чата.
+     *
+     * @param chatId ID чата.
+     * @return Язык.
+     */
+    public Language getLanguage(String chatId) {
+        Language language = chatLanguages.get(chatId);
+        return language != null ? language : defaultLanguage;
+    }
+
+    /**
+     * Задаёт язык ответов чата.
+     *
+     * @param chatId   ID чата.
+     * @param language Язык.
+     */
+    public void setLanguage(String chatId, Language language) {
+        chatLanguages.put(chatId, language);
+    }
+
+    /**
+     * Выбирает язык чата по языку пользователя Telegram, если язык чата ещё не выбран.
+     *
+     * @param chatId       ID чата.
+     * @param languageCode Код языка пользователя или null.
+     */
+    public void detectLanguage(String chatId, String languageCode) {
+        if (languageCode == null || chatLanguages.containsKey(chatId)) {
+            return;
+        }
+        Language language = Language.fromCode(languageCode);
+        chatLanguages.putIfAbsent(chatId, language != null ? language : defaultLanguage);
+    }
+
+    /**
+     * Формирует текст ответа без аргументов. Возвращает заранее собранную строку.
+     *
+     * @param chatId ID чата.
+     * @param reply  Ответ.
+     * @return Текст ответа.
+     */
+    public String text(String chatId, Reply reply) {
+        return render(chatId, reply, null, null, null);
+    }
+
+    public String text(String chatId, Reply reply, String arg0) {
+        return render(chatId, reply, arg0, null, null);
+    }
+
+    public String text(String chatId, Reply reply, String arg0, String arg1) {
+        return render(chatId, reply, arg0, arg1, null);
+    }
+
+    public String text(String chatId, Reply reply, String arg0, String arg1, String arg2) {
+        return render(chatId, reply, arg0, arg1, arg2);
+    }
+
+    /**
+     * Создаёт сообщение с ответом. SendMessage изменяем и содержит ID чата, поэтому
+     * создаётся на каждый ответ, а текст статических ответов берётся готовым.
+     *
+     * @param chatId ID чата.
+     * @param reply  Ответ.
+     * @return Сообщение.
+     */
+    public SendMessage message(String chatId, Reply reply) {
+        return new SendMessage(chatId, text(chatId, reply));
+    }
+
+    public SendMessage message(String chatId, Reply reply, String arg0) {
+        return new SendMessage(chatId, text(chatId, reply, arg0));
+    }
+
+    public SendMessage message(String chatId, Reply reply, String arg0, String arg1) {
+        return new SendMessage(chatId, text(chatId, reply, arg0, arg1));
+    }
+
+    public SendMessage message(String chatId, Reply reply, String arg0, String arg1, String arg2) {
+        return new SendMessage(chatId, text(chatId, reply, arg0, arg1, arg2));
+    }
+
+    /**
+     * Создаёт сообщение со списком: заголовок, строки "- элемент" и необязательное окончание.
+     *
+     * @param chatId ID чата.
+     * @param header Заголовок без аргументов.
+     * @param items  Элементы списка.
+     * @param footer Окончание или null.
+     * @return Сообщение.
+     */
+    public SendMessage list(String chatId, Reply header, List<String> items, String footer) {
+        return new SendMessage(chatId, listText(chatId, header, items, footer));
+    }
+
+    /**
+     * Формирует текст списка для сообщения, которое создаётся или изменяется вызывающим.
+     *
+     * @param chatId ID чата.
+     * @param header Заголовок без аргументов.
+     * @param items  Элементы списка.
+     * @param footer Окончание или null.
+     * @return Текст списка.
+     */
+    public String listText(String chatId, Reply header, List<String> items, String footer) {
+        StringBuilder builder = acquire();
+        try {
+            builder.append(text(chatId, header));
+            for (String item : items) {
+                builder.append("- ").append(item).append('\n');
+            }
+            if (footer != null) {
+                builder.append(footer);
+            }
+            return builder.toString();
+        } finally {
+            release(builder);
+        }
+    }
+
+    private String render(String chatId, Reply reply, String arg0, String arg1, String arg2) {
+        Template template = templates[getLanguage(chatId).ordinal()][reply.ordinal()];
+        if (template.constant != null) {
+            return template.constant;
+        }
+        StringBuilder builder = acquire();
+        try {
+            template.appendTo(builder, arg0, arg1, arg2);
+            return builder.toString();
+        } finally {
+            release(builder);
+        }
+    }
+
+    private StringBuilder acquire() {
+        StringBuilder builder = builders.poll();
+        return builder != null ? builder : new StringBuilder(256);
+    }
+
+    private void release(StringBuilder builder) {
+        if (builder.capacity() <= MAX_POOLED_CAPACITY) {
+            builder.setLength(0);
+            builders.offer(builder);
+        }
+    }
+
+    private static Properties load(Language language) {
+        String resource = "/messages_" + language.getCode() + ".properties";
+        try (InputStream in = ResponseRenderer.class.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Не найден файл шаблонов " + resource);
+            }
+            Properties messages = new Properties();
+            messages.load(new InputStreamReader(in, StandardCharsets.UTF_8));
+            return messages;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при чтении шаблонов " + resource, e);
+        }
+    }
+
+    /**
+     * Разобранный шаблон: текст между аргументами и номера аргументов.
+     */
+    private static final class Template {
+        private final String[] literals; // На один больше, чем аргументов
+        private final int[] arguments;
+        private final String constant; // Готовый текст шаблона без аргументов
+
+        private Template(String pattern) {
+            List<String> parts = new ArrayList<>();
+            List<Integer> slots = new ArrayList<>();
+            int start = 0;
+            for (int i = 0; i + 2 < pattern.length(); i++) {
+                char digit = pattern.charAt(i + 1);
+                if (pattern.charAt(i) == '{' && digit >= '0' && digit <= '2' && pattern.charAt(i + 2) == '}') {
+                    parts.add(pattern.substring(start, i));
+                    slots.add(digit - '0');
+                    start = i + 3;
+                    i += 2;
+                }
+            }
+            parts.add(pattern.substring(start));
+            literals = parts.toArray(new String[0]);
+            arguments = slots.stream().mapToInt(Integer::intValue).toArray();
+            constant = arguments.length == 0 ? pattern.intern() : null;
+        }
+
+        private void appendTo(StringBuilder builder, String arg0, String arg1, String arg2) {
+            for (int i = 0; i < arguments.length; i++) {
+                builder.append(literals[i]);
+                builder.append(switch (arguments[i]) {
+                    case 0 -> arg0;
+                    case 1 -> arg1;
+                    default -> arg2;
+                });
+            }
+            builder.append(literals[arguments.length]);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package org.homework.services;
+
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.methods.updatingmessages.EditMessageText;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.InlineKeyboardMarkup;
+import org.telegram.telegrambots.meta.api.objects.replykeyboard.buttons.InlineKeyboardButton;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Постраничный вывод списка сервисов для команды /list.
+ * Страница читается из индекса названий от курсора, поэтому память на запрос
+ * не зависит от размера хранилища. Курсор — граничное название страницы —
+ * передаётся в данных кнопок «Назад» и «Далее», и сервер не хранит состояние просмотра.
+ * Данные кнопки ограничены 64 байтами, поэтому слишком длинные названия в курсоре
+ * обрезаются, и на границе такой страницы названия с общим началом могут повториться.
+ */
+@Register
+public class ServiceListPager {
+    private static final String CALLBACK_PREFIX = "list:";
+    private static final String NEXT = CALLBACK_PREFIX + ">:"; // Страница после курсора
+    private static final String PREVIOUS = CALLBACK_PREFIX + "<:"; // Страница перед курсором
+    private static final int PAGE_SIZE = 20;
+    private static final int MAX_CALLBACK_BYTES = 64; // Ограничение Telegram на данные кнопки
+
+    @Resolve
+    private PasswordService passwordService; // Сервис для работы с паролями
+
+    @Resolve
+    private ResponseRenderer responseRenderer; // Шаблоны ответов
+
+    /**
+     * Создаёт сообщение с первой страницей списка.
+     *
+     * @param chatId ID чата.
+     * @return Сообщение со страницей и кнопками перехода.
+     */
+    public SendMessage firstPage(String chatId) {
+        Page page = pageAfter(chatId, null);
+        SendMessage message = new SendMessage(chatId, text(chatId, page));
+        message.setReplyMarkup(keyboard(chatId, page));
+        return message;
+    }
+
+    /**
+     * Проверяет, относятся ли данные кнопки к списку сервисов.
+     *
+     * @param callbackData Данные нажатой кнопки.
+     * @return true, если кнопку обрабатывает этот класс.
+     */
+    public boolean handles(String callbackData) {
+        return callbackData != null && callbackData.startsWith(CALLBACK_PREFIX);
+    }
+
+    /**
+     * Перелистывает список в уже отправленном сообщении.
+     *
+     * @param chatId       ID чата.
+     * @param messageId    ID сообщения со списком.
+     * @param callbackData Данные нажатой кнопки.
+     * @return Запрос на изменение сообщения.
+     */
+    public EditMessageText turn(String chatId, Integer messageId, String callbackData) {
+        Page page;
+        if (callbackData.startsWith(PREVIOUS)) {
+            page = pageBefore(chatId, callbackData.substring(PREVIOUS.length()));
+        } else if (callbackData.startsWith(NEXT)) {
+            page = pageAfter(chatId, callbackData.substring(NEXT.length()));
+        } else {
+            page = pageAfter(chatId, null);
+        }
+        EditMessageText edit = new EditMessageText();
+        edit.setChatId(chatId);
+        edit.setMessageId(messageId);
+        edit.setText(text(chatId, page));
+        edit.setReplyMarkup(keyboard(chatId, page));
+        return edit;
+    }
+
+    private Page pageAfter(String chatId, String cursor) {
+        List<String> names = passwordService.getServicesAfter(chatId, cursor, PAGE_SIZE + 1);
+        if (names.isEmpty() && cursor != null) {
+            return pageAfter(chatId, null); // Записи за курсором удалены, начинаем сначала
+        }
+        boolean hasNext = names.size() > PAGE_SIZE;
+        if (hasNext) {
+            names = names.subList(0, PAGE_SIZE);
+        }
+        boolean hasPrevious = cursor != null && !names.isEmpty()
+                && !passwordService.getServicesBefore(chatId, names.get(0), 1).isEmpty();
+        return new Page(names, hasPrevious, hasNext);
+    }
+
+    private Page pageBefore(String chatId, String cursor) {
+        List<String> names = passwordService.getServicesBefore(chatId, cursor, PAGE_SIZE + 1);
+        if (names.size() <= PAGE_SIZE) {
+            return pageAfter(chatId, null); // Дошли до начала списка
+        }
+        names = names.subList(1, names.size());
+        boolean hasNext = !passwordService.getServicesAfter(chatId, names.get(names.size() - 1), 1).isEmpty();
+        return new Page(names, true, hasNext);
+    }
+
+    /**
+     * Обрезает название так, чтобы данные кнопки уложились в ограничение Telegram.
+     */
+    private static String cursor(String prefix, String name) {
+        int budget = MAX_CALLBACK_BYTES - prefix.length();
+        int bytes = 0;
+        int end = 0;
+        while (end < name.length()) {
+            int codePoint = name.codePointAt(end);
+            int size = new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8).length;
+            if (bytes + size > budget) {
+                break;
+            }
+            bytes += size;
+            end += Character.charCount(codePoint);
+        }
+        return prefix + name.substring(0, end);
+    }
+
+    private String text(String chatId, Page page) {
+        if (page.names().isEmpty()) {
+            return responseRenderer.text(chatId, Reply.LIST_EMPTY);
+        }
+        return responseRenderer.listText(chatId, Reply.LIST_HEADER, page.names(), null);
+    }
+
+    private InlineKeyboardMarkup keyboard(String chatId, Page page) {
+        List<String> names = page.names();
+        List<InlineKeyboardButton> row = new ArrayList<>(2);
+        if (page.hasPrevious()) {
+            row.add(button(responseRenderer.text(chatId, Reply.LIST_PREVIOUS), cursor(PREVIOUS, names.get(0))));
+        }
+        if (page.hasNext()) {
+            row.add(button(responseRenderer.text(chatId, Reply.LIST_NEXT), cursor(NEXT, names.get(names.size() - 1))));
+        }
+        return row.isEmpty() ? null : new InlineKeyboardMarkup(List.of(row));
+    }
+
+    private static InlineKeyboardButton button(String text, String callbackData) {
+        InlineKeyboardButton button = new InlineKeyboardButton();
+        button.setText(text);
+        button.setCallbackData(callbackData);
+        return button;
+    }
+
+    /**
+     * Страница списка.
+     */
+    private record Page(List<String> names, boolean hasPrevious, boolean hasNext) {
+    }
+}
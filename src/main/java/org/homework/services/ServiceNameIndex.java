@@ -0,0 +1,332 @@
+package org.homework.services;
+
+import org.homework.di.annotations.Register;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Поисковый индекс названий сервисов.
+ * Для каждого чата хранит отсортированную без учета регистра карту названий
+ * (поиск по префиксу за логарифмическое время без копирования хранилища)
+ * и индекс удалений по одному символу для подсказок при опечатках:
+ * названия, отличающиеся от запроса одной правкой (вставка, удаление, замена
+ * или перестановка соседних символов), находятся поиском по нескольким ключам,
+ * а не перебором всех записей.
+ */
+@Register
+public class ServiceNameIndex {
+    private static final char SEPARATOR = '\u0000'; // Отделяет нормализованное название от исходного в ключе
+    private static final int MAX_DISTANCE = 2; // Наибольшее расстояние правки для подсказок
+    private static final int MAX_FUZZY_LENGTH = 64; // Длинные названия не попадают в индекс опечаток
+
+    private final Map<String, ChatIndex> chats = new ConcurrentHashMap<>(); // Индексы по ID чата
+
+    /**
+     * Добавляет название в индекс.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     */
+    public void add(String chatId, String name) {
+        ChatIndex index = chats.computeIfAbsent(chatId, id -> new ChatIndex());
+        synchronized (index) {
+            index.add(name);
+        }
+    }
+
+    /**
+     * Приводит индекс в соответствие с хранилищем для одного названия.
+     * Состояние хранилища читается под блокировкой индекса чата, поэтому
+     * при одновременных добавлении и удалении побеждает последнее из них.
+     *
+     * @param chatId  ID чата.
+     * @param name    Название сервиса.
+     * @param present Проверка наличия записи в хранилище.
+     */
+    public void sync(String chatId, String name, BooleanSupplier present) {
+        ChatIndex index = chats.computeIfAbsent(chatId, id -> new ChatIndex());
+        synchronized (index) {
+            if (present.getAsBoolean()) {
+                index.add(name);
+            } else {
+                index.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Удаляет индекс чата целиком, когда чат выгружается из памяти.
+     *
+     * @param chatId ID чата.
+     */
+    public void removeChat(String chatId) {
+        chats.remove(chatId);
+    }
+
+    /**
+     * Возвращает ID чатов, у которых есть названия в индексе.
+     *
+     * @return Список ID чатов.
+     */
+    public List<String> chatIds() {
+        List<String> result = new ArrayList<>();
+        chats.forEach((chatId, index) -> {
+            if (!index.sorted.isEmpty()) {
+                result.add(chatId);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Возвращает все названия чата в алфавитном порядке без учета регистра.
+     *
+     * @param chatId ID чата.
+     * @return Список названий.
+     */
+    public List<String> names(String chatId) {
+        ChatIndex index = chats.get(chatId);
+        return index != null ? new ArrayList<>(index.sorted.values()) : new ArrayList<>();
+    }
+
+    /**
+     * Возвращает страницу названий, следующих за курсором, не копируя остальные.
+     *
+     * @param chatId ID чата.
+     * @param cursor Название, после которого начинается страница, или null для первой страницы.
+     * @param limit  Наибольшее число названий.
+     * @return Названия в алфавитном порядке.
+     */
+    public List<String> namesAfter(String chatId, String cursor, int limit) {
+        ChatIndex index = chats.get(chatId);
+        if (index == null) {
+            return new ArrayList<>();
+        }
+        Map<String, String> tail = cursor == null ? index.sorted : index.sorted.tailMap(ChatIndex.key(cursor), false);
+        return take(tail.values(), limit);
+    }
+
+    /**
+     * Возвращает страницу названий, предшествующих курсору.
+     *
+     * @param chatId ID чата.
+     * @param cursor Название, перед которым заканчивается страница.
+     * @param limit  Наибольшее число названий.
+     * @return Названия в алфавитном порядке.
+     */
+    public List<String> namesBefore(String chatId, String cursor, int limit) {
+        ChatIndex index = chats.get(chatId);
+        if (index == null) {
+            return new ArrayList<>();
+        }
+        List<String> page = take(index.sorted.headMap(ChatIndex.key(cursor), false).descendingMap().values(), limit);
+        Collections.reverse(page);
+        return page;
+    }
+
+    private static List<String> take(Iterable<String> names, int limit) {
+        List<String> page = new ArrayList<>(limit);
+        for (String name : names) {
+            if (page.size() >= limit) {
+                break;
+            }
+            page.add(name);
+        }
+        return page;
+    }
+
+    /**
+     * Ищет названия, начинающиеся с префикса, без учета регистра.
+     *
+     * @param chatId ID чата.
+     * @param prefix Префикс.
+     * @param limit  Наибольшее число результатов.
+     * @return Названия в алфавитном порядке.
+     */
+    public List<String> findByPrefix(String chatId, String prefix, int limit) {
+        List<String> result = new ArrayList<>();
+        ChatIndex index = chats.get(chatId);
+        if (index == null) {
+            return result;
+        }
+        String normalized = normalize(prefix);
+        for (Map.Entry<String, String> entry : index.sorted.tailMap(normalized).entrySet()) {
+            if (result.size() >= limit || !entry.getKey().startsWith(normalized)) {
+                break;
+            }
+            result.add(entry.getValue());
+        }
+        return result;
+    }
+
+    /**
+     * Подбирает похожие названия для запроса, который не нашелся точно:
+     * сначала найденные по индексу опечаток в порядке расстояния правки, затем продолжения запроса.
+     *
+     * @param chatId ID чата.
+     * @param query  Запрос.
+     * @param limit  Наибольшее число подсказок.
+     * @return Подсказки, ближайшие первыми.
+     */
+    public List<String> suggest(String chatId, String query, int limit) {
+        ChatIndex index = chats.get(chatId);
+        if (index == null || limit <= 0) {
+            return new ArrayList<>();
+        }
+        String normalized = normalize(query);
+        List<Candidate> candidates = new ArrayList<>();
+        Set<String> seen = new LinkedHashSet<>();
+        if (normalized.length() <= MAX_FUZZY_LENGTH) {
+            for (String key : deletions(normalized)) {
+                Object names = index.deletions.get(key);
+                if (names == null) {
+                    continue;
+                }
+                for (String name : names instanceof String single ? new String[]{single} : (String[]) names) {
+                    if (seen.add(name)) {
+                        int distance = distance(normalized, normalize(name));
+                        if (distance <= MAX_DISTANCE) {
+                            candidates.add(new Candidate(name, distance));
+                        }
+                    }
+                }
+            }
+        }
+        candidates.sort(Comparator.comparingInt(Candidate::distance).thenComparing(Candidate::name, String.CASE_INSENSITIVE_ORDER));
+
+        Set<String> result = new LinkedHashSet<>();
+        for (Candidate candidate : candidates) {
+            if (result.size() >= limit) {
+                break;
+            }
+            result.add(candidate.name());
+        }
+        if (result.size() < limit) {
+            result.addAll(findByPrefix(chatId, query, limit - result.size() + 1));
+        }
+        return new ArrayList<>(result).subList(0, Math.min(limit, result.size()));
+    }
+
+    /**
+     * Приводит название к виду для сравнения без учета регистра.
+     */
+    private static String normalize(String name) {
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Возвращает строку и все её варианты без одного символа.
+     */
+    private static Set<String> deletions(String value) {
+        Set<String> result = new LinkedHashSet<>();
+        result.add(value);
+        for (int i = 0; i < value.length(); i++) {
+            result.add(value.substring(0, i) + value.substring(i + 1));
+        }
+        return result;
+    }
+
+    /**
+     * Расстояние Дамерау-Левенштейна (с перестановкой соседних символов).
+     */
+    private static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private record Candidate(String name, int distance) {
+    }
+
+    /**
+     * Индекс одного чата. Изменяется под блокировкой на самом объекте, читается без блокировок.
+     * В индексе опечаток почти каждому варианту соответствует одно название, поэтому значение —
+     * само название, а массив создаётся только при совпадении вариантов. Значения не изменяются
+     * на месте, а заменяются, так что читатель всегда видит целый список.
+     */
+    private static final class ChatIndex {
+        private final ConcurrentNavigableMap<String, String> sorted = new ConcurrentSkipListMap<>(); // Нормализованное название + исходное -> исходное
+        private final Map<String, Object> deletions = new ConcurrentHashMap<>(); // Вариант без символа -> название или массив названий
+
+        void add(String name) {
+            if (sorted.put(key(name), name) != null) {
+                return;
+            }
+            String normalized = normalize(name);
+            if (normalized.length() <= MAX_FUZZY_LENGTH) {
+                for (String deletion : deletions(normalized)) {
+                    deletions.merge(deletion, name, (names, added) -> with(names, name));
+                }
+            }
+        }
+
+        void remove(String name) {
+            if (sorted.remove(key(name)) == null) {
+                return;
+            }
+            String normalized = normalize(name);
+            if (normalized.length() <= MAX_FUZZY_LENGTH) {
+                for (String deletion : deletions(normalized)) {
+                    deletions.computeIfPresent(deletion, (key, names) -> without(names, name));
+                }
+            }
+        }
+
+        private static String key(String name) {
+            return normalize(name) + SEPARATOR + name;
+        }
+
+        private static Object with(Object names, String name) {
+            if (names instanceof String single) {
+                return single.equals(name) ? single : new String[]{single, name};
+            }
+            String[] array = (String[]) names;
+            for (String existing : array) {
+                if (existing.equals(name)) {
+                    return array;
+                }
+            }
+            String[] extended = Arrays.copyOf(array, array.length + 1);
+            extended[array.length] = name;
+            return extended;
+        }
+
+        /**
+         * Возвращает названия без указанного или null, если не осталось ни одного.
+         */
+        private static Object without(Object names, String name) {
+            if (names instanceof String single) {
+                return single.equals(name) ? null : single;
+            }
+            String[] array = (String[]) names;
+            String[] remaining = Arrays.stream(array).filter(existing -> !existing.equals(name)).toArray(String[]::new);
+            return remaining.length == 1 ? remaining[0] : remaining;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.homework.services;
+
+import org.homework.api.PasswordStore;
+import org.homework.di.annotations.ConditionalOnProperty;
+import org.homework.di.annotations.Register;
+import org.homework.model.PasswordEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Хранилище паролей, разбитое на шарды по ID чата.
+ * Каждый чат получает собственную ConcurrentHashMap, поэтому запись в одном чате
+ * не блокирует другие, а чтение не берёт блокировок вовсе.
+ * Используется по умолчанию (vault.store=heap).
+ */
+@Register
+@ConditionalOnProperty(name = "vault.store", havingValue = "heap", matchIfMissing = true)
+public class ShardedPasswordStore implements PasswordStore {
+    private final Map<String, Map<String, PasswordEntry>> shards = new ConcurrentHashMap<>(); // Шарды по ID чата
+
+    @Override
+    public void put(String chatId, PasswordEntry entry) {
+        shards.computeIfAbsent(chatId, id -> new ConcurrentHashMap<>()).put(entry.getName(), entry);
+    }
+
+    @Override
+    public PasswordEntry get(String chatId, String name) {
+        Map<String, PasswordEntry> shard = shards.get(chatId);
+        return shard != null ? shard.get(name) : null;
+    }
+
+    @Override
+    public PasswordEntry remove(String chatId, String name) {
+        Map<String, PasswordEntry> shard = shards.get(chatId);
+        return shard != null ? shard.remove(name) : null;
+    }
+
+    @Override
+    public void removeChat(String chatId) {
+        shards.remove(chatId);
+    }
+
+    @Override
+    public List<String> names(String chatId) {
+        Map<String, PasswordEntry> shard = shards.get(chatId);
+        return shard != null ? new ArrayList<>(shard.keySet()) : new ArrayList<>();
+    }
+
+    @Override
+    public void forEach(BiConsumer<String, PasswordEntry> action) {
+        shards.forEach((chatId, shard) -> shard.values().forEach(entry -> action.accept(chatId, entry)));
+    }
+}
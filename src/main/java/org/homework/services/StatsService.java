@@ -0,0 +1,78 @@
+package org.homework.services;
+
+import org.homework.ConfigLoader;
+import org.homework.di.annotations.Command;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.metrics.LatencyHistogram;
+import org.homework.metrics.Metrics;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Команда /stats для администраторов: счётчики и перцентили задержек из реестра метрик.
+ * Администраторы задаются свойством bot.admins — ID чатов через запятую.
+ */
+@Register
+public class StatsService {
+    private static final int MAX_MESSAGE_LENGTH = 4096; // Ограничение Telegram на длину текста
+
+    @Resolve
+    private Metrics metrics; // Метрики
+
+    @Resolve
+    private ConfigLoader configLoader; // Конфигурация
+
+    @Resolve
+    private ResponseRenderer responseRenderer; // Шаблоны ответов
+
+    /**
+     * Обрабатывает команду /stats.
+     *
+     * @param chatId ID чата.
+     * @return Сообщение со статистикой или отказ, если чат не администраторский.
+     */
+    @Command("/stats")
+    public SendMessage stats(String chatId) {
+        if (!admins().contains(chatId)) {
+            return responseRenderer.message(chatId, Reply.STATS_FORBIDDEN);
+        }
+        StringBuilder response = new StringBuilder(responseRenderer.text(chatId, Reply.STATS_LATENCY_HEADER));
+        for (Map.Entry<String, LatencyHistogram.Snapshot> entry : metrics.histograms().entrySet()) {
+            LatencyHistogram.Snapshot snapshot = entry.getValue();
+            response.append(entry.getKey()).append(": ").append(snapshot.getCount()).append(", ")
+                    .append(millis(snapshot.getPercentile(50))).append(" / ")
+                    .append(millis(snapshot.getPercentile(99))).append(" / ")
+                    .append(millis(snapshot.getMax())).append("\n");
+        }
+        response.append(responseRenderer.text(chatId, Reply.STATS_COUNTERS_HEADER));
+        for (Map.Entry<String, Double> entry : metrics.values().entrySet()) {
+            double value = entry.getValue();
+            response.append(entry.getKey()).append(": ")
+                    .append(value == Math.rint(value) ? Long.toString((long) value) : String.format(Locale.ROOT, "%.3f", value))
+                    .append("\n");
+        }
+        String text = response.toString();
+        return new SendMessage(chatId, text.length() > MAX_MESSAGE_LENGTH ? text.substring(0, MAX_MESSAGE_LENGTH) : text);
+    }
+
+    /**
+     * Читает список администраторов из текущей конфигурации, поэтому его можно менять без перезапуска.
+     */
+    private Set<String> admins() {
+        return Arrays.stream(configLoader.get().getString("bot.admins", "").split(","))
+                .map(String::trim)
+                .filter(id -> !id.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
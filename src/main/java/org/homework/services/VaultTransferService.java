@@ -0,0 +1,399 @@
+package org.homework.services;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import org.homework.api.EncryptionService;
+import org.homework.di.annotations.Command;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.logger.Logger;
+import org.homework.metrics.Metrics;
+import org.homework.model.PasswordEntry;
+import org.telegram.telegrambots.meta.api.methods.PartialBotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.send.SendDocument;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.api.objects.InputFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Массовый импорт и выгрузка паролей чата.
+ * Импорт принимает документ с подписью /import: CSV или JSON из другого менеджера паролей
+ * либо архив .vault, выгруженный этим ботом. Файл разбирается потоково, а записи
+ * добавляются пакетами по {@value #BATCH_SIZE}, поэтому расход памяти не зависит от размера файла.
+ * Выгрузка так же потоково пишется во временный файл, который удаляется после отправки.
+ * Архив .vault — CSV под потоковым шифрованием, в котором пароли остаются зашифрованными
+ * ключом чата, поэтому архив загружается обратно только в тот чат, из которого выгружен.
+ */
+@Register
+public class VaultTransferService {
+    public static final String IMPORT_COMMAND = "/import";
+    private static final int BATCH_SIZE = 1000; // Записей в одном пакете импорта (один fsync журнала) и странице выгрузки
+    private static final String ARCHIVE_FORMAT = "vault";
+    private static final List<String> NAME_COLUMNS = List.of("name", "title", "service");
+    private static final List<String> USERNAME_COLUMNS = List.of("username", "login", "login_username", "user");
+    private static final List<String> PASSWORD_COLUMNS = List.of("password", "login_password");
+    private static final List<String> ENTRY_ARRAYS = List.of("items", "entries"); // Поля с записями в объекте JSON
+
+    @Resolve
+    private PasswordService passwordService; // Сервис для работы с паролями
+
+    @Resolve
+    private EncryptionService encryptionService; // Шифрование архива
+
+    @Resolve
+    private ResponseRenderer responseRenderer; // Шаблоны ответов
+
+    @Resolve
+    private Metrics metrics; // Метрики
+
+    @Resolve
+    private Logger logger; // Логгер
+
+    private final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * Обрабатывает команду /import без файла.
+     *
+     * @param chatId ID чата.
+     * @return Сообщение с описанием форматов импорта.
+     */
+    @Command(IMPORT_COMMAND)
+    public SendMessage importHelp(String chatId) {
+        return responseRenderer.message(chatId, Reply.IMPORT_USAGE);
+    }
+
+    /**
+     * Обрабатывает команду /export.
+     *
+     * @param chatId ID чата.
+     * @param format Формат выгрузки: csv, json или vault.
+     * @return Документ с выгрузкой или сообщение об ошибке.
+     */
+    @Command(value = "/export", usage = "/export <csv|json|vault>")
+    public PartialBotApiMethod<?> export(String chatId, String format) {
+        String extension = format.trim().toLowerCase(Locale.ROOT);
+        if (!extension.equals("csv") && !extension.equals("json") && !extension.equals(ARCHIVE_FORMAT)) {
+            return responseRenderer.message(chatId, Reply.EXPORT_UNKNOWN_FORMAT);
+        }
+        if (passwordService.getServicesAfter(chatId, null, 1).isEmpty()) {
+            return responseRenderer.message(chatId, Reply.EXPORT_EMPTY);
+        }
+        Path file = null;
+        try {
+            file = Files.createTempFile("export-", "." + extension);
+            int count;
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file));
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(
+                         extension.equals(ARCHIVE_FORMAT) ? encryptionService.encryptingStream(out) : out,
+                         StandardCharsets.UTF_8))) {
+                count = extension.equals("json") ? writeJson(chatId, writer) : writeCsv(chatId, writer, !extension.equals(ARCHIVE_FORMAT));
+            }
+            metrics.counter("export_entries_total", "Число выгруженных записей").add(count);
+            logger.info("Выгружено записей: {}, формат: {}", count, extension);
+            // Файл удаляется, когда отправивший документ закроет поток
+            SendDocument document = new SendDocument(chatId,
+                    new InputFile(Files.newInputStream(file, StandardOpenOption.DELETE_ON_CLOSE), "passwords." + extension));
+            document.setCaption(responseRenderer.text(chatId,
+                    extension.equals(ARCHIVE_FORMAT) ? Reply.EXPORT_ARCHIVE_CAPTION : Reply.EXPORT_PLAIN_CAPTION,
+                    Integer.toString(count)));
+            return document;
+        } catch (IOException e) {
+            deleteQuietly(file);
+            throw new UncheckedIOException("Ошибка при выгрузке паролей", e);
+        }
+    }
+
+    /**
+     * Импортирует записи из документа. Записи, прочитанные до ошибки в файле, сохраняются.
+     *
+     * @param chatId   ID чата.
+     * @param fileName Имя файла; по расширению выбирается формат.
+     * @param content  Содержимое файла.
+     * @return Сообщение с результатом импорта.
+     */
+    public SendMessage importDocument(String chatId, String fileName, InputStream content) {
+        String name = fileName == null ? "" : fileName.toLowerCase(Locale.ROOT);
+        boolean archive = name.endsWith("." + ARCHIVE_FORMAT);
+        ImportBatch batch = new ImportBatch(chatId, archive);
+        String error = null;
+        try (InputStream in = archive ? encryptionService.decryptingStream(content) : new BufferedInputStream(content)) {
+            if (!archive && isJson(name, in)) {
+                readJson(in, batch);
+            } else {
+                readCsv(in, batch);
+            }
+        } catch (JsonProcessingException e) {
+            error = responseRenderer.text(chatId, Reply.IMPORT_PARSE_ERROR,
+                    e.getOriginalMessage(), Integer.toString(e.getLocation().getLineNr()));
+        } catch (IOException | RuntimeException e) {
+            error = e.getMessage();
+        }
+        try {
+            batch.flush(); // Записи, прочитанные до ошибки, тоже сохраняются
+        } catch (RuntimeException e) {
+            error = error != null ? error : e.getMessage();
+        }
+        metrics.counter("import_entries_total", "Число записей, добавленных импортом").add(batch.imported);
+        logger.info("Импортировано записей: {}, пропущено: {}", batch.imported, batch.skipped);
+        String imported = Integer.toString(batch.imported);
+        String skipped = Integer.toString(batch.skipped);
+        String response = error == null
+                ? responseRenderer.text(chatId, Reply.IMPORT_COMPLETED, imported, skipped)
+                : responseRenderer.text(chatId, Reply.IMPORT_FAILED, error, imported, skipped);
+        if (archive && batch.imported == 0 && batch.skipped > 0) {
+            response += "\n" + responseRenderer.text(chatId, Reply.IMPORT_FOREIGN_ARCHIVE);
+        }
+        return new SendMessage(chatId, response);
+    }
+
+    /**
+     * Пишет записи в CSV страницами, не собирая их в памяти.
+     *
+     * @param decrypt false для архива: пароли остаются зашифрованными ключом чата.
+     * @return Число записей.
+     */
+    private int writeCsv(String chatId, Writer writer, boolean decrypt) throws IOException {
+        writeCsvRecord(writer, "name", "username", "password");
+        int count = 0;
+        String cursor = null;
+        while (true) {
+            List<PasswordEntry> page = passwordService.getPasswordsAfter(chatId, cursor, BATCH_SIZE, decrypt);
+            for (PasswordEntry entry : page) {
+                writeCsvRecord(writer, entry.getName(), entry.getUsername(), entry.getPassword());
+            }
+            count += page.size();
+            if (page.size() < BATCH_SIZE) {
+                return count;
+            }
+            cursor = page.get(page.size() - 1).getName();
+        }
+    }
+
+    private int writeJson(String chatId, Writer writer) throws IOException {
+        int count = 0;
+        String cursor = null;
+        try (JsonGenerator generator = jsonFactory.createGenerator(writer)) {
+            generator.useDefaultPrettyPrinter();
+            generator.writeStartArray();
+            while (true) {
+                List<PasswordEntry> page = passwordService.getPasswordsAfter(chatId, cursor, BATCH_SIZE, true);
+                for (PasswordEntry entry : page) {
+                    generator.writeStartObject();
+                    generator.writeStringField("name", entry.getName());
+                    generator.writeStringField("username", entry.getUsername());
+                    generator.writeStringField("password", entry.getPassword());
+                    generator.writeEndObject();
+                }
+                count += page.size();
+                if (page.size() < BATCH_SIZE) {
+                    break;
+                }
+                cursor = page.get(page.size() - 1).getName();
+            }
+            generator.writeEndArray();
+        }
+        return count;
+    }
+
+    /**
+     * Пишет запись CSV, заключая в кавычки поля с запятыми, кавычками и переводами строк.
+     */
+    private static void writeCsvRecord(Writer writer, String... fields) throws IOException {
+        for (int i = 0; i < fields.length; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+            String field = fields[i];
+            if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0 && field.indexOf('\r') < 0) {
+                writer.write(field);
+            } else {
+                writer.write('"');
+                writer.write(field.replace("\"", "\"\""));
+                writer.write('"');
+            }
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * Читает CSV. Если первая запись — заголовок с известными названиями столбцов,
+     * столбцы выбираются по нему, иначе ожидаются столбцы name, username, password.
+     */
+    private void readCsv(InputStream in, ImportBatch batch) throws IOException {
+        CsvReader reader = new CsvReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        List<String> record = reader.next();
+        if (record == null) {
+            return;
+        }
+        int nameColumn = column(record, NAME_COLUMNS);
+        int usernameColumn = column(record, USERNAME_COLUMNS);
+        int passwordColumn = column(record, PASSWORD_COLUMNS);
+        if (nameColumn >= 0 && passwordColumn >= 0) {
+            record = reader.next(); // Заголовок
+        } else {
+            nameColumn = 0;
+            usernameColumn = 1;
+            passwordColumn = 2;
+        }
+        for (; record != null; record = reader.next()) {
+            batch.add(field(record, nameColumn), field(record, usernameColumn), field(record, passwordColumn));
+        }
+    }
+
+    private static int column(List<String> header, List<String> names) {
+        for (int i = 0; i < header.size(); i++) {
+            if (names.contains(header.get(i).trim().toLowerCase(Locale.ROOT))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String field(List<String> record, int column) {
+        return column >= 0 && column < record.size() ? record.get(column) : null;
+    }
+
+    /**
+     * Читает JSON: массив объектов или объект, в поле items или entries которого лежит такой массив.
+     * Логин и пароль берутся и из вложенного объекта login, как в выгрузке Bitwarden.
+     */
+    private void readJson(InputStream in, ImportBatch batch) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(in)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                readJsonEntries(parser, batch);
+                return;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Ожидается массив записей");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                boolean entries = ENTRY_ARRAYS.contains(parser.getCurrentName().toLowerCase(Locale.ROOT));
+                if (parser.nextToken() == JsonToken.START_ARRAY && entries) {
+                    readJsonEntries(parser, batch);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+    }
+
+    private void readJsonEntries(JsonParser parser, ImportBatch batch) throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+            String[] entry = new String[3];
+            readJsonEntry(parser, entry);
+            batch.add(entry[0], entry[1], entry[2]);
+        }
+        if (token != JsonToken.END_ARRAY) {
+            throw new JsonParseException(parser, "Ожидается объект записи");
+        }
+    }
+
+    /**
+     * Читает поля объекта записи в массив [название, логин, пароль].
+     */
+    private static void readJsonEntry(JsonParser parser, String[] entry) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName().toLowerCase(Locale.ROOT);
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.START_OBJECT && field.equals("login")) {
+                readJsonEntry(parser, entry);
+            } else if (value.isScalarValue()) {
+                if (NAME_COLUMNS.contains(field)) {
+                    entry[0] = parser.getValueAsString();
+                } else if (USERNAME_COLUMNS.contains(field)) {
+                    entry[1] = parser.getValueAsString();
+                } else if (PASSWORD_COLUMNS.contains(field)) {
+                    entry[2] = parser.getValueAsString();
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Формат определяется по расширению, а для файла без расширения — по первому значимому байту.
+     */
+    private static boolean isJson(String fileName, InputStream in) throws IOException {
+        if (fileName.endsWith(".json")) {
+            return true;
+        }
+        if (fileName.endsWith(".csv")) {
+            return false;
+        }
+        in.mark(64);
+        try {
+            int b;
+            do {
+                b = in.read();
+            } while (b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == 0xEF || b == 0xBB || b == 0xBF);
+            return b == '[' || b == '{';
+        } finally {
+            in.reset();
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Временный файл в любом случае удалит система
+            }
+        }
+    }
+
+    /**
+     * Накопитель записей импорта: добавляет их в хранилище пакетами.
+     */
+    private final class ImportBatch {
+        private final String chatId;
+        private final boolean encrypted;
+        private final List<PasswordEntry> pending = new ArrayList<>(BATCH_SIZE);
+        private int imported;
+        private int skipped;
+
+        private ImportBatch(String chatId, boolean encrypted) {
+            this.chatId = chatId;
+            this.encrypted = encrypted;
+        }
+
+        /**
+         * Добавляет запись в пакет. Записи без названия или пароля пропускаются.
+         */
+        private void add(String name, String username, String password) {
+            if (name == null || name.isBlank() || password == null || password.isEmpty()) {
+                skipped++;
+                return;
+            }
+            pending.add(new PasswordEntry(name.trim(), username == null ? "" : username.trim(), password));
+            if (pending.size() == BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private void flush() {
+            if (pending.isEmpty()) {
+                return;
+            }
+            int added = passwordService.addPasswords(chatId, pending, encrypted);
+            imported += added;
+            skipped += pending.size() - added;
+            pending.clear();
+        }
+    }
+}
@@ -0,0 +1,552 @@
+package org.homework.storage;
+
+import org.homework.Config;
+import org.homework.ConfigLoader;
+import org.homework.api.PasswordStore;
+import org.homework.di.annotations.Register;
+import org.homework.di.annotations.Resolve;
+import org.homework.logger.Logger;
+import org.homework.model.PasswordEntry;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Долговременное хранение паролей на диске.
+ * Изменения пишутся в журнал vault-&lt;поколение&gt;.log. Записи каждого чата лежат в отдельном
+ * разделе tenants/&lt;ID чата&gt;.vault, который загружается в память при первом обращении к чату
+ * и выгружается, когда чат долго неактивен, поэтому расход памяти зависит от числа активных чатов.
+ * При росте журнала изменённые разделы переписываются, а снимок vault.snapshot хранит поколение
+ * журнала, с которого начинаются ещё не сохранённые в разделах изменения. При запуске
+ * загружаются только разделы чатов, упомянутых в этих журналах.
+ * Снимок прежнего формата с записями всех чатов при первом запуске раскладывается по разделам.
+ */
+@Register
+public class VaultJournal {
+    private static final String SNAPSHOT_FILE = "vault.snapshot";
+    private static final String TENANTS_DIRECTORY = "tenants";
+    private static final String TENANT_SUFFIX = ".vault";
+    private static final Pattern NUMERIC_ID = Pattern.compile("-?\\d+");
+    private static final long DEFAULT_IDLE_SECONDS = 600;
+    private static final Pattern LOG_FILE = Pattern.compile("vault-(\\d+)\\.log");
+    private static final long DEFAULT_COMPACTION_BYTES = 64L * 1024 * 1024;
+    private static final long COMPACTION_CHECK_SECONDS = 30;
+    private static final int LOCK_STRIPES = 64;
+
+    @Resolve
+    private Logger logger; // Логгер
+
+    @Resolve
+    private ConfigLoader configLoader; // Конфигурация
+
+    private final Object[] stripes = new Object[LOCK_STRIPES]; // Блокировки по ID чата
+    private final ReadWriteLock rotationLock = new ReentrantReadWriteLock(); // Защищает смену журнала
+    private final Map<String, Long> loaded = new ConcurrentHashMap<>(); // Загруженные чаты и время последнего обращения
+    private final Map<String, Long> dirty = new ConcurrentHashMap<>(); // Чаты с изменениями, ещё не сохранёнными в раздел
+    private final AtomicLong modifications = new AtomicLong(); // Номер последнего изменения
+    private Path directory;
+    private Path tenants;
+    private PasswordStore store;
+    private TenantListener listener;
+    private boolean recovering;
+    private long idleNanos;
+    private volatile WriteAheadLog log;
+    private long generation;
+    private long compactionBytes;
+    private ScheduledExecutorService compactor;
+
+    public VaultJournal() {
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    /**
+     * Восстанавливает с диска изменения, не сохранённые в разделах, и открывает журнал для новых записей.
+     * Директория данных задаётся свойством vault.dir, порог сжатия — vault.compaction.bytes,
+     * время, после которого неактивный чат выгружается из памяти, — vault.tenant.idle.seconds (0 — не выгружать).
+     *
+     * @param store    Хранилище, в которое загружаются данные.
+     * @param listener Получатель событий загрузки и выгрузки чатов.
+     */
+    public synchronized void recover(PasswordStore store, TenantListener listener) {
+        if (this.store != null) {
+            return;
+        }
+        try {
+            Config config = configLoader.get();
+            directory = Paths.get(config.getString("vault.dir", "data"));
+            tenants = directory.resolve(TENANTS_DIRECTORY);
+            compactionBytes = config.getLong("vault.compaction.bytes", DEFAULT_COMPACTION_BYTES);
+            idleNanos = TimeUnit.SECONDS.toNanos(config.getLong("vault.tenant.idle.seconds", DEFAULT_IDLE_SECONDS));
+            Files.createDirectories(tenants);
+            this.store = store;
+            this.listener = listener;
+            recovering = true;
+
+            long started = System.nanoTime();
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            long[] legacyRecords = new long[1];
+            long snapshotGeneration = Files.exists(snapshot) ? VaultSnapshot.load(snapshot, (chatId, entry) -> {
+                change(chatId, () -> store.put(chatId, entry)); // Снимок прежнего формата
+                legacyRecords[0]++;
+            }) : 0;
+
+            long lastGeneration = snapshotGeneration;
+            long replayed = 0;
+            WriteAheadLog.Replay replay = new WriteAheadLog.Replay() {
+                @Override
+                public void put(String chatId, PasswordEntry entry) {
+                    change(chatId, () -> store.put(chatId, entry));
+                }
+
+                @Override
+                public void delete(String chatId, String name) {
+                    change(chatId, () -> store.remove(chatId, name));
+                }
+            };
+            for (long logGeneration : logGenerations()) {
+                Path file = logFile(logGeneration);
+                if (logGeneration < snapshotGeneration) {
+                    Files.delete(file); // Уже учтён в снимке
+                    continue;
+                }
+                replayed += WriteAheadLog.replay(file, replay);
+                lastGeneration = Math.max(lastGeneration, logGeneration);
+                if (Files.size(file) == 0) {
+                    Files.delete(file); // Пустой журнал ничего не добавляет
+                }
+            }
+
+            generation = lastGeneration + 1;
+            log = WriteAheadLog.open(logFile(generation));
+            VaultSnapshot.syncDirectory(directory); // Запись о новом журнале должна пережить сбой вместе с его данными
+            recovering = false;
+            loaded.keySet().forEach(listener::loaded);
+            logger.info("Хранилище восстановлено за {} мс, записей журнала воспроизведено: {}, загружено чатов: {}",
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), replayed, loaded.size());
+            if (legacyRecords[0] > 0) {
+                compact();
+                logger.info("Снимок прежнего формата разложен по разделам, записей: {}", legacyRecords[0]);
+            }
+
+            compactor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "vault-compactor");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::compactIfNeeded,
+                    COMPACTION_CHECK_SECONDS, COMPACTION_CHECK_SECONDS, TimeUnit.SECONDS);
+            if (idleNanos > 0) {
+                compactor.scheduleWithFixedDelay(this::evictIdleSafely,
+                        COMPACTION_CHECK_SECONDS, COMPACTION_CHECK_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при восстановлении хранилища паролей", e);
+        }
+    }
+
+    /**
+     * Загружает раздел чата, если он ещё не в памяти, и отмечает обращение к чату.
+     * Вызывается перед любой операцией с записями чата.
+     *
+     * @param chatId ID чата.
+     */
+    public void open(String chatId) {
+        synchronized (stripe(chatId)) {
+            load(chatId);
+            loaded.put(chatId, System.nanoTime());
+        }
+    }
+
+    /**
+     * Возвращает ID всех чатов с записями: и загруженных, и хранящихся только на диске.
+     *
+     * @return Список ID чатов.
+     */
+    public List<String> chatIds() {
+        Set<String> chatIds = new TreeSet<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(tenants, "*" + TENANT_SUFFIX)) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                chatIds.add(decodeChatId(fileName.substring(0, fileName.length() - TENANT_SUFFIX.length())));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при чтении списка разделов", e);
+        }
+        for (String chatId : loaded.keySet()) {
+            if (store.names(chatId).isEmpty()) {
+                chatIds.remove(chatId); // Записи удалены, раздел ещё не переписан
+            } else {
+                chatIds.add(chatId);
+            }
+        }
+        return new ArrayList<>(chatIds);
+    }
+
+    /**
+     * Возвращает записи чата, не загружая его раздел в память и не отмечая обращение к чату.
+     * Записи загруженного чата берутся из хранилища, остальных — из файла раздела.
+     * Нужна фоновым задачам, которые обходят все чаты и не должны удерживать их в памяти.
+     *
+     * @param chatId ID чата.
+     * @return Записи чата.
+     */
+    public List<PasswordEntry> entries(String chatId) {
+        List<PasswordEntry> entries = new ArrayList<>();
+        synchronized (stripe(chatId)) {
+            if (loaded.containsKey(chatId)) {
+                for (String name : store.names(chatId)) {
+                    PasswordEntry entry = store.get(chatId, name);
+                    if (entry != null) {
+                        entries.add(entry);
+                    }
+                }
+                return entries;
+            }
+            Path file = tenantFile(chatId);
+            if (Files.exists(file)) {
+                try {
+                    VaultSnapshot.load(file, (id, entry) -> entries.add(entry));
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Ошибка при чтении раздела чата " + chatId, e);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Возвращает число чатов, загруженных в память.
+     */
+    public int getLoadedCount() {
+        return loaded.size();
+    }
+
+    /**
+     * Сохраняет запись в хранилище и дожидается её записи в журнал.
+     *
+     * @param chatId ID чата.
+     * @param entry  Запись о пароле.
+     */
+    public void put(String chatId, PasswordEntry entry) {
+        CompletableFuture<Void> durable;
+        synchronized (stripe(chatId)) {
+            change(chatId, () -> store.put(chatId, entry));
+            durable = append(() -> log.appendPut(chatId, entry));
+        }
+        durable.join();
+    }
+
+    /**
+     * Сохраняет пакет записей чата и дожидается их записи в журнал.
+     * Записи попадают в журнал одним пакетом, поэтому на весь пакет приходится мало вызовов fsync.
+     *
+     * @param chatId  ID чата.
+     * @param entries Записи о паролях.
+     */
+    public void putAll(String chatId, List<PasswordEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        CompletableFuture<?>[] durable = new CompletableFuture<?>[entries.size()];
+        synchronized (stripe(chatId)) {
+            for (int i = 0; i < durable.length; i++) {
+                PasswordEntry entry = entries.get(i);
+                change(chatId, () -> store.put(chatId, entry));
+                durable[i] = append(() -> log.appendPut(chatId, entry));
+            }
+        }
+        CompletableFuture.allOf(durable).join();
+    }
+
+    /**
+     * Заменяет запись, только если она не изменилась с момента чтения.
+     * Нужна фоновым задачам, которые не должны затирать изменения пользователя.
+     *
+     * @param chatId      ID чата.
+     * @param expected    Прочитанная ранее запись.
+     * @param replacement Новая запись с тем же названием сервиса.
+     * @return true, если запись заменена.
+     */
+    public boolean replace(String chatId, PasswordEntry expected, PasswordEntry replacement) {
+        CompletableFuture<Void> durable;
+        synchronized (stripe(chatId)) {
+            load(chatId);
+            PasswordEntry current = store.get(chatId, expected.getName());
+            if (current == null || !current.getUsername().equals(expected.getUsername())
+                    || !current.getPassword().equals(expected.getPassword())) {
+                return false;
+            }
+            change(chatId, () -> store.put(chatId, replacement));
+            durable = append(() -> log.appendPut(chatId, replacement));
+        }
+        durable.join();
+        return true;
+    }
+
+    /**
+     * Удаляет запись из хранилища и дожидается записи удаления в журнал.
+     *
+     * @param chatId ID чата.
+     * @param name   Название сервиса.
+     */
+    public void remove(String chatId, String name) {
+        CompletableFuture<Void> durable;
+        synchronized (stripe(chatId)) {
+            load(chatId);
+            if (store.remove(chatId, name) == null) {
+                return;
+            }
+            markDirty(chatId);
+            durable = append(() -> log.appendDelete(chatId, name));
+        }
+        durable.join();
+    }
+
+    /**
+     * Переписывает изменённые разделы, сохраняет в снимок новое поколение журнала
+     * и удаляет журналы, которые теперь покрыты разделами.
+     * Новые записи во время сжатия идут в следующий журнал; повторное воспроизведение
+     * операций, уже попавших в разделы, даёт тот же результат.
+     */
+    public synchronized void compact() {
+        try {
+            WriteAheadLog previous;
+            long snapshotGeneration;
+            rotationLock.writeLock().lock();
+            try {
+                previous = log;
+                snapshotGeneration = generation + 1;
+                log = WriteAheadLog.open(logFile(snapshotGeneration));
+                VaultSnapshot.syncDirectory(directory);
+                generation = snapshotGeneration;
+            } finally {
+                rotationLock.writeLock().unlock();
+            }
+            previous.close();
+
+            // Все изменения из прежних журналов отмечены в dirty до смены журнала
+            for (String chatId : new ArrayList<>(dirty.keySet())) {
+                flush(chatId);
+            }
+            // Разделы должны оказаться на диске раньше снимка, по которому удаляются журналы
+            VaultSnapshot.syncDirectory(tenants);
+            VaultSnapshot.write(directory.resolve(SNAPSHOT_FILE), snapshotGeneration, records -> {
+            });
+            for (long logGeneration : logGenerations()) {
+                if (logGeneration < snapshotGeneration) {
+                    Files.deleteIfExists(logFile(logGeneration));
+                }
+            }
+            logger.info("Хранилище сжато в снимок, поколение журнала: {}", snapshotGeneration);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Ошибка при сжатии хранилища паролей", e);
+        }
+    }
+
+    /**
+     * Выгружает из памяти чаты, к которым не обращались дольше vault.tenant.idle.seconds.
+     * Несохранённые изменения чата сначала записываются в его раздел.
+     */
+    public synchronized void evictIdle() {
+        long now = System.nanoTime();
+        for (Map.Entry<String, Long> tenant : loaded.entrySet()) {
+            if (now - tenant.getValue() < idleNanos) {
+                continue;
+            }
+            String chatId = tenant.getKey();
+            try {
+                flush(chatId);
+            } catch (IOException e) {
+                logger.error("Ошибка при сохранении раздела чата {}: {}", chatId, e.getMessage());
+                continue;
+            }
+            synchronized (stripe(chatId)) {
+                Long lastAccess = loaded.get(chatId);
+                if (lastAccess == null || now - lastAccess < idleNanos || dirty.containsKey(chatId)) {
+                    continue; // К чату обратились во время сохранения
+                }
+                loaded.remove(chatId);
+                store.removeChat(chatId);
+                listener.evicted(chatId);
+            }
+        }
+    }
+
+    private void evictIdleSafely() {
+        try {
+            evictIdle();
+        } catch (RuntimeException e) {
+            logger.error("Ошибка при выгрузке неактивных чатов: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Загружает раздел чата, если он ещё не в памяти. Вызывается под блокировкой чата или при восстановлении.
+     */
+    private void load(String chatId) {
+        if (loaded.containsKey(chatId)) {
+            return;
+        }
+        Path file = tenantFile(chatId);
+        if (Files.exists(file)) {
+            try {
+                VaultSnapshot.load(file, store::put);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Ошибка при загрузке раздела чата " + chatId, e);
+            }
+        }
+        loaded.put(chatId, System.nanoTime());
+        if (!recovering) {
+            listener.loaded(chatId);
+        }
+    }
+
+    /**
+     * Применяет изменение к загруженному разделу чата и отмечает раздел как изменённый.
+     */
+    private void change(String chatId, Runnable update) {
+        load(chatId);
+        update.run();
+        markDirty(chatId);
+    }
+
+    private void markDirty(String chatId) {
+        dirty.put(chatId, modifications.incrementAndGet());
+    }
+
+    /**
+     * Переписывает раздел чата, если в нём есть несохранённые изменения.
+     * Чат остаётся изменённым, если его записи поменялись во время сохранения.
+     * Каталог разделов не сбрасывается: изменения остаются и в журнале, а compact сбрасывает
+     * каталог перед тем, как удалить журналы.
+     */
+    private void flush(String chatId) throws IOException {
+        List<PasswordEntry> entries = new ArrayList<>();
+        long modification;
+        synchronized (stripe(chatId)) {
+            Long dirtyAt = dirty.get(chatId);
+            if (dirtyAt == null) {
+                return;
+            }
+            modification = dirtyAt;
+            for (String name : store.names(chatId)) {
+                PasswordEntry entry = store.get(chatId, name);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+            }
+        }
+        Path file = tenantFile(chatId);
+        if (entries.isEmpty()) {
+            Files.deleteIfExists(file);
+        } else {
+            VaultSnapshot.write(file, 0, records -> entries.forEach(entry -> records.accept(chatId, entry)), false);
+        }
+        dirty.remove(chatId, modification);
+    }
+
+    private void compactIfNeeded() {
+        try {
+            if (log.size() >= compactionBytes) {
+                compact();
+            }
+        } catch (RuntimeException e) {
+            logger.error("Ошибка при сжатии хранилища: {}", e.getMessage());
+        }
+    }
+
+    private CompletableFuture<Void> append(Supplier<CompletableFuture<Void>> write) {
+        rotationLock.readLock().lock();
+        try {
+            return write.get();
+        } finally {
+            rotationLock.readLock().unlock();
+        }
+    }
+
+    private Object stripe(String chatId) {
+        return stripes[(chatId.hashCode() & 0x7fffffff) % LOCK_STRIPES];
+    }
+
+    private Path tenantFile(String chatId) {
+        return tenants.resolve(encodeChatId(chatId) + TENANT_SUFFIX);
+    }
+
+    /**
+     * Числовые ID чатов используются как имя файла без изменений, остальные кодируются в hex.
+     */
+    private static String encodeChatId(String chatId) {
+        if (NUMERIC_ID.matcher(chatId).matches()) {
+            return chatId;
+        }
+        return "x" + HexFormat.of().formatHex(chatId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String decodeChatId(String fileName) {
+        if (fileName.startsWith("x")) {
+            return new String(HexFormat.of().parseHex(fileName.substring(1)), StandardCharsets.UTF_8);
+        }
+        return fileName;
+    }
+
+    private Path logFile(long logGeneration) {
+        return directory.resolve("vault-" + logGeneration + ".log");
+    }
+
+    private List<Long> logGenerations() throws IOException {
+        List<Long> generations = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "vault-*.log")) {
+            for (Path file : files) {
+                Matcher matcher = LOG_FILE.matcher(file.getFileName().toString());
+                if (matcher.matches()) {
+                    generations.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        generations.sort(null);
+        return generations;
+    }
+
+    /**
+     * Получатель событий загрузки и выгрузки разделов чатов.
+     */
+    public interface TenantListener {
+        /**
+         * Раздел чата загружен в хранилище.
+         *
+         * @param chatId ID чата.
+         */
+        void loaded(String chatId);
+
+        /**
+         * Раздел чата выгружен из хранилища.
+         *
+         * @param chatId ID чата.
+         */
+        void evicted(String chatId);
+    }
+}
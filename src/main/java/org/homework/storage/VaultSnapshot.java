@@ -0,0 +1,141 @@
+package org.homework.storage;
+
+import org.homework.model.PasswordEntry;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Снимок хранилища паролей.
+ * Формат: магическое число, версия, поколение журнала, затем записи
+ * (ID чата, сервис, имя пользователя, зашифрованный пароль) и CRC32 всего файла.
+ * Поколение означает номер первого журнала, который нужно воспроизвести поверх снимка.
+ * Снимок читается через MappedByteBuffer, без копирования файла в кучу.
+ * В том же формате хранятся файлы разделов отдельных чатов.
+ */
+final class VaultSnapshot {
+    private static final int MAGIC = 0x56534E50; // "VSNP"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+
+    private VaultSnapshot() {
+    }
+
+    /**
+     * Атомарно и надёжно записывает снимок: после возврата он переживает и сбой питания.
+     *
+     * @param file       Путь к файлу снимка.
+     * @param generation Поколение журнала, с которого начинается хвост.
+     * @param records    Источник записей, например store::forEach.
+     */
+    static void write(Path file, long generation, Consumer<BiConsumer<String, PasswordEntry>> records) throws IOException {
+        write(file, generation, records, true);
+    }
+
+    /**
+     * Атомарно записывает снимок.
+     *
+     * @param syncDirectory false, если вызывающий сам сбросит каталог после записи нескольких файлов:
+     *                      до этого переименование может потеряться при сбое питания.
+     */
+    static void write(Path file, long generation, Consumer<BiConsumer<String, PasswordEntry>> records,
+                      boolean syncDirectory) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(output, new CRC32());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(checked, 1 << 16));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(generation);
+            IOException[] failure = new IOException[1];
+            records.accept((chatId, entry) -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    VaultRecords.writeString(out, chatId);
+                    VaultRecords.writeString(out, entry.getName());
+                    VaultRecords.writeString(out, entry.getUsername());
+                    VaultRecords.writeString(out, entry.getPassword());
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+            out.flush();
+            new DataOutputStream(output).writeLong(checked.getChecksum().getValue());
+            output.getChannel().force(true);
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        if (syncDirectory) {
+            syncDirectory(file.getParent());
+        }
+    }
+
+    /**
+     * Сбрасывает на диск каталог, чтобы созданные, переименованные и удалённые в нём файлы
+     * пережили сбой питания: fsync самого файла не сохраняет запись о нём в каталоге.
+     * Там, где каталог нельзя открыть как файл (Windows), ничего не делает.
+     *
+     * @param directory Каталог.
+     */
+    static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (AccessDeniedException e) {
+            // Windows не открывает каталоги, а NTFS сохраняет переименование вместе с журналом файловой системы
+        }
+    }
+
+    /**
+     * Читает записи снимка.
+     *
+     * @param file    Путь к файлу снимка.
+     * @param records Получатель записей, например store::put.
+     * @return Поколение журнала, с которого нужно продолжить воспроизведение.
+     */
+    static long load(Path file, BiConsumer<String, PasswordEntry> records) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Снимок слишком большой для отображения в память: " + size);
+            }
+            if (size < HEADER_SIZE + 8) {
+                throw new IOException("Снимок повреждён: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            int bodyEnd = (int) size - 8;
+
+            CRC32 crc = new CRC32();
+            crc.update(buffer.duplicate().limit(bodyEnd));
+            if (crc.getValue() != buffer.getLong(bodyEnd)) {
+                throw new IOException("Неверная контрольная сумма снимка: " + file);
+            }
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Неизвестный формат снимка: " + file);
+            }
+            long generation = buffer.getLong();
+            buffer.limit(bodyEnd);
+            while (buffer.hasRemaining()) {
+                String chatId = VaultRecords.readString(buffer);
+                String name = VaultRecords.readString(buffer);
+                String username = VaultRecords.readString(buffer);
+                String password = VaultRecords.readString(buffer);
+                records.accept(chatId, new PasswordEntry(name, username, password));
+            }
+            return generation;
+        }
+    }
+}
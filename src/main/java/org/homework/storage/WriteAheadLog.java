@@ -0,0 +1,290 @@
+package org.homework.storage;
+
+import org.homework.model.PasswordEntry;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * Журнал упреждающей записи (WAL) для операций добавления и удаления.
+ * Формат записи: длина полезной нагрузки (int), CRC32 (int), полезная нагрузка.
+ * Записи пишет отдельный поток, который собирает их в пакеты и выполняет
+ * один fsync на пакет (group commit).
+ * <p>
+ * Если запись пакета не удалась, файл обрезается до начала пакета: иначе следующие записи
+ * легли бы после недописанной, и при воспроизведении журнал обрезался бы на ней вместе с ними.
+ * Если обрезать файл не удалось, журнал переходит в состояние ошибки и отклоняет новые записи.
+ */
+final class WriteAheadLog implements Closeable {
+    static final byte OP_PUT = 1; // Добавление записи
+    static final byte OP_DELETE = 2; // Удаление записи
+
+    private static final int MAX_BATCH = 1024; // Максимум записей на один fsync
+    private static final PendingWrite CLOSE = new PendingWrite(null); // Сигнал завершения потока записи
+
+    private final FileChannel channel;
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private final AtomicLong size;
+    private final Thread writer;
+    private volatile boolean closed;
+    private volatile IOException failure; // Ошибка, после которой в журнал нельзя писать
+
+    /**
+     * Обработчик записей при воспроизведении журнала.
+     */
+    interface Replay {
+        void put(String chatId, PasswordEntry entry);
+
+        void delete(String chatId, String name);
+    }
+
+    private WriteAheadLog(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        channel.position(channel.size());
+        size = new AtomicLong(channel.size());
+        writer = new Thread(this::writeLoop, "vault-wal-" + file.getFileName());
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Открывает журнал для дозаписи.
+     *
+     * @param file Путь к файлу журнала.
+     * @return Открытый журнал.
+     */
+    static WriteAheadLog open(Path file) throws IOException {
+        return new WriteAheadLog(file);
+    }
+
+    /**
+     * Воспроизводит записи журнала и обрезает недописанный или повреждённый хвост.
+     * Хвост начинается с первой записи, которая обрезана, не сходится с CRC или не разбирается,
+     * например с неизвестной операцией: следующие за ней записи не воспроизводятся.
+     *
+     * @param file   Путь к файлу журнала.
+     * @param replay Обработчик записей.
+     * @return Количество воспроизведённых записей.
+     */
+    static long replay(Path file, Replay replay) throws IOException {
+        long valid = 0;
+        long records = 0;
+        CRC32 crc = new CRC32();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            long remaining = Files.size(file);
+            while (remaining >= 8) {
+                int length = in.readInt();
+                int checksum = in.readInt();
+                if (length <= 0 || length > remaining - 8) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                in.readFully(payload);
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum || !apply(payload, replay)) {
+                    break;
+                }
+                remaining -= 8 + length;
+                valid += 8 + length;
+                records++;
+            }
+        }
+        if (valid < Files.size(file)) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Разбирает и применяет запись. Все поля читаются до вызова обработчика,
+     * поэтому неразборчивая запись не применяется даже частично.
+     *
+     * @return false, если операция неизвестна или поля не помещаются в запись.
+     */
+    private static boolean apply(byte[] payload, Replay replay) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        try {
+            byte op = in.get();
+            if (op != OP_PUT && op != OP_DELETE) {
+                return false;
+            }
+            String chatId = VaultRecords.readString(in);
+            String name = VaultRecords.readString(in);
+            if (op == OP_PUT) {
+                replay.put(chatId, new PasswordEntry(name, VaultRecords.readString(in), VaultRecords.readString(in)));
+            } else {
+                replay.delete(chatId, name);
+            }
+            return true;
+        } catch (BufferUnderflowException | IllegalStateException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Ставит в очередь запись о добавлении.
+     *
+     * @return Future, завершающийся после fsync записи.
+     */
+    CompletableFuture<Void> appendPut(String chatId, PasswordEntry entry) {
+        return append(encode(OP_PUT, chatId, entry.getName(), entry.getUsername(), entry.getPassword()));
+    }
+
+    /**
+     * Ставит в очередь запись об удалении.
+     *
+     * @return Future, завершающийся после fsync записи.
+     */
+    CompletableFuture<Void> appendDelete(String chatId, String name) {
+        return append(encode(OP_DELETE, chatId, name, null, null));
+    }
+
+    /**
+     * Возвращает текущий размер журнала в байтах, включая записи в очереди.
+     */
+    long size() {
+        return size.get();
+    }
+
+    private CompletableFuture<Void> append(ByteBuffer record) {
+        if (closed) {
+            throw new IllegalStateException("Журнал закрыт");
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Журнал недоступен после ошибки записи", failure);
+        }
+        PendingWrite write = new PendingWrite(record);
+        size.addAndGet(record.remaining());
+        queue.add(write);
+        return write.done;
+    }
+
+    private static ByteBuffer encode(byte op, String chatId, String name, String username, String password) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(0); // Место под длину
+            out.writeInt(0); // Место под CRC
+            out.writeByte(op);
+            VaultRecords.writeString(out, chatId);
+            VaultRecords.writeString(out, name);
+            if (op == OP_PUT) {
+                VaultRecords.writeString(out, username);
+                VaultRecords.writeString(out, password);
+            }
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            int length = record.capacity() - 8;
+            CRC32 crc = new CRC32();
+            crc.update(record.array(), 8, length);
+            record.putInt(0, length);
+            record.putInt(4, (int) crc.getValue());
+            return record;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+                queue.drainTo(batch, MAX_BATCH - 1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (batch.remove(CLOSE)) {
+                running = false;
+            }
+            if (failure != null) {
+                batch.forEach(write -> write.done.completeExceptionally(failure));
+                batch.clear();
+                continue;
+            }
+            long start = -1;
+            try {
+                start = channel.position();
+                for (PendingWrite write : batch) {
+                    while (write.record.hasRemaining()) {
+                        channel.write(write.record);
+                    }
+                }
+                channel.force(false);
+                batch.forEach(write -> write.done.complete(null));
+            } catch (IOException e) {
+                rollback(start, batch, e);
+                batch.forEach(write -> write.done.completeExceptionally(e));
+            }
+            batch.clear();
+        }
+    }
+
+    /**
+     * Обрезает файл до начала неудачного пакета или переводит журнал в состояние ошибки.
+     *
+     * @param start Позиция начала пакета или -1, если её не удалось получить.
+     * @param batch Неудачный пакет.
+     * @param error Ошибка записи пакета.
+     */
+    private void rollback(long start, List<PendingWrite> batch, IOException error) {
+        try {
+            if (start < 0) {
+                throw error;
+            }
+            channel.truncate(start);
+            channel.position(start);
+            channel.force(false);
+            batch.forEach(write -> size.addAndGet(-write.record.capacity()));
+        } catch (IOException e) {
+            if (e != error) {
+                error.addSuppressed(e);
+            }
+            failure = error;
+        }
+    }
+
+    /**
+     * Дожидается записи всех поставленных в очередь операций и закрывает файл.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+
+    private static final class PendingWrite {
+        private final ByteBuffer record;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        private PendingWrite(ByteBuffer record) {
+            this.record = record;
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package org.homework.bot;
+
+import org.homework.di.DIContainer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.methods.BotApiMethod;
+import org.telegram.telegrambots.meta.api.methods.ParseMode;
+import org.telegram.telegrambots.meta.api.methods.send.SendMessage;
+import org.telegram.telegrambots.meta.exceptions.TelegramApiRequestException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка OutboundScheduler на заглушке MessageTransport: лимиты частоты,
+ * объединение сообщений и повтор после ответа 429.
+ */
+class OutboundSchedulerTest {
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long TOLERANCE_NANOS = 20 * MILLIS; // Допуск на неточность таймеров
+
+    private final BlockingQueue<Sent> sent = new LinkedBlockingQueue<>();
+    private final AtomicInteger calls = new AtomicInteger(); // Число запросов к заглушке
+
+    @AfterEach
+    void clearLimits() {
+        System.clearProperty("outbound.chat.rate");
+        System.clearProperty("outbound.chat.burst");
+        System.clearProperty("outbound.global.rate");
+    }
+
+    @Test
+    void chatRateSpacesMessagesToOneChat() throws Exception {
+        OutboundScheduler scheduler = start(10, 1, 1000, method -> CompletableFuture.completedFuture(null));
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            done.add(scheduler.submit(unmergeable("1", "message " + i)));
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        List<Sent> requests = take(5);
+        for (int i = 1; i < requests.size(); i++) {
+            long interval = requests.get(i).at - requests.get(i - 1).at;
+            assertTrue(interval >= 100 * MILLIS - TOLERANCE_NANOS, "Интервал " + interval / MILLIS + " мс");
+        }
+    }
+
+    @Test
+    void globalRateLimitsAllChats() throws Exception {
+        OutboundScheduler scheduler = start(1000, 1, 10, method -> CompletableFuture.completedFuture(null));
+        List<CompletableFuture<Void>> done = new ArrayList<>();
+        for (int chat = 0; chat < 20; chat++) {
+            done.add(scheduler.submit(new SendMessage(Integer.toString(chat), "hello")));
+        }
+        CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        List<Sent> requests = take(20);
+        // Общее ведро вмещает 10 токенов и пополняется на 10 в секунду
+        long elapsed = requests.get(19).at - requests.get(0).at;
+        assertTrue(elapsed >= TimeUnit.SECONDS.toNanos(1) - TOLERANCE_NANOS, "Прошло " + elapsed / MILLIS + " мс");
+        long firstBurst = requests.get(9).at - requests.get(0).at;
+        assertTrue(firstBurst < 100 * MILLIS, "Первые 10 сообщений заняли " + firstBurst / MILLIS + " мс");
+    }
+
+    @Test
+    void queuedTextsAreMergedUpToTelegramLimit() throws Exception {
+        CompletableFuture<Void> firstResponse = new CompletableFuture<>();
+        OutboundScheduler scheduler = start(1000, 10, 1000,
+                method -> calls.get() == 1 ? firstResponse : CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> first = scheduler.submit(new SendMessage("1", "first"));
+        take(1);
+
+        // Пока первое сообщение не доставлено, остальные копятся в очереди чата;
+        // события планировщика обрабатываются по порядку, поэтому ответ придёт после постановки в очередь
+        String a = "a".repeat(2000);
+        String b = "b".repeat(2000);
+        String c = "c".repeat(2000);
+        List<CompletableFuture<Void>> done = List.of(scheduler.submit(new SendMessage("1", a)),
+                scheduler.submit(new SendMessage("1", b)), scheduler.submit(new SendMessage("1", c)));
+        firstResponse.complete(null);
+        first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        CompletableFuture.allOf(done.toArray(new CompletableFuture[0])).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        List<Sent> requests = take(2);
+        assertEquals(a + "\n\n" + b, requests.get(0).text());
+        assertEquals(c, requests.get(1).text());
+        assertEquals(1, scheduler.getMergedCount());
+        assertEquals(0, scheduler.getQueueDepth());
+    }
+
+    @Test
+    void retryAfterDelaysChatAndResendsMessage() throws Exception {
+        OutboundScheduler scheduler = start(1000, 10, 1000, method -> calls.get() == 1
+                ? CompletableFuture.failedFuture(tooManyRequests(1))
+                : CompletableFuture.completedFuture(null));
+        CompletableFuture<Void> done = scheduler.submit(new SendMessage("1", "hello"));
+        done.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+
+        List<Sent> requests = take(2);
+        assertEquals("hello", requests.get(1).text());
+        long delay = requests.get(1).at - requests.get(0).at;
+        assertTrue(delay >= TimeUnit.SECONDS.toNanos(1) - TOLERANCE_NANOS, "Повтор через " + delay / MILLIS + " мс");
+        assertEquals(1, scheduler.getRateLimitedCount());
+        assertEquals(0, scheduler.getFailedCount());
+        assertTrue(sent.isEmpty(), "Лишние запросы: " + sent);
+    }
+
+    /**
+     * Запускает новый планировщик с заданными лимитами и заглушкой, которая запоминает запросы.
+     */
+    private OutboundScheduler start(double chatRate, int chatBurst, double globalRate,
+                                    Function<BotApiMethod<?>, CompletableFuture<?>> response) {
+        System.setProperty("outbound.chat.rate", Double.toString(chatRate));
+        System.setProperty("outbound.chat.burst", Integer.toString(chatBurst));
+        System.setProperty("outbound.global.rate", Double.toString(globalRate));
+        OutboundScheduler scheduler = new DIContainer().resolve(OutboundScheduler.class);
+        scheduler.start(method -> {
+            calls.incrementAndGet();
+            sent.add(new Sent(System.nanoTime(), method));
+            return response.apply(method);
+        });
+        return scheduler;
+    }
+
+    private List<Sent> take(int count) throws InterruptedException {
+        List<Sent> requests = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Sent request = sent.poll(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            assertTrue(request != null, "Получено запросов: " + requests.size() + " из " + count);
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private static SendMessage unmergeable(String chatId, String text) {
+        SendMessage message = new SendMessage(chatId, text);
+        message.setParseMode(ParseMode.HTML); // Сообщения с разметкой не объединяются
+        return message;
+    }
+
+    private static TelegramApiRequestException tooManyRequests(int retryAfter) {
+        return new TelegramApiRequestException("Ошибка отправки", new JSONObject()
+                .put("ok", false)
+                .put("error_code", 429)
+                .put("description", "Too Many Requests: retry after " + retryAfter)
+                .put("parameters", new JSONObject().put("retry_after", retryAfter)));
+    }
+
+    /**
+     * Запрос, переданный заглушке, и момент его отправки.
+     */
+    private record Sent(long at, BotApiMethod<?> method) {
+        String text() {
+            return ((SendMessage) method).getText();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package org.homework.bot;
+
+import org.homework.di.DIContainer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.telegram.telegrambots.meta.api.objects.Update;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Проверка webhook-сервера запросами локального HTTP-клиента: секрет отправителя,
+ * переполнение очереди обновлений и разбор тела.
+ */
+class WebhookReceiverTest {
+    private static final String SECRET = "test_secret-42";
+    private static final int QUEUE_CAPACITY = 2;
+
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final List<Update> received = new CopyOnWriteArrayList<>();
+    private final List<CompletableFuture<Void>> processing = new CopyOnWriteArrayList<>();
+    private WebhookReceiver receiver;
+
+    @BeforeEach
+    void startServer() {
+        System.setProperty("webhook.port", "0");
+        System.setProperty("webhook.secret", SECRET);
+        System.setProperty("webhook.queue.capacity", Integer.toString(QUEUE_CAPACITY));
+        receiver = new DIContainer().resolve(WebhookReceiver.class);
+        // Обновления остаются в обработке, пока тест не завершит их future
+        receiver.start(update -> {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            received.add(update);
+            processing.add(done);
+            return done;
+        });
+    }
+
+    @AfterEach
+    void stopServer() {
+        receiver.stop();
+        System.clearProperty("webhook.port");
+        System.clearProperty("webhook.secret");
+        System.clearProperty("webhook.queue.capacity");
+    }
+
+    @Test
+    void requestsWithoutValidSecretAreRejected() throws Exception {
+        assertEquals(401, post(update(1), null).statusCode());
+        assertEquals(401, post(update(2), "wrong").statusCode());
+        assertEquals(401, post(update(3), SECRET + "x").statusCode());
+        assertTrue(received.isEmpty());
+        assertEquals(3, receiver.getUnauthorizedCount());
+
+        assertEquals(200, post(update(4), SECRET).statusCode());
+        assertEquals(1, received.size());
+        assertEquals(4, received.get(0).getUpdateId());
+    }
+
+    @Test
+    void fullQueueAnswers429UntilUpdateIsProcessed() throws Exception {
+        assertEquals(200, post(update(1), SECRET).statusCode());
+        assertEquals(200, post(update(2), SECRET).statusCode());
+        assertEquals(QUEUE_CAPACITY, receiver.getQueueDepth());
+
+        HttpResponse<Void> rejected = post(update(3), SECRET);
+        assertEquals(429, rejected.statusCode());
+        assertTrue(rejected.headers().firstValue("Retry-After").isPresent());
+        assertEquals(1, receiver.getRejectedCount());
+        assertEquals(2, received.size());
+
+        processing.get(0).complete(null);
+        assertEquals(QUEUE_CAPACITY - 1, receiver.getQueueDepth());
+        assertEquals(200, post(update(3), SECRET).statusCode());
+        assertEquals(3, received.size());
+        assertEquals(3, receiver.getAcceptedCount());
+    }
+
+    @Test
+    void failedProcessingFreesQueueSlot() throws Exception {
+        assertEquals(200, post(update(1), SECRET).statusCode());
+        processing.get(0).completeExceptionally(new IllegalStateException("сбой обработчика"));
+        assertEquals(0, receiver.getQueueDepth());
+    }
+
+    @Test
+    void malformedBodyIsRejectedWithoutTakingSlot() throws Exception {
+        assertEquals(400, post("{not json", SECRET).statusCode());
+        assertEquals(1, receiver.getMalformedCount());
+        assertEquals(0, receiver.getQueueDepth());
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void onlyPostIsAllowed() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri())
+                .header("X-Telegram-Bot-Api-Secret-Token", SECRET)
+                .GET()
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        assertEquals(405, response.statusCode());
+        assertEquals("POST", response.headers().firstValue("Allow").orElse(null));
+    }
+
+    private HttpResponse<Void> post(String body, String secret) throws Exception {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri())
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body));
+        if (secret != null) {
+            request.header("X-Telegram-Bot-Api-Secret-Token", secret);
+        }
+        return client.send(request.build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private URI uri() {
+        return URI.create("http://127.0.0.1:" + receiver.getPort() + receiver.getPath());
+    }
+
+    private static String update(int updateId) {
+        return "{\"update_id\":" + updateId + ",\"message\":{\"message_id\":1,\"date\":0,"
+                + "\"chat\":{\"id\":1,\"type\":\"private\"},\"text\":\"/list\"}}";
+    }
+}
@@ -0,0 +1,179 @@
+package org.homework.services;
+
+import org.homework.api.PasswordStore;
+import org.homework.model.PasswordEntry;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Нагрузочная проверка обеих реализаций PasswordStore из нескольких потоков.
+ * Имя пользователя и пароль каждой записи несут одну и ту же метку (поток, версия),
+ * поэтому запись, прочитанная наполовину во время перезаписи, обнаруживается по их несовпадению.
+ */
+class PasswordStoreStressTest {
+    private static final int OPERATIONS = 20_000; // Операций на поток
+    private static final int NAMES = 64; // Названий сервисов на чат
+
+    static Stream<Arguments> stores() {
+        List<Arguments> arguments = new ArrayList<>();
+        for (int threads : new int[]{1, 4, 16}) {
+            arguments.add(Arguments.of("heap", (Supplier<PasswordStore>) ShardedPasswordStore::new, threads));
+            arguments.add(Arguments.of("offheap", (Supplier<PasswordStore>) OffHeapPasswordStore::new, threads));
+        }
+        return arguments.stream();
+    }
+
+    /**
+     * Каждый поток работает со своими чатами и ведёт их модель; после прогона содержимое
+     * хранилища должно совпасть с моделями всех потоков.
+     */
+    @ParameterizedTest(name = "{0}, потоков: {2}")
+    @MethodSource("stores")
+    void separateChatsMatchModel(String kind, Supplier<PasswordStore> factory, int threads) throws Exception {
+        PasswordStore store = factory.get();
+        List<Map<String, Map<String, PasswordEntry>>> models = run(threads, thread -> {
+            Map<String, Map<String, PasswordEntry>> model = new HashMap<>();
+            Random random = new Random(thread);
+            for (int i = 0; i < OPERATIONS; i++) {
+                String chatId = "chat-" + thread + "-" + random.nextInt(4);
+                String name = "service-" + random.nextInt(NAMES);
+                Map<String, PasswordEntry> chat = model.computeIfAbsent(chatId, id -> new HashMap<>());
+                int operation = random.nextInt(10);
+                if (operation < 5) {
+                    PasswordEntry entry = entry(name, thread, i);
+                    store.put(chatId, entry);
+                    chat.put(name, entry);
+                } else if (operation < 8) {
+                    assertEntryEquals(chat.get(name), store.get(chatId, name));
+                } else {
+                    assertEntryEquals(chat.remove(name), store.remove(chatId, name));
+                }
+            }
+            return model;
+        });
+
+        for (Map<String, Map<String, PasswordEntry>> model : models) {
+            model.forEach((chatId, entries) -> {
+                assertEquals(entries.keySet(), new HashSet<>(store.names(chatId)), chatId);
+                entries.forEach((name, entry) -> assertEntryEquals(entry, store.get(chatId, name)));
+            });
+        }
+    }
+
+    /**
+     * Все потоки пишут, читают и удаляют записи одного чата. Каждое прочитанное значение
+     * должно быть целой записью, которую какой-то поток сохранил.
+     */
+    @ParameterizedTest(name = "{0}, потоков: {2}")
+    @MethodSource("stores")
+    void sharedChatNeverReturnsTornEntry(String kind, Supplier<PasswordStore> factory, int threads) throws Exception {
+        PasswordStore store = factory.get();
+        String chatId = "shared";
+        run(threads, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < OPERATIONS; i++) {
+                String name = "service-" + random.nextInt(NAMES);
+                int operation = random.nextInt(10);
+                if (operation < 4) {
+                    store.put(chatId, entry(name, thread, i));
+                } else if (operation < 8) {
+                    assertConsistent(name, store.get(chatId, name));
+                } else if (operation < 9) {
+                    assertConsistent(name, store.remove(chatId, name));
+                } else {
+                    for (String listed : store.names(chatId)) {
+                        assertTrue(listed.startsWith("service-"), listed);
+                    }
+                }
+            }
+            return null;
+        });
+
+        List<String> names = store.names(chatId);
+        assertEquals(new HashSet<>(names).size(), names.size(), "Повторяющиеся названия: " + names);
+        for (String name : names) {
+            PasswordEntry entry = store.get(chatId, name);
+            assertNotNull(entry, name);
+            assertConsistent(name, entry);
+        }
+    }
+
+    private static <T> List<T> run(int threads, Task<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int thread = 0; thread < threads; thread++) {
+                int id = thread;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.run(id);
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                results.add(future.get(60, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Пароль хранится в Base64, как шифротекст: хранилище вне кучи хранит его исходные байты.
+     */
+    private static PasswordEntry entry(String name, int thread, int version) {
+        String label = thread + ":" + version;
+        String password = Base64.getEncoder().encodeToString((name + "|" + label).getBytes(StandardCharsets.UTF_8));
+        return new PasswordEntry(name, label, password);
+    }
+
+    private static void assertEntryEquals(PasswordEntry expected, PasswordEntry actual) {
+        if (expected == null) {
+            assertNull(actual);
+            return;
+        }
+        assertNotNull(actual, expected.getName());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getUsername(), actual.getUsername());
+        assertEquals(expected.getPassword(), actual.getPassword());
+    }
+
+    private static void assertConsistent(String name, PasswordEntry entry) {
+        if (entry == null) {
+            return;
+        }
+        assertEquals(name, entry.getName());
+        String password = new String(Base64.getDecoder().decode(entry.getPassword()), StandardCharsets.UTF_8);
+        assertEquals(name + "|" + entry.getUsername(), password);
+    }
+
+    @FunctionalInterface
+    private interface Task<T> {
+        T run(int thread) throws Exception;
+    }
+}